@@ -0,0 +1,247 @@
+package quadtree;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/*
+ * BenchWorld
+ * Description: Reproducible agent layouts for the benchmarks. Agents are spread uniformly or in gaussian clusters over a world
+ * sized so that the density matches testProgram (5000 balls of radius 5 on a 1920x1045 screen), and are moved exactly the way
+ * testProgram moves them every frame. The resting layout piles nine agents out of ten in rows of touching agents at rest,
+ * the tenth moving above them - the case ContactCache replays. The moving agents break the pile up within a few hundred ticks.
+ * Every tree or grid gets an elastic collision response (bounce) unless response is "default", so that runs of any length stay
+ * at the speeds they start with.
+ */
+
+public class BenchWorld {
+	
+	static final int RADIUS = 5;
+	static final int AREA_PER_AGENT = 400; //Roughly 1920*1045/5000 - keeps the same density whatever the agent count
+	static final int CLUSTERS = 16;
+	
+	int maxWidth;
+	int maxHeight;
+	ArrayList<Shape> agents = new ArrayList<Shape>();
+	String response = "elastic"; //"default" keeps AgentStore.collide - the scene then diverges within a few ticks (see bounce)
+	
+	/**
+	 * Constructor for BenchWorld
+	 * Generates the agents of a layout ("uniform", "clustered" or "resting") with a fixed seed
+	 * 
+	 * @param agentCount
+	 * @param layout
+	 * @param seed
+	 */
+	
+	BenchWorld(int agentCount, String layout, long seed) {
+		
+		maxWidth = (int)Math.ceil(Math.sqrt((double)agentCount*AREA_PER_AGENT*16/9));
+		maxHeight = maxWidth*9/16;
+		
+		Random numGenerator = new Random(seed);
+		
+		if (layout.equals("uniform")) {
+			for (int i = 0; i < agentCount; i++) {
+				agents.add(newAgent(numGenerator, RADIUS + numGenerator.nextDouble()*(maxWidth-RADIUS*2), RADIUS + numGenerator.nextDouble()*(maxHeight-RADIUS*2)));
+			}
+		} else if (layout.equals("clustered")) {
+			
+			double [] centerX = new double[CLUSTERS];
+			double [] centerY = new double[CLUSTERS];
+			
+			for (int i = 0; i < CLUSTERS; i++) {
+				centerX[i] = maxWidth*(0.1 + 0.8*numGenerator.nextDouble());
+				centerY[i] = maxHeight*(0.1 + 0.8*numGenerator.nextDouble());
+			}
+			
+			double spread = maxHeight/40.0;
+			
+			for (int i = 0; i < agentCount; i++) {
+				int c = numGenerator.nextInt(CLUSTERS);
+				double x = clamp(centerX[c] + numGenerator.nextGaussian()*spread, RADIUS, maxWidth-RADIUS-1);
+				double y = clamp(centerY[c] + numGenerator.nextGaussian()*spread, RADIUS, maxHeight-RADIUS-1);
+				agents.add(newAgent(numGenerator, x, y));
+			}
+			
+		} else if (layout.equals("resting")) {
+			
+			int columns = (int)(maxWidth/(2*RADIUS-1)); //Rows of touching agents at rest over the lower half, a few moving ones above
+			
+			for (int i = 0; i < agentCount; i++) {
+				if (i % 10 == 0) {
+					agents.add(newAgent(numGenerator, RADIUS + numGenerator.nextDouble()*(maxWidth-RADIUS*2), RADIUS + numGenerator.nextDouble()*(maxHeight/2-RADIUS*2)));
+				} else {
+					agents.add(new Shape(RADIUS, RADIUS + (2*RADIUS-1)*(i % columns), maxHeight - RADIUS - (2*RADIUS-1)*(i / columns), 0, 0));
+				}
+			}
+			
+		} else {
+			throw new IllegalArgumentException("Unknown layout: " + layout);
+		}
+		
+	}
+	
+	/**
+	 * newTree
+	 * Builds a tree ("pointer" for quadTree, "loose" for quadTree with looseness 2, "linear" for LinearQuadTree) holding every agent of the world,
+	 * fully subdivided by addAll
+	 * 
+	 * @param kind
+	 * @return
+	 */
+	
+	SpatialTree newTree(String kind) {
+		
+		SpatialTree tree = emptyTree(kind);
+		tree.addAll(copies());
+		
+		return tree;
+		
+	}
+	
+	/**
+	 * emptyTree
+	 * Creates an empty tree of a kind, over the area of the world
+	 * 
+	 * @param kind
+	 * @return
+	 */
+	
+	SpatialTree emptyTree(String kind) {
+		
+		SpatialTree tree;
+		
+		if (kind.equals("pointer")) {
+			tree = new quadTree<Shape>(maxWidth, maxHeight);
+		} else if (kind.equals("loose")) {
+			tree = new quadTree<Shape>(maxWidth, maxHeight, 2);
+		} else if (kind.equals("linear")) {
+			tree = new LinearQuadTree(maxWidth, maxHeight);
+		} else {
+			throw new IllegalArgumentException("Unknown tree: " + kind);
+		}
+		
+		respond(tree.getStore());
+		return tree;
+		
+	}
+	
+	/**
+	 * newBroadPhase
+	 * Same as newTree, plus "grid" for a UniformGrid sized for the agents' radius
+	 * 
+	 * @param kind
+	 * @return
+	 */
+	
+	BroadPhase newBroadPhase(String kind) {
+		
+		if (!kind.equals("grid")) {
+			return newTree(kind);
+		}
+		
+		BroadPhase grid = new UniformGrid(maxWidth, maxHeight, RADIUS);
+		respond(grid.getStore());
+		grid.addAll(copies());
+		
+		return grid;
+		
+	}
+	
+	private void respond(AgentStore store) {
+		
+		if (response.equals("elastic")) {
+			bounce(store);
+		} else if (!response.equals("default")) {
+			throw new IllegalArgumentException("Unknown response: " + response);
+		}
+		
+	}
+	
+	/**
+	 * bounce
+	 * Gives a store an elastic collision response of equal masses - the default, AgentStore.collide, speeds agents up until
+	 * half of them have left the area within a few ticks, which would make every benchmark measure a different scene. Pairs
+	 * already moving apart are left alone.
+	 * 
+	 * @param store
+	 */
+	
+	static void bounce(AgentStore store) {
+		
+		store.setResponse((ag1, ag2) -> {
+			
+			double px = store.x[ag1] - store.x[ag2];
+			double py = store.y[ag1] - store.y[ag2];
+			double distSq = px*px + py*py;
+			double closing = (store.dx[ag1] - store.dx[ag2])*px + (store.dy[ag1] - store.dy[ag2])*py; //Negative while they close in
+			
+			if (distSq == 0 || closing >= 0) {
+				return;
+			}
+			
+			double scalar = closing/distSq;
+			store.dx[ag1] -= scalar*px;
+			store.dy[ag1] -= scalar*py;
+			store.dx[ag2] += scalar*px;
+			store.dy[ag2] += scalar*py;
+			
+		});
+		
+	}
+	
+	/**
+	 * move
+	 * Wall bounce and newPos for every agent, as in SimulationEngine.tick
+	 * 
+	 * @param tree
+	 */
+	
+	void move(SpatialTree tree) {
+		tree.getStore().move(maxWidth, maxHeight);
+	}
+	
+	/**
+	 * tick
+	 * One full simulation step - move, then updateTree
+	 * 
+	 * @param tree
+	 */
+	
+	void tick(SpatialTree tree) {
+		move(tree);
+		tree.updateTree();
+	}
+	
+	private static Shape newAgent(Random numGenerator, double x, double y) {
+		return new Shape(RADIUS, x, y, numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4);
+	}
+	
+	/**
+	 * copies
+	 * Returns a fresh copy of every agent of the world, for a new tree to bind
+	 * 
+	 * @return
+	 */
+	
+	ArrayList<Shape> copies() {
+		
+		ArrayList<Shape> batch = new ArrayList<Shape>(agents.size());
+		
+		for (int i = 0; i < agents.size(); i++) {
+			batch.add(copy(agents.get(i)));
+		}
+		
+		return batch;
+		
+	}
+	
+	private static Shape copy(Shape agent) { //Each tree binds its own shapes, so the world's agents stay untouched
+		return new Shape(agent.getRadi(), agent.getXD(), agent.getYD(), agent.getDx(), agent.getDy());
+	}
+	
+	private static double clamp(double value, double low, double high) {
+		return Math.max(low, Math.min(high, value));
+	}
+	
+}
@@ -0,0 +1,76 @@
+package quadtree;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * BroadPhaseBenchmark
+ * Description: The same work on every BroadPhase - a full step (move, relocateAll, findPairs into the collision response),
+ * and findPairs alone into a counter - to pick the structure for a workload.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BroadPhaseBenchmark {
+
+	@State(Scope.Thread)
+	public static class WorldState {
+
+		@Param({"5000", "100000", "1000000"})
+		public int agents;
+
+		@Param({"uniform", "clustered"})
+		public String layout;
+
+		@Param({"pointer", "loose", "linear", "grid"})
+		public String kind;
+
+		@Param({"elastic"})
+		public String response; //"default" for AgentStore.collide instead of BenchWorld.bounce
+
+		BenchWorld world;
+		BroadPhase broadPhase;
+		int pairs;
+		PairVisitor counter = (ag1, ag2) -> pairs++;
+
+		@Setup(Level.Trial)
+		public void build() {
+			world = new BenchWorld(agents, layout, 42);
+			world.response = response;
+			broadPhase = world.newBroadPhase(kind);
+		}
+
+	}
+
+	@Benchmark
+	public BroadPhase step(WorldState state) {
+		AgentStore store = state.broadPhase.getStore();
+		store.move(state.world.maxWidth, state.world.maxHeight); //The default BroadPhase.step, so every kind does the same work
+		state.broadPhase.relocateAll();
+		state.broadPhase.findPairs(store.response());
+		return state.broadPhase;
+	}
+
+	@Benchmark
+	public int findPairs(WorldState state) {
+		state.pairs = 0;
+		state.broadPhase.findPairs(state.counter);
+		return state.pairs;
+	}
+
+}
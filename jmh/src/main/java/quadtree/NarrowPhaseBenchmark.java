@@ -0,0 +1,108 @@
+package quadtree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * NarrowPhaseBenchmark
+ * Description: Pair search in one dense leaf, like the clusters stuck at MAX_LEVEL - the plain pair loop over AgentStore.intersects
+ * against the scalar and vector NarrowPhase kernels, with and without sort and sweep. Pairs are collected, not resolved, so every
+ * invocation sees the same leaf - sweeping then measures the steady state, where the list is still sorted from the last tick.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NarrowPhaseBenchmark {
+
+	@State(Scope.Thread)
+	public static class LeafState {
+
+		@Param({"32", "64", "128", "256", "1024"})
+		public int leafSize;
+
+		AgentStore store = new AgentStore();
+		int [] list;
+		int [] slotOf;
+		PairList pairs = new PairList();
+		NarrowPhase scalar = NarrowPhase.create(false);
+		NarrowPhase vector = NarrowPhase.create(true);
+
+		@Setup(Level.Trial)
+		public void build() {
+
+			Random numGenerator = new Random(42);
+			double side = 7*Math.sqrt(leafSize); //Agents a little apart on average, touching a few neighbours each
+			list = new int[leafSize];
+			slotOf = new int[leafSize];
+
+			for (int i = 0; i < leafSize; i++) {
+				list[i] = store.add(BenchWorld.RADIUS, numGenerator.nextDouble()*side, numGenerator.nextDouble()*side, 1, 1);
+			}
+
+		}
+
+	}
+
+	@Benchmark
+	public PairList plainLoop(LeafState state) {
+
+		PairList pairs = state.pairs;
+		pairs.clear();
+
+		for (int i = 0; i < state.leafSize; i++) {
+			for (int a = i+1; a < state.leafSize; a++) {
+				if (state.store.intersects(state.list[i], state.list[a])) {
+					pairs.add(state.list[i], state.list[a]);
+				}
+			}
+		}
+
+		return pairs;
+
+	}
+
+	@Benchmark
+	public PairList scalarKernel(LeafState state) {
+		state.pairs.clear();
+		state.scalar.collideLeaf(state.store, state.list, state.leafSize, state.pairs);
+		return state.pairs;
+	}
+
+	@Benchmark
+	public PairList vectorKernel(LeafState state) {
+		state.pairs.clear();
+		state.vector.collideLeaf(state.store, state.list, state.leafSize, state.pairs);
+		return state.pairs;
+	}
+
+	@Benchmark
+	public PairList scalarSweep(LeafState state) {
+		state.pairs.clear();
+		state.scalar.sweepLeaf(state.store, state.list, state.leafSize, state.slotOf, state.pairs);
+		return state.pairs;
+	}
+
+	@Benchmark
+	public PairList vectorSweep(LeafState state) {
+		state.pairs.clear();
+		state.vector.sweepLeaf(state.store, state.list, state.leafSize, state.slotOf, state.pairs);
+		return state.pairs;
+	}
+
+}
@@ -0,0 +1,263 @@
+package quadtree;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * QuadTreeBenchmark
+ * Description: Benchmarks addAgent, bulk loading (addAll against addAgent + update), every phase of updateTree, and a full tick (move + updateTree), against integrate
+ * and a full step (integrate + relocateDisplaced + update + checkCollide), which replaces move + findChanged + manageNode.
+ * Each phase is measured on a tree that went through the earlier phases of the same tick, so the numbers add up to a tick.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QuadTreeBenchmark {
+	
+	/**
+	 * TreeState
+	 * A settled tree over one of the layouts - shared by every benchmark
+	 */
+	
+	@State(Scope.Thread)
+	public static class TreeState {
+		
+		@Param({"1000", "5000", "100000", "1000000"})
+		public int agents;
+		
+		@Param({"uniform", "clustered"})
+		public String layout;
+		
+		@Param({"pointer", "loose", "linear"})
+		public String kind;
+		
+		@Param({"1"})
+		public int threads; //More than 1 runs integrate (and checkCollide on quadTree) on a ForkJoinPool of that many threads
+		
+		@Param({"false"})
+		public boolean contacts; //Runs checkCollide through a ContactCache
+		
+		@Param({"0"})
+		public double tolerance; //Distance a shape can move and keep its contacts replayed, with contacts (ContactCache.setTolerance)
+		
+		@Param({"elastic"})
+		public String response; //"default" for AgentStore.collide instead of BenchWorld.bounce
+		
+		BenchWorld world;
+		SpatialTree tree;
+		ForkJoinPool pool;
+		
+		@Setup(Level.Trial)
+		public void build() {
+			world = new BenchWorld(agents, layout, 42);
+			world.response = response;
+			pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+			tree = newTree();
+		}
+		
+		SpatialTree newTree() {
+			
+			SpatialTree tree = world.newTree(kind);
+			
+			if (pool != null) {
+				tree.setParallel(pool, 1024);
+			}
+			
+			if (contacts) {
+				ContactCache cache = new ContactCache();
+				cache.setTolerance(tolerance);
+				tree.setContactCache(cache);
+			}
+			
+			return tree;
+			
+		}
+		
+	}
+	
+	/**
+	 * AddState
+	 * Pool of extra agents inserted by the addAgent benchmark. The tree is rebuilt every iteration so it does not grow without bound.
+	 */
+	
+	public static class AddState extends TreeState {
+		
+		static final int POOL = 4096;
+		
+		double [] x = new double[POOL];
+		double [] y = new double[POOL];
+		int next;
+		
+		@Setup(Level.Iteration)
+		public void rebuild() {
+			
+			tree = newTree();
+			
+			Random numGenerator = new Random(7);
+			
+			for (int i = 0; i < POOL; i++) {
+				x[i] = BenchWorld.RADIUS + numGenerator.nextDouble()*(world.maxWidth-BenchWorld.RADIUS*2);
+				y[i] = BenchWorld.RADIUS + numGenerator.nextDouble()*(world.maxHeight-BenchWorld.RADIUS*2);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * BuildState
+	 * Fresh, unbound copies of the world's agents for every invocation, to build a tree from scratch
+	 */
+	
+	public static class BuildState extends TreeState {
+		
+		ArrayList<Shape> batch;
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			batch = world.copies();
+		}
+		
+	}
+	
+	public static class MovedState extends TreeState {
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			world.move(tree);
+		}
+		
+	}
+	
+	public static class ChangedState extends TreeState {
+		
+		ArrayList<Shape> removeList;
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			world.move(tree);
+			removeList = tree.findChanged();
+		}
+		
+	}
+	
+	public static class ManagedState extends TreeState {
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			world.move(tree);
+			tree.manageNode(tree.findChanged());
+		}
+		
+	}
+	
+	public static class UpdatedState extends TreeState {
+		
+		@Setup(Level.Iteration)
+		public void restart() {
+			if (layout.equals("resting")) {
+				tree = newTree(); //The pile breaks up within a few hundred ticks - each iteration starts again from agents at rest
+			}
+		}
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			world.move(tree);
+			tree.manageNode(tree.findChanged());
+			tree.update();
+		}
+		
+	}
+	
+	@Benchmark
+	public SpatialTree addAgent(AddState state) {
+		int i = state.next++ & (AddState.POOL-1);
+		state.tree.addAgent(new Shape(BenchWorld.RADIUS, state.x[i], state.y[i], 1, 1));
+		return state.tree;
+	}
+	
+	@Benchmark
+	public SpatialTree addAll(BuildState state) {
+		SpatialTree tree = state.world.emptyTree(state.kind);
+		tree.addAll(state.batch);
+		return tree;
+	}
+	
+	@Benchmark
+	public SpatialTree addAgentEach(BuildState state) {
+		
+		SpatialTree tree = state.world.emptyTree(state.kind);
+		
+		for (int i = 0; i < state.batch.size(); i++) {
+			tree.addAgent(state.batch.get(i));
+		}
+		
+		for (int i = 0; i <= quadTree.MAX_LEVEL; i++) { //update() splits one level at a time
+			tree.update();
+		}
+		
+		return tree;
+		
+	}
+	
+	@Benchmark
+	public ArrayList<Shape> findChanged(MovedState state) {
+		return state.tree.findChanged();
+	}
+	
+	@Benchmark
+	public SpatialTree manageNode(ChangedState state) {
+		state.tree.manageNode(state.removeList);
+		return state.tree;
+	}
+	
+	@Benchmark
+	public SpatialTree update(ManagedState state) {
+		state.tree.update();
+		return state.tree;
+	}
+	
+	@Benchmark
+	public SpatialTree checkCollide(UpdatedState state) {
+		state.tree.checkCollide();
+		return state.tree;
+	}
+	
+	@Benchmark
+	public SpatialTree tick(TreeState state) {
+		state.world.tick(state.tree);
+		return state.tree;
+	}
+	
+	@Benchmark
+	public SpatialTree integrateRelocate(TreeState state) {
+		state.tree.integrate(state.world.maxWidth, state.world.maxHeight);
+		state.tree.relocateDisplaced(); //Compares with move + findChanged + manageNode
+		return state.tree;
+	}
+	
+	@Benchmark
+	public SpatialTree step(TreeState state) {
+		state.tree.step(state.world.maxWidth, state.world.maxHeight);
+		return state.tree;
+	}
+	
+}
@@ -0,0 +1,65 @@
+package quadtree;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * TreeViewBenchmark
+ * Description: What SimulationEngine.setViews(true) adds to every tick - TreeView.fill copying the agents and rebuilding its
+ * grid index (publish) - next to the step it follows (step), to tell how much of a tick the views take.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TreeViewBenchmark {
+
+	@State(Scope.Thread)
+	public static class WorldState {
+
+		@Param({"5000", "100000", "1000000"})
+		public int agents;
+
+		@Param({"uniform", "clustered"})
+		public String layout;
+
+		BenchWorld world;
+		SpatialTree tree;
+		TreeView view = new TreeView();
+		long tick;
+
+		@Setup(Level.Trial)
+		public void build() {
+			world = new BenchWorld(agents, layout, 42);
+			tree = world.newTree("linear");
+		}
+
+	}
+
+	@Benchmark
+	public TreeView publish(WorldState state) {
+		state.view.fill(state.tree.getStore(), state.tick++, state.world.maxWidth, state.world.maxHeight);
+		return state.view;
+	}
+
+	@Benchmark
+	public SpatialTree step(WorldState state) {
+		state.tree.step(state.world.maxWidth, state.world.maxHeight);
+		return state.tree;
+	}
+
+}
@@ -0,0 +1,306 @@
+package quadtree;
+
+import java.util.Arrays;
+
+/*
+ * AgentStore
+ * Description: Keeps the state of every agent (position, speed, radius) in parallel primitive arrays, addressed by int handles.
+ * Hot loops read the arrays directly instead of going through one Shape object per agent.
+ */
+
+public class AgentStore {
+	
+	double [] x;
+	double [] y;
+	double [] dx;
+	double [] dy;
+	int [] radius;
+	
+	private int size;
+	private PairVisitor responder = this::collide;
+	private final PairVisitor response = (ag1, ag2) -> responder.visit(ag1, ag2); //Created once, so passing it to findPairs allocates nothing
+	
+	/**
+	 * Constructor for AgentStore
+	 * Starts with room for a few agents - arrays grow as needed
+	 */
+	
+	public AgentStore() {
+		this(16);
+	}
+	
+	/**
+	 * Constructor for AgentStore
+	 * Starts with room for a given number of agents
+	 *
+	 * @param capacity
+	 */
+	
+	public AgentStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		x = new double[capacity];
+		y = new double[capacity];
+		dx = new double[capacity];
+		dy = new double[capacity];
+		radius = new int[capacity];
+	}
+	
+	/**
+	 * add
+	 * Stores a new agent and returns its handle
+	 *
+	 * @param radius
+	 * @param xPos
+	 * @param yPos
+	 * @param dx
+	 * @param dy
+	 * @return handle
+	 */
+	
+	public int add(int radius, double xPos, double yPos, double dx, double dy) {
+		
+		if (size == x.length) {
+			grow(size*2);
+		}
+		
+		this.radius[size] = radius;
+		this.x[size] = xPos;
+		this.y[size] = yPos;
+		this.dx[size] = dx;
+		this.dy[size] = dy;
+		
+		return size++;
+		
+	}
+	
+	/**
+	 * remove
+	 * Removes the agent of a handle by moving the last agent into its place, so handles stay 0 to size-1
+	 *
+	 * @param handle
+	 * @return old handle of the agent moved into handle, or -1 if handle was the last one
+	 */
+	
+	public int remove(int handle) {
+		
+		int last = --size;
+		
+		if (handle == last) {
+			return -1;
+		}
+		
+		radius[handle] = radius[last];
+		x[handle] = x[last];
+		y[handle] = y[last];
+		dx[handle] = dx[last];
+		dy[handle] = dy[last];
+		
+		return last;
+		
+	}
+	
+	/**
+	 * size
+	 * Returns the number of agents in the store - handles go from 0 to size-1
+	 *
+	 * @return
+	 */
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * capacity
+	 * Returns the number of agents the arrays can hold before growing
+	 *
+	 * @return
+	 */
+	
+	public int capacity() {
+		return x.length;
+	}
+	
+	/**
+	 * intersects
+	 * Same test as Shape.intersects(Shape), between the agents of two handles
+	 *
+	 * @param i
+	 * @param a
+	 * @return
+	 */
+	
+	public boolean intersects(int i, int a) {
+		
+		if (i == a) {
+			return false;
+		}
+		
+		int centerX = (int)Math.round(x[a]);
+		int centerY = (int)Math.round(y[a]);
+		int r = radius[i];
+		
+		return centerX-r <= x[i]+r && centerX+r >= x[i]-r && centerY+r >= y[i]-r && centerY-r <= y[i]+r;
+		
+	}
+	
+	/**
+	 * move
+	 * Moves every agent by its speed, bouncing off the walls of a maxWidth x maxHeight area first
+	 * 
+	 * @param maxWidth
+	 * @param maxHeight
+	 */
+	
+	public void move(int maxWidth, int maxHeight) {
+		
+		for (int i = 0; i < size; i++) {
+			move(i, maxWidth, maxHeight);
+		}
+		
+	}
+	
+	/**
+	 * move
+	 * Moves one agent by its speed, bouncing off the walls of a maxWidth x maxHeight area first
+	 * Same rules as the original move step of testProgram, on the exact positions and speeds instead of rounded ones
+	 * 
+	 * @param i handle
+	 * @param maxWidth
+	 * @param maxHeight
+	 */
+	
+	public void move(int i, int maxWidth, int maxHeight) {
+		
+		double nextX = x[i] + dx[i];
+		double nextY = y[i] + dy[i];
+		int r = radius[i];
+		
+		if ((nextX + r > maxWidth) || (nextX - r < 0)) {
+			dx[i] = -dx[i];
+		}
+		
+		if ((nextY + r >= maxHeight) || (nextY - r < 0)) {
+			dy[i] = -dy[i];
+		}
+		
+		x[i] += dx[i];
+		y[i] += dy[i];
+		
+	}
+	
+	/**
+	 * response
+	 * Returns the collision response as a PairVisitor, for any BroadPhase.findPairs - collide unless setResponse replaced it.
+	 * The same visitor is returned for the life of the store, so trees may keep it
+	 * 
+	 * @return
+	 */
+	
+	public PairVisitor response() {
+		return response;
+	}
+	
+	/**
+	 * setResponse
+	 * Replaces the collision response that response() applies to every pair - collide by default
+	 * 
+	 * @param responder
+	 */
+	
+	public void setResponse(PairVisitor responder) {
+		this.responder = responder;
+	}
+	
+	/**
+	 * collide
+	 * Collision response between the agents of two handles - redistributes their velocities along the line between their centers,
+	 * as quadTree.getVelocity1/getVelocity2 do, in scalar math so nothing is allocated. Results are the same bit for bit,
+	 * quirks included: the "dot product" adds the components instead of multiplying them, and the projection divides by dist.
+	 * So it does not conserve energy - a crowd speeds up until it leaves the area, and agents sharing a center get NaN.
+	 * Velocities are rounded like Shape.getDx/getDy before the response
+	 * 
+	 * @param ag1
+	 * @param ag2
+	 */
+	
+	public void collide(int ag1, int ag2) {
+		
+		double dx1 = (int)Math.round(dx[ag1]);
+		double dy1 = (int)Math.round(dy[ag1]);
+		double dx2 = (int)Math.round(dx[ag2]);
+		double dy2 = (int)Math.round(dy[ag2]);
+		
+		double px = x[ag1] - x[ag2];
+		double py = y[ag1] - y[ag2];
+		double dist = Math.sqrt(py*py + px*px);
+		
+		double scalar1 = ((dx1 - dx2) + px + ((dy1 - dy2) + py))/dist;
+		double scalar2 = ((dx2 - dx1) + (x[ag2] - x[ag1]) + ((dy2 - dy1) + (y[ag2] - y[ag1])))/dist;
+		
+		dx[ag1] = dx1 - px*scalar1;
+		dy[ag1] = dy1 - py*scalar1;
+		dx[ag2] = dx2 - (x[ag2] - x[ag1])*scalar2;
+		dy[ag2] = dy2 - (y[ag2] - y[ag1])*scalar2;
+		
+	}
+	
+	/**
+	 * settle
+	 * Collision response for resting contacts (see ContactCache.setResting) - perfectly inelastic: half of the relative velocity
+	 * along the line between the centers is taken from each agent, so both move alike along it and neither bounces back.
+	 * Agents already moving apart are left alone.
+	 *
+	 * @param ag1
+	 * @param ag2
+	 */
+
+	public void settle(int ag1, int ag2) {
+
+		double px = x[ag1] - x[ag2];
+		double py = y[ag1] - y[ag2];
+		double vx = dx[ag1] - dx[ag2];
+		double vy = dy[ag1] - dy[ag2];
+
+		double distSq = px*px + py*py;
+		double closing = vx*px + vy*py;
+
+		if (distSq == 0 || closing >= 0) {
+			return;
+		}
+
+		double scalar = 0.5*closing/distSq;
+
+		dx[ag1] -= scalar*px;
+		dy[ag1] -= scalar*py;
+		dx[ag2] += scalar*px;
+		dy[ag2] += scalar*py;
+
+	}
+
+	/**
+	 * setSize
+	 * Makes room for size agents and sets the number of agents - the caller fills the arrays (see TreeSnapshot)
+	 *
+	 * @param size
+	 */
+	
+	void setSize(int size) {
+		
+		if (size > x.length) {
+			grow(size);
+		}
+		
+		this.size = size;
+		
+	}
+	
+	private void grow(int capacity) {
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		dx = Arrays.copyOf(dx, capacity);
+		dy = Arrays.copyOf(dy, capacity);
+		radius = Arrays.copyOf(radius, capacity);
+	}
+
+}
@@ -0,0 +1,20 @@
+package quadtree;
+
+/*
+ * AgentVisitor
+ * Description: Callback of the range queries (SpatialTree.queryRect/queryCircle) - gets the handle of each agent found,
+ * so a query creates no objects. Positions and speeds of the handle are in the tree's AgentStore.
+ */
+
+public interface AgentVisitor {
+
+	/**
+	 * visit
+	 * Called once for every agent matching the query
+	 *
+	 * @param handle
+	 */
+
+	void visit(int handle);
+
+}
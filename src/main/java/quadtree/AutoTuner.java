@@ -0,0 +1,238 @@
+package quadtree;
+
+import java.util.Arrays;
+
+/*
+ * AutoTuner
+ * Description: Adjusts the split threshold and depth limit of a SpatialTree while it runs. The tree reports the cost of the
+ * phases of every tick (see tick); the tuner measures the current settings over a window of ticks, tries one move - split
+ * threshold or depth limit, one step up or down - over the next window, and keeps it if the median tick got cheaper by more
+ * than TOLERANCE, or goes back otherwise. The phase costs pick which move to try first: a tick spent mostly on pair tests
+ * asks for smaller leaves (lower threshold, deeper tree), a tick spent mostly relocating and restructuring asks for larger ones.
+ * Once every move has been turned down, the tuner rests for IDLE_WINDOWS windows, then starts over from the current settings,
+ * so it follows a map whose density changes. A tuner belongs to one tree, and allocates nothing after construction.
+ */
+
+public class AutoTuner {
+
+	static final int WINDOW = 60; //Default ticks per measurement - a second of the demo
+	static final int SETTLE = 2; //Ticks ignored after a change - the tree splits or collapses to the new settings on them
+	static final double TOLERANCE = 0.02; //Gain a move needs to be kept
+	static final int IDLE_WINDOWS = 10;
+
+	//Moves, as bits of rejected
+	private static final int LOWER_SPLIT = 0;
+	private static final int DEEPER = 1;
+	private static final int HIGHER_SPLIT = 2;
+	private static final int SHALLOWER = 3;
+
+	private final int minSplit;
+	private final int maxSplit;
+	private final int minLevel;
+	private final int maxLevel;
+
+	private long [] samples; //Cost of each tick of the current window
+	private long [] sorted; //Scratch copy of samples for the median
+	private int sampled;
+	private int skip; //Ticks left to ignore
+	private long collideCost; //Phase costs summed over the window
+	private long structureCost; //Relocation and update
+
+	private boolean trying; //The window measures a move rather than the settings it started from
+	private long baseline; //Median tick at the settings before the move
+	private int move = -1; //Move being tried
+	private int lastKept = -1; //Tried first next time, as long as it keeps paying
+	private int rejected; //Moves turned down since the last one kept
+	private int fromSplit; //Settings to go back to
+	private int fromLevel;
+	private int changes; //Moves kept so far
+
+	/**
+	 * AutoTuner Constructor
+	 * Initializes with the default window, a split threshold between 2 and 64 and any depth from 1 to MAX_LEVEL
+	 */
+
+	public AutoTuner() {
+		this(WINDOW, 2, 64, 1, quadTree.MAX_LEVEL);
+	}
+
+	/**
+	 * AutoTuner Constructor
+	 * Initializes with the number of ticks per measurement, and the bounds of both settings
+	 *
+	 * @param window
+	 * @param minSplit
+	 * @param maxSplit
+	 * @param minLevel
+	 * @param maxLevel at most MAX_LEVEL
+	 */
+
+	public AutoTuner(int window, int minSplit, int maxSplit, int minLevel, int maxLevel) {
+
+		if (window < 3 || minSplit < 2 || minSplit > maxSplit || minLevel < 0 || minLevel > maxLevel || maxLevel > quadTree.MAX_LEVEL) {
+			throw new IllegalArgumentException("bad AutoTuner bounds");
+		}
+
+		this.minSplit = minSplit;
+		this.maxSplit = maxSplit;
+		this.minLevel = minLevel;
+		this.maxLevel = maxLevel;
+		this.samples = new long[window];
+		this.sorted = new long[window];
+
+	}
+
+	/**
+	 * tick
+	 * Records the cost of one tick of the tree, and moves to the next window once this one is full
+	 *
+	 * @param tree
+	 * @param relocate nanoseconds spent moving shapes to their new node
+	 * @param update nanoseconds spent splitting and collapsing nodes
+	 * @param collide nanoseconds spent on pair tests and responses
+	 */
+
+	public void tick(SpatialTree tree, long relocate, long update, long collide) {
+
+		if (skip > 0) {
+			skip--;
+			return;
+		}
+
+		samples[sampled++] = relocate + update + collide;
+		structureCost += relocate + update;
+		collideCost += collide;
+
+		if (sampled < samples.length) {
+			return;
+		}
+
+		long median = median();
+		boolean finer = collideCost > structureCost;
+		sampled = 0;
+		structureCost = 0;
+		collideCost = 0;
+
+		if (trying) {
+
+			trying = false;
+
+			if (median < baseline*(1 - TOLERANCE)) {
+				lastKept = move;
+				rejected = 0;
+				changes++;
+			} else {
+				rejected |= 1 << move;
+				tree.setSplitThreshold(fromSplit);
+				tree.setMaxLevel(fromLevel);
+				skip = SETTLE;
+			}
+
+			return; //Measures the settings again before the next move - the load may have changed meanwhile
+
+		}
+
+		if (rejected == -1) { //Resting
+			rejected = 0;
+			return;
+		}
+
+		move = pick(tree, finer);
+
+		if (move < 0) {
+			rejected = -1;
+			skip = samples.length*(IDLE_WINDOWS-1);
+			return;
+		}
+
+		baseline = median;
+		fromSplit = tree.getSplitThreshold();
+		fromLevel = tree.getMaxLevel();
+		trying = true;
+		skip = SETTLE;
+
+		if (move == LOWER_SPLIT || move == HIGHER_SPLIT) {
+			int step = Math.max(fromSplit/4, 1);
+			tree.setSplitThreshold((move == LOWER_SPLIT) ? Math.max(fromSplit-step, minSplit) : Math.min(fromSplit+step, maxSplit));
+		} else {
+			tree.setMaxLevel((move == DEEPER) ? fromLevel+1 : fromLevel-1);
+		}
+
+	}
+
+	/**
+	 * pick
+	 * Chooses the next move to try - the last one kept, then the ones the phase costs point to, then the others -
+	 * skipping moves turned down and moves out of bounds
+	 *
+	 * @param tree
+	 * @param finer pair tests cost more than relocation and update
+	 * @return the move, or -1 if none is left
+	 */
+
+	private int pick(SpatialTree tree, boolean finer) {
+
+		if (lastKept >= 0 && allowed(tree, lastKept)) {
+			return lastKept;
+		}
+
+		int first = finer ? LOWER_SPLIT : HIGHER_SPLIT;
+
+		for (int i = 0; i < 4; i++) {
+
+			int m = (first + i) % 4;
+
+			if (allowed(tree, m)) {
+				return m;
+			}
+
+		}
+
+		return -1;
+
+	}
+
+	private boolean allowed(SpatialTree tree, int m) {
+
+		if ((rejected & (1 << m)) != 0) {
+			return false;
+		}
+
+		switch (m) {
+		case LOWER_SPLIT:
+			return tree.getSplitThreshold() > minSplit;
+		case HIGHER_SPLIT:
+			return tree.getSplitThreshold() < maxSplit;
+		case DEEPER:
+			return tree.getMaxLevel() < maxLevel;
+		default:
+			return tree.getMaxLevel() > minLevel;
+		}
+
+	}
+
+	/**
+	 * median
+	 * Median cost of the window - one slow tick (a GC pause, a restructure) does not decide a move
+	 *
+	 * @return
+	 */
+
+	private long median() {
+		System.arraycopy(samples, 0, sorted, 0, samples.length);
+		Arrays.sort(sorted);
+		return sorted[sorted.length/2];
+	}
+
+	/**
+	 * getChanges
+	 * Returns the number of moves kept so far
+	 *
+	 * @return
+	 */
+
+	public int getChanges() {
+		return changes;
+	}
+
+}
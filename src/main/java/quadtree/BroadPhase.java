@@ -0,0 +1,132 @@
+package quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/*
+ * BroadPhase
+ * Description: Spatial index over the agents of an AgentStore - insert, relocate after a move, range queries and the
+ * enumeration of intersecting pairs. The collision response only consumes pairs (AgentStore.response), so the trees and
+ * UniformGrid can be swapped per workload, and SimulationEngine runs on any of them.
+ */
+
+public interface BroadPhase {
+
+	/**
+	 * addAgent
+	 * Adds a shape - the shape becomes a view on the AgentStore of the broad phase. Shapes already in it are ignored.
+	 *
+	 * @param agent
+	 * @throws IllegalStateException if the shape is in another broad phase
+	 */
+
+	void addAgent(Shape agent);
+
+	/**
+	 * addAll
+	 * Adds a batch of shapes and rebuilds the index over all of them in one pass. Shapes already in it are ignored.
+	 *
+	 * @param batch
+	 * @throws IllegalStateException if a shape is in another broad phase
+	 */
+
+	void addAll(Collection<? extends Shape> batch);
+
+	/**
+	 * removeAgent
+	 * Removes a shape - the shape takes its state back from the store and can be added again. The last shape in the store
+	 * takes over the handle of the removed one, so handles stay 0 to size-1. Shapes of another broad phase are ignored.
+	 *
+	 * @param agent
+	 */
+
+	void removeAgent(Shape agent);
+
+	/**
+	 * getList
+	 * Returns every shape/agent of the broad phase, in handle order
+	 *
+	 * @return
+	 */
+
+	ArrayList<Shape> getList();
+
+	/**
+	 * getStore
+	 * Returns the store holding the state of every shape
+	 *
+	 * @return
+	 */
+
+	AgentStore getStore();
+
+	/**
+	 * relocateAll
+	 * Brings the index up to date after the positions in the store changed
+	 */
+
+	void relocateAll();
+
+	/**
+	 * queryRect
+	 * Calls the visitor with every agent whose center is inside the rectangle (edges included)
+	 * Reflects the positions of the last relocation (relocateAll, or updateTree and step for trees)
+	 *
+	 * @param x0 lower corner
+	 * @param y0
+	 * @param x1 higher corner
+	 * @param y1
+	 * @param visitor
+	 */
+
+	void queryRect(double x0, double y0, double x1, double y1, AgentVisitor visitor);
+
+	/**
+	 * queryCircle
+	 * Calls the visitor with every agent whose center is within r of (cx, cy)
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param r
+	 * @param visitor
+	 */
+
+	void queryCircle(double cx, double cy, double r, AgentVisitor visitor);
+
+	/**
+	 * findPairs
+	 * Calls the visitor with every pair of agents that AgentStore.intersects, each pair once, in an order fixed by the
+	 * index (so runs are reproducible). Candidates come from the last relocation, positions from the store.
+	 *
+	 * @param visitor getStore().response() resolves the collisions
+	 */
+
+	void findPairs(PairVisitor visitor);
+
+	/**
+	 * step
+	 * One full simulation step - moves every shape (bouncing off the walls), relocates them, then resolves every pair
+	 * The trees run a fused version that finds the displaced shapes while moving them
+	 *
+	 * @param maxWidth walls of the area
+	 * @param maxHeight
+	 */
+
+	default void step(int maxWidth, int maxHeight) {
+		getStore().move(maxWidth, maxHeight);
+		relocateAll();
+		findPairs(getStore().response());
+	}
+
+	/**
+	 * fillGrid
+	 * Writes x, y, width and height of every node (or occupied cell) into rects, as long as they fit, and returns their number
+	 * Lets a renderer draw the grid from a copy, without touching the index
+	 *
+	 * @param rects
+	 * @return
+	 */
+
+	int fillGrid(int [] rects);
+
+}
@@ -0,0 +1,453 @@
+package quadtree;
+
+import java.util.Arrays;
+
+/*
+ * ContactCache
+ * Description: Keeps the contacts of checkCollide from tick to tick, replaying those of shapes that stayed in place (see SpatialTree.setContactCache)
+ */
+
+public class ContactCache {
+
+	static final int SPARSE = 4; //Dirty shapes are tested one by one while fewer than 1 in SPARSE - leaf by leaf otherwise
+
+	private int tick; //Generation of the current tick
+
+	//State of each handle on the last tick - a handle from tracked on is new
+	private double [] lastX = new double[0];
+	private double [] lastY = new double[0];
+	private int [] lastLeaf = new int[0];
+	private int tracked;
+
+	private boolean [] dirty = new boolean[0]; //Moved, changed leaf or new since the last tick
+	private int [] dirtyList = new int[0]; //Dirty handles, in increasing order
+	private int dirtyLen;
+
+	//Pairs in contact, as ag1 << 32 | ag2 in the order they were resolved, with the tick each contact started on - the
+	//pairs of the last tick until replay, then those of this tick, built in next
+	private long [] pairs = new long[64];
+	private int [] since = new int[64];
+	private int pairLen;
+	private long [] nextPairs = new long[64];
+	private int [] nextSince = new int[64];
+	private int nextLen;
+
+	//Contacts of the last tick with a dirty shape, chained by their lower handle through their index in pairs - so a contact
+	//found again keeps its age (-1 ends a chain)
+	private int [] head = new int[0];
+	private int [] chain = new int[64];
+
+	private double toleranceSq; //Squared distance a shape can move and stay clean - see setTolerance
+
+	private int restTicks; //Resting response - off while 0
+	private double restSpeed;
+
+	private int replayed; //Counts of the last tick
+
+	//Current store and response
+	private AgentStore store;
+	private PairVisitor visitor;
+	private final PairVisitor found = this::found;
+
+	/**
+	 * setResting
+	 * Settles the pairs in contact for at least ticks ticks whose relative speed is at most speed, instead of passing them
+	 * to the collision response. 0 ticks turns the resting response off (the default).
+	 *
+	 * @param ticks
+	 * @param speed
+	 */
+
+	public void setResting(int ticks, double speed) {
+
+		if (ticks < 0 || !(speed >= 0)) {
+			throw new IllegalArgumentException("bad resting contact settings");
+		}
+
+		this.restTicks = ticks;
+		this.restSpeed = speed;
+
+	}
+
+	/**
+	 * setTolerance
+	 * Keeps a shape clean - its contacts replayed, itself not tested - while it stays within distance of where it was last
+	 * tested, in the same leaf. 0 (the default) keeps only the shapes that did not move at all, and finds exactly the pairs
+	 * of findPairs. Above 0, slow shapes cost nothing until they have moved that far, but the contacts between clean shapes
+	 * are those of where they were tested: a contact can last until the shapes are 2*distance past touching, and a new one
+	 * can start up to 2*distance late.
+	 *
+	 * @param distance
+	 */
+
+	public void setTolerance(double distance) {
+
+		if (!(distance >= 0)) {
+			throw new IllegalArgumentException("bad contact tolerance");
+		}
+
+		this.toleranceSq = distance*distance;
+
+	}
+
+	/**
+	 * age
+	 * Returns the number of ticks two agents have been in contact for, up to the last checkCollide - a scan of the contacts
+	 *
+	 * @param ag1
+	 * @param ag2
+	 * @return 0 if they are not in contact
+	 */
+
+	public int age(int ag1, int ag2) {
+
+		long key = key(ag1, ag2);
+
+		for (int p = 0; p < pairLen; p++) {
+			if (key((int)(pairs[p] >>> 32), (int)pairs[p]) == key) {
+				return tick - since[p] + 1;
+			}
+		}
+
+		return 0;
+
+	}
+
+	/**
+	 * size
+	 * Returns the number of pairs in contact after the last checkCollide
+	 *
+	 * @return
+	 */
+
+	public int size() {
+		return pairLen;
+	}
+
+	/**
+	 * getReplayedPairs
+	 * Returns the number of pairs of the last checkCollide that were replayed rather than tested
+	 *
+	 * @return
+	 */
+
+	public int getReplayedPairs() {
+		return replayed;
+	}
+
+	/**
+	 * getTestedAgents
+	 * Returns the number of shapes of the last checkCollide that moved, changed leaf or were new, and were tested against
+	 * their leaf
+	 *
+	 * @return
+	 */
+
+	public int getTestedAgents() {
+		return dirtyLen;
+	}
+
+	/**
+	 * clear
+	 * Forgets every shape and every contact - the next checkCollide tests every shape again
+	 */
+
+	public void clear() {
+
+		tick++;
+		tracked = 0;
+		pairLen = 0;
+
+	}
+
+	/**
+	 * beginTick
+	 * Starts the generation of a checkCollide - the tree then marks every handle with its leaf, calls replay, then findPairs
+	 * for every dirty handle if sparse, for every leaf otherwise, and endTick
+	 *
+	 * @param store
+	 * @param visitor collision response
+	 */
+
+	void beginTick(AgentStore store, PairVisitor visitor) {
+
+		this.store = store;
+		this.visitor = visitor;
+		tick++;
+		replayed = 0;
+		dirtyLen = 0;
+
+		int n = store.size();
+
+		if (lastX.length < n) {
+			int capacity = Math.max(n, 2*lastX.length);
+			lastX = Arrays.copyOf(lastX, capacity);
+			lastY = Arrays.copyOf(lastY, capacity);
+			lastLeaf = Arrays.copyOf(lastLeaf, capacity);
+			dirty = new boolean[capacity];
+			dirtyList = new int[capacity];
+			head = new int[capacity];
+			Arrays.fill(head, -1);
+		}
+
+	}
+
+	/**
+	 * mark
+	 * Records the leaf a handle is in on this tick, marking it dirty if it moved further than the tolerance, changed leaf or
+	 * is new - a dirty handle is tested, and its position kept as the one to measure the next moves from. Every handle is
+	 * marked, in increasing order.
+	 *
+	 * @param handle
+	 * @param leaf id of the leaf, unique among the leaves of the tree
+	 */
+
+	void mark(int handle, int leaf) {
+
+		double x = store.x[handle];
+		double y = store.y[handle];
+		double mx = x - lastX[handle];
+		double my = y - lastY[handle];
+
+		if (handle >= tracked || !(mx*mx + my*my <= toleranceSq) || leaf != lastLeaf[handle]) {
+			dirty[handle] = true;
+			dirtyList[dirtyLen++] = handle;
+			lastX[handle] = x;
+			lastY[handle] = y;
+			lastLeaf[handle] = leaf;
+		} else {
+			dirty[handle] = false;
+		}
+
+	}
+
+	/**
+	 * replay
+	 * Resolves again every contact of the last tick between two clean shapes - they are still in the same leaf, within the
+	 * tolerance of where they were tested. Contacts with a dirty shape are set aside for findPairs.
+	 */
+
+	void replay() {
+
+		nextLen = 0;
+
+		if (chain.length < pairLen) {
+			chain = new int[pairs.length];
+		}
+
+		for (int p = 0; p < pairLen; p++) {
+
+			int ag1 = (int)(pairs[p] >>> 32);
+			int ag2 = (int)pairs[p];
+
+			if (dirty[ag1] || dirty[ag2]) {
+				int low = Math.min(ag1, ag2);
+				chain[p] = head[low];
+				head[low] = p;
+			} else {
+				contact(ag1, ag2, since[p]);
+			}
+
+		}
+
+		replayed = nextLen;
+
+	}
+
+	/**
+	 * findPairs
+	 * Tests the dirty shapes of a leaf - the whole leaf as NarrowPhase.findPairs does when they all are
+	 *
+	 * @param list handles of the leaf
+	 * @param len number of handles used in list
+	 * @param slotOf index of each handle in list
+	 * @param sweepThreshold occupancy from which the leaf is sorted and swept
+	 * @return number of pairs tested
+	 */
+
+	long findPairs(int [] list, int len, int [] slotOf, int sweepThreshold) {
+
+		if (dirtyLen == store.size()) { //Every shape moved
+			return NarrowPhase.findPairs(store, list, len, slotOf, sweepThreshold, found);
+		}
+
+		int count = 0;
+
+		for (int i = 0; i < len; i++) {
+			if (dirty[list[i]]) {
+				count++;
+			}
+		}
+
+		if (count == len) {
+			return NarrowPhase.findPairs(store, list, len, slotOf, sweepThreshold, found);
+		}
+
+		long tests = 0;
+
+		for (int i = 0; i < len && count > 0; i++) {
+			if (dirty[list[i]]) {
+				tests += findPairs(list[i], list, len, slotOf);
+				count--;
+			}
+		}
+
+		return tests;
+
+	}
+
+	/**
+	 * sparse
+	 * Whether few enough shapes are dirty to test them one by one, through findPairs(handle, ...), rather than leaf by leaf
+	 *
+	 * @return
+	 */
+
+	boolean sparse() {
+		return SPARSE*dirtyLen < store.size();
+	}
+
+	/**
+	 * findPairs
+	 * Tests a dirty shape against every other shape of its leaf - skipping the dirty ones of lower handle, which tested it
+	 * already - and resolves each pair found, in the order of the leaf list as NarrowPhase.findPairs would
+	 *
+	 * @param handle
+	 * @param list handles of its leaf
+	 * @param len number of handles used in list
+	 * @param slotOf index of each handle in list
+	 * @return number of pairs tested
+	 */
+
+	long findPairs(int handle, int [] list, int len, int [] slotOf) {
+
+		int slot = slotOf[handle];
+		long tests = 0;
+
+		for (int s = 0; s < len; s++) {
+
+			int other = list[s];
+
+			if (other == handle || (dirty[other] && other < handle)) {
+				continue;
+			}
+
+			tests++;
+
+			if (s > slot ? store.intersects(handle, other) : store.intersects(other, handle)) {
+				if (s > slot) {
+					found(handle, other);
+				} else {
+					found(other, handle);
+				}
+			}
+
+		}
+
+		return tests;
+
+	}
+
+	/**
+	 * endTick
+	 * Makes the contacts of this tick the ones to replay on the next - the contacts that were not found again are dropped
+	 */
+
+	void endTick() {
+
+		for (int p = 0; p < pairLen; p++) { //Empties the chains
+			head[Math.min((int)(pairs[p] >>> 32), (int)pairs[p])] = -1;
+		}
+
+		long [] oldPairs = pairs;
+		int [] oldSince = since;
+		pairs = nextPairs;
+		since = nextSince;
+		pairLen = nextLen;
+		nextPairs = oldPairs;
+		nextSince = oldSince;
+
+		tracked = store.size();
+		visitor = null;
+
+	}
+
+	/**
+	 * dirtyCount
+	 * Returns the number of dirty handles of this tick
+	 *
+	 * @return
+	 */
+
+	int dirtyCount() {
+		return dirtyLen;
+	}
+
+	/**
+	 * dirty
+	 * Returns the dirty handle at index k, in increasing order
+	 *
+	 * @param k
+	 * @return
+	 */
+
+	int dirty(int k) {
+		return dirtyList[k];
+	}
+
+	/**
+	 * found
+	 * Resolves a pair found by testing - a contact of the last tick keeps its age
+	 */
+
+	private void found(int ag1, int ag2) {
+
+		long key = key(ag1, ag2);
+		int p = head[Math.min(ag1, ag2)];
+
+		while (p >= 0 && key((int)(pairs[p] >>> 32), (int)pairs[p]) != key) {
+			p = chain[p];
+		}
+
+		contact(ag1, ag2, p < 0 ? tick : since[p]);
+
+	}
+
+	/**
+	 * contact
+	 * Keeps a pair in contact on this tick - since the tick the contact started on - then resolves it: settled if resting,
+	 * by the collision response otherwise
+	 */
+
+	private void contact(int ag1, int ag2, int began) {
+
+		if (nextLen == nextPairs.length) {
+			nextPairs = Arrays.copyOf(nextPairs, 2*nextLen);
+			nextSince = Arrays.copyOf(nextSince, 2*nextLen);
+		}
+
+		nextPairs[nextLen] = (long)ag1 << 32 | (ag2 & 0xffffffffL);
+		nextSince[nextLen++] = began;
+
+		if (restTicks > 0 && tick - began + 1 >= restTicks && resting(ag1, ag2)) {
+			store.settle(ag1, ag2);
+		} else {
+			visitor.visit(ag1, ag2);
+		}
+
+	}
+
+	private boolean resting(int ag1, int ag2) {
+
+		double vx = store.dx[ag1] - store.dx[ag2];
+		double vy = store.dy[ag1] - store.dy[ag2];
+
+		return vx*vx + vy*vy <= restSpeed*restSpeed;
+
+	}
+
+	private static long key(int ag1, int ag2) {
+		return ag1 < ag2 ? (long)ag1 << 32 | ag2 : (long)ag2 << 32 | ag1;
+	}
+
+}
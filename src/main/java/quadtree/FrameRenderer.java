@@ -0,0 +1,395 @@
+package quadtree;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/*
+ * FrameRenderer
+ * Description: Draws the agents of a TreeView (or of a snapshot, with views off) and the node bounds of a snapshot into
+ * one reusable BufferedImage, writing its pixels directly - no Graphics call per agent. Only the agents in the viewport are
+ * drawn, each stamped from a disc of row spans computed once per radius in pixels, and nodes outside the viewport, or under
+ * MIN_NODE pixels across, are skipped.
+ * The viewport is a world position at the top left corner of the image and a zoom (pixels per world unit), moved with
+ * pan and zoomAt. One renderer per drawing thread.
+ */
+
+public class FrameRenderer {
+
+	static final int BACKGROUND = 0xEEEEEE;
+	static final int AGENT = 0x0000FF;
+	static final int GRID = 0x000000;
+	static final double MIN_NODE = 2; //Pixels - smaller nodes are not outlined
+	static final int MAX_DISC = 256; //Pixels - larger discs are computed row by row as they are drawn, not kept
+
+	private final int maxWidth;
+	private final int maxHeight;
+	private final int floor; //Height of the bar drawn under the area
+
+	private BufferedImage image;
+	private int [] pixels;
+	private int width;
+	private int height;
+
+	private double originX; //World position at the top left corner of the image
+	private double originY;
+	private double zoom = 1; //Pixels per world unit
+
+	private int [][] discs = new int[16][]; //Half width of each row of a disc, by radius in pixels up to MAX_DISC - filled by need
+
+	//Agent being drawn by stamp
+	private TreeView view;
+	private final AgentVisitor stamp = this::stamp;
+
+	/**
+	 * Constructor for FrameRenderer
+	 *
+	 * @param maxWidth walls of the area
+	 * @param maxHeight
+	 * @param floor height of the bar drawn under the area, in world units (0 for none)
+	 */
+
+	public FrameRenderer(int maxWidth, int maxHeight, int floor) {
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.floor = floor;
+		resize(1, 1);
+	}
+
+	/**
+	 * resize
+	 * Sets the size of the image - a new image only if the size changed
+	 *
+	 * @param width
+	 * @param height
+	 */
+
+	public void resize(int width, int height) {
+
+		width = Math.max(width, 1);
+		height = Math.max(height, 1);
+
+		if (width == this.width && height == this.height) {
+			return;
+		}
+
+		this.width = width;
+		this.height = height;
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+	}
+
+	/**
+	 * setViewport
+	 * Shows the world from (x, y) at the top left corner, at a zoom
+	 *
+	 * @param x
+	 * @param y
+	 * @param zoom pixels per world unit
+	 */
+
+	public void setViewport(double x, double y, double zoom) {
+
+		if (!(zoom > 0)) {
+			throw new IllegalArgumentException("zoom must be positive");
+		}
+
+		this.originX = x;
+		this.originY = y;
+		this.zoom = zoom;
+
+	}
+
+	/**
+	 * fit
+	 * Zooms and centers so the whole area, floor included, fits the image
+	 */
+
+	public void fit() {
+
+		double z = Math.min(width/(double)maxWidth, height/(double)(maxHeight + floor));
+		setViewport((maxWidth - width/z)/2, (maxHeight + floor - height/z)/2, z);
+
+	}
+
+	/**
+	 * pan
+	 * Moves the viewport by a number of pixels - the world follows the mouse when dragged
+	 *
+	 * @param dx
+	 * @param dy
+	 */
+
+	public void pan(double dx, double dy) {
+		originX -= dx/zoom;
+		originY -= dy/zoom;
+	}
+
+	/**
+	 * zoomAt
+	 * Zooms by a factor, keeping the world position under pixel (px, py) in place
+	 *
+	 * @param factor
+	 * @param px
+	 * @param py
+	 */
+
+	public void zoomAt(double factor, double px, double py) {
+
+		double x = originX + px/zoom;
+		double y = originY + py/zoom;
+		double z = zoom*factor;
+		setViewport(x - px/z, y - py/z, z);
+
+	}
+
+	public double getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * render
+	 * Draws a frame - background, floor, the agents of the view in the viewport, then the node bounds in the viewport
+	 *
+	 * @param view agents to draw - with views off (SimulationEngine.acquireView returns null), see render(Snapshot)
+	 * @param grid x, y, width and height of each node (SimulationEngine.Snapshot.grid), or null
+	 * @param gridCount
+	 * @return the image - drawn over by the next render
+	 * @throws IllegalArgumentException if view is null
+	 */
+
+	public BufferedImage render(TreeView view, int [] grid, int gridCount) {
+
+		if (view == null) {
+			throw new IllegalArgumentException("no view - views are off, render the snapshot instead");
+		}
+
+		clear();
+
+		int r = view.getMaxRadius();
+
+		this.view = view;
+		view.querySlots(originX - r, originY - r, originX + width/zoom + r, originY + height/zoom + r, stamp); //Culled by the view's index - only agents that reach the image
+		this.view = null;
+
+		drawNodes(grid, gridCount);
+
+		return image;
+
+	}
+
+	/**
+	 * render
+	 * Draws a frame from a snapshot alone, for engines with views off - the same as render(TreeView...), but every agent of
+	 * the snapshot is tested against the viewport instead of looked up in an index
+	 *
+	 * @param frame
+	 * @return the image - drawn over by the next render
+	 */
+
+	public BufferedImage render(SimulationEngine.Snapshot frame) {
+
+		clear();
+
+		double x1 = originX + width/zoom;
+		double y1 = originY + height/zoom;
+
+		for (int i = 0; i < frame.count; i++) {
+
+			int r = frame.radius[i];
+
+			if (frame.x[i] + r >= originX && frame.x[i] - r <= x1 && frame.y[i] + r >= originY && frame.y[i] - r <= y1) {
+				stamp(frame.x[i], frame.y[i], r);
+			}
+
+		}
+
+		drawNodes(frame.grid, frame.gridCount);
+
+		return image;
+
+	}
+
+	/**
+	 * clear
+	 * Background and floor
+	 */
+
+	private void clear() {
+
+		Arrays.fill(pixels, BACKGROUND);
+
+		if (floor > 0) {
+			fillRect(screenX(0), screenY(maxHeight), screenX(maxWidth), screenY(maxHeight + floor), GRID);
+		}
+
+	}
+
+	/**
+	 * drawNodes
+	 * Outlines the nodes in the viewport that are large enough to see
+	 *
+	 * @param grid x, y, width and height of each node, or null
+	 * @param gridCount
+	 */
+
+	private void drawNodes(int [] grid, int gridCount) {
+
+		double x1 = originX + width/zoom;
+		double y1 = originY + height/zoom;
+
+		for (int i = 0; grid != null && i < gridCount && 4*i+3 < grid.length; i++) {
+
+			int gx = grid[4*i];
+			int gy = grid[4*i+1];
+			int gw = grid[4*i+2];
+			int gh = grid[4*i+3];
+
+			if (gx > x1 || gy > y1 || gx + gw < originX || gy + gh < originY || Math.min(gw, gh)*zoom < MIN_NODE) {
+				continue; //Out of sight, or too small to tell from its neighbours
+			}
+
+			drawRect(screenX(gx), screenY(gy), screenX(gx + gw), screenY(gy + gh), GRID);
+
+		}
+
+	}
+
+	/**
+	 * stamp
+	 * Draws one agent of the view - a disc of row spans, or a single pixel once smaller than that
+	 *
+	 * @param k slot of the agent in the view's index
+	 */
+
+	private void stamp(int k) {
+		stamp(view.slotX(k), view.slotY(k), view.slotRadius(k));
+	}
+
+	/**
+	 * stamp
+	 * Draws one agent at a world position
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius in world units
+	 */
+
+	private void stamp(double x, double y, int radius) {
+
+		int cx = screenX(x);
+		int cy = screenY(y);
+		int r = (int)Math.min(radius*zoom + 0.5, Integer.MAX_VALUE/2); //Rows are clipped to the image below, whatever the zoom
+
+		if (r == 0) {
+
+			if (cx >= 0 && cx < width && cy >= 0 && cy < height) {
+				pixels[cy*width + cx] = AGENT;
+			}
+
+			return;
+
+		}
+
+		int [] disc = (r <= MAX_DISC) ? disc(r) : null;
+
+		for (int dy = Math.max(-r, -cy); dy <= r && cy + dy < height; dy++) {
+
+			int half = (disc != null) ? disc[Math.abs(dy)] : (int)Math.sqrt((r + 0.5)*(r + 0.5) - (double)dy*dy);
+			int from = (int)Math.max((long)cx - half, 0);
+			int to = (int)Math.min((long)cx + half, width - 1);
+			int row = (cy + dy)*width;
+
+			for (int px = from; px <= to; px++) {
+				pixels[row + px] = AGENT;
+			}
+
+		}
+
+	}
+
+	/**
+	 * disc
+	 * Half width of each row of a disc of radius r pixels (at most MAX_DISC), from its middle row out
+	 *
+	 * @param r
+	 * @return
+	 */
+
+	private int [] disc(int r) {
+
+		if (r >= discs.length) {
+			discs = Arrays.copyOf(discs, Math.max(r+1, 2*discs.length));
+		}
+
+		if (discs[r] == null) {
+
+			int [] disc = new int[r+1];
+
+			for (int dy = 0; dy <= r; dy++) {
+				disc[dy] = (int)Math.sqrt((r + 0.5)*(r + 0.5) - dy*dy);
+			}
+
+			discs[r] = disc;
+
+		}
+
+		return discs[r];
+
+	}
+
+	private void fillRect(int x0, int y0, int x1, int y1, int color) {
+
+		x0 = Math.max(x0, 0);
+		y0 = Math.max(y0, 0);
+		x1 = Math.min(x1, width);
+		y1 = Math.min(y1, height);
+
+		for (int y = y0; y < y1; y++) {
+			Arrays.fill(pixels, y*width + x0, y*width + Math.max(x1, x0), color);
+		}
+
+	}
+
+	/**
+	 * drawRect
+	 * Outline of a rectangle, clipped to the image
+	 */
+
+	private void drawRect(int x0, int y0, int x1, int y1, int color) {
+
+		int left = Math.max(x0, 0);
+		int right = Math.min(x1, width - 1);
+
+		if (y0 >= 0 && y0 < height && left <= right) {
+			Arrays.fill(pixels, y0*width + left, y0*width + right + 1, color);
+		}
+
+		if (y1 >= 0 && y1 < height && left <= right) {
+			Arrays.fill(pixels, y1*width + left, y1*width + right + 1, color);
+		}
+
+		for (int y = Math.max(y0, 0); y <= Math.min(y1, height - 1); y++) {
+
+			if (x0 >= 0 && x0 < width) {
+				pixels[y*width + x0] = color;
+			}
+
+			if (x1 >= 0 && x1 < width) {
+				pixels[y*width + x1] = color;
+			}
+
+		}
+
+	}
+
+	private int screenX(double x) {
+		return (int)Math.floor((x - originX)*zoom);
+	}
+
+	private int screenY(double y) {
+		return (int)Math.floor((y - originY)*zoom);
+	}
+
+}
@@ -0,0 +1,1480 @@
+package quadtree;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * LinearQuadTree
+ * Description: Flat, array-backed version of quadTree. Nodes have no objects - each one is a pooled slot in parallel arrays,
+ * found through a hash table keyed by its Morton (locational) code: a leading 1 bit followed by the interleaved y/x bits of the
+ * node's cell at its level. Root is code 1, and the children of code c are (c << 2) | 0..3.
+ * Split and collapse use separate thresholds, so nodes hovering around one count do not split and collapse on alternating ticks.
+ */
+
+public class LinearQuadTree implements SpatialTree {
+	
+	static final int MAX_LEVEL = quadTree.MAX_LEVEL; //Resolution of the Morton codes - the bound of setMaxLevel
+	static final int SPLIT_THRESHOLD = 5; //Same as quadTree
+	static final int COLLAPSE_THRESHOLD = 3;
+	static final int LIST_LENGTH = quadTree.LIST_LENGTH; //Starting length of agentList
+	
+	int maxBoundX;
+	int maxBoundY;
+	private int splitThreshold;
+	private int collapseThreshold; //Used as min(collapseThreshold, splitThreshold) - setSplitThreshold may go below it
+	private int maxLevel = MAX_LEVEL; //Deepest level a node can split to
+	private AutoTuner tuner; //Adjusts splitThreshold and maxLevel from the cost of each step when set
+	private ContactCache contacts; //Carries contacts across ticks when set
+	private int sweepThreshold = NarrowPhase.SWEEP_THRESHOLD; //Leaves with at least that many shapes are sorted and swept
+	private double scaleX; //Converts a position to a cell at MAX_LEVEL
+	private double scaleY;
+	
+	private AgentStore store = new AgentStore();
+	private TreeMetrics metrics = new TreeMetrics(store.response());
+	private ArrayList<Shape> agents = new ArrayList<Shape>(); //Flat registry of every shape (index is the handle)
+	private int [] leafOf = new int[16]; //Slot of the leaf holding each handle
+	private int [] slotOf = new int[16]; //Index of each handle in the agentList of its leaf
+	private int [] displaced = new int[16]; //Handles found by the last integrate
+	private int displacedLen;
+	
+	private ForkJoinPool pool; //Runs integrate in parallel when set - see setParallel
+	private int granularity;
+	private ParallelRange integrateTasks = new ParallelRange(this::integrateChunk); //Reused from tick to tick
+	private int [] chunkLen = new int[1]; //Handles found in each chunk of integrate - chunk c writes displaced from c*chunk on
+	private int chunk; //Agents per chunk in the running integrate
+	private int integrateWidth; //Bounds of the running integrate
+	private int integrateHeight;
+	
+	//Counts of the current tick, for metrics
+	private int relocations; //Shapes moved to another leaf - displaced, or moved by a split or collapse
+	private int splits;
+	private int collapses;
+	private long pairTests;
+	
+	//Node slots - a freed slot keeps its agentList so the next node using it does not allocate
+	private int [] code = new int[64];
+	private int [] count = new int[64]; //Number of shapes in the subtree of the node
+	private boolean [] leaf = new boolean[64];
+	private int [][] agentList = new int[64][];
+	private int [] agentLen = new int[64];
+	private int slotTop; //Slots below slotTop have been used at least once
+	private int [] freeSlots = new int[64];
+	private int freeTop;
+	
+	//Open addressing hash table, Morton code -> slot (code 0 marks an empty entry)
+	private int [] keys = new int[128];
+	private int [] values = new int[128];
+	private int keyCount;
+	
+	/**
+	 * LinearQuadTree Constructor
+	 * Initializes with the dimensions of the grid, and the default split and collapse thresholds
+	 *
+	 * @param maxBX
+	 * @param maxBY
+	 */
+	
+	LinearQuadTree(int maxBX, int maxBY) {
+		this(maxBX, maxBY, SPLIT_THRESHOLD, COLLAPSE_THRESHOLD);
+	}
+	
+	/**
+	 * LinearQuadTree Constructor
+	 * Initializes with the dimensions of the grid - leaves split once they hold splitThreshold shapes, and nodes collapse
+	 * once they hold fewer than collapseThreshold shapes (collapseThreshold <= splitThreshold)
+	 *
+	 * @param maxBX
+	 * @param maxBY
+	 * @param splitThreshold
+	 * @param collapseThreshold
+	 */
+	
+	LinearQuadTree(int maxBX, int maxBY, int splitThreshold, int collapseThreshold) {
+		this(maxBX, maxBY, splitThreshold, collapseThreshold, MAX_LEVEL);
+	}
+	
+	/**
+	 * LinearQuadTree Constructor
+	 * Same as above, with the deepest level a node can reach (at most MAX_LEVEL)
+	 *
+	 * @param maxBX
+	 * @param maxBY
+	 * @param splitThreshold
+	 * @param collapseThreshold
+	 * @param maxLevel
+	 */
+	
+	LinearQuadTree(int maxBX, int maxBY, int splitThreshold, int collapseThreshold, int maxLevel) {
+		
+		if (collapseThreshold > splitThreshold) {
+			throw new IllegalArgumentException("collapseThreshold must not exceed splitThreshold");
+		}
+		
+		this.maxBoundX = maxBX;
+		this.maxBoundY = maxBY;
+		this.splitThreshold = splitThreshold;
+		this.collapseThreshold = collapseThreshold;
+		setMaxLevel(maxLevel);
+		this.scaleX = (1 << MAX_LEVEL)/(double)maxBX;
+		this.scaleY = (1 << MAX_LEVEL)/(double)maxBY;
+		
+		newNode(1, true); //Root
+		
+	}
+	
+	public void addAgent(Shape agent) {
+		
+		if (agent.isIn(store)) {
+			return;
+		}
+		
+		int handle = agent.bind(store);
+		agents.add(agent);
+		
+		if (handle == leafOf.length) {
+			leafOf = Arrays.copyOf(leafOf, handle*2);
+			slotOf = Arrays.copyOf(slotOf, handle*2);
+		}
+		
+		insert(handle, morton(handle), 1, 0);
+		
+	}
+	
+	/**
+	 * removeAgent
+	 * Removes a shape from its leaf, uncounting it up to the root, then moves the last shape of the store into its handle
+	 * (see BroadPhase.removeAgent). Not between integrate and relocateDisplaced - the displaced handles would be stale.
+	 *
+	 * @param agent
+	 */
+	
+	public void removeAgent(Shape agent) {
+		
+		if (!agent.isIn(store)) {
+			return;
+		}
+		
+		int handle = agent.getHandle();
+		int s = leafOf[handle];
+		
+		removeAt(s, slotOf[handle]);
+		
+		for (int c = code[s] >>> 2; c != 0; c >>>= 2) {
+			count[find(c)]--;
+		}
+		
+		agent.unbind();
+		
+		int moved = store.remove(handle);
+		Shape last = agents.remove(agents.size()-1);
+		
+		if (moved >= 0) { //The last shape takes the place of the removed one, in its store, in agents and in its leaf
+			last.rebind(handle);
+			agents.set(handle, last);
+			leafOf[handle] = leafOf[moved];
+			slotOf[handle] = slotOf[moved];
+			agentList[leafOf[handle]][slotOf[handle]] = handle;
+		}
+		
+		if (contacts != null) {
+			contacts.clear(); //Handles changed
+		}
+		
+	}
+	
+	/**
+	 * addAll
+	 * Adds a batch of shapes, then rebuilds the whole tree over every shape in one pass: handles are sorted by Morton code,
+	 * so the shapes of every node form a contiguous range, and nodes are created top-down from their ranges (see build)
+	 *
+	 * @param batch
+	 */
+	
+	public void addAll(Collection<? extends Shape> batch) {
+		
+		for (Shape agent : batch) {
+			
+			if (agent.isIn(store)) {
+				continue;
+			}
+			
+			int handle = agent.bind(store);
+			agents.add(agent);
+			
+			if (handle == leafOf.length) {
+				leafOf = Arrays.copyOf(leafOf, handle*2);
+				slotOf = Arrays.copyOf(slotOf, handle*2);
+			}
+			
+		}
+		
+		int n = store.size();
+		long [] sorted = new long[n]; //Morton code in the high bits, handle in the low ones
+		
+		for (int i = 0; i < n; i++) {
+			sorted[i] = ((long)morton(i) << 32) | i;
+		}
+		
+		Arrays.sort(sorted);
+		
+		for (int s = 0; s < slotTop; s++) { //Frees every node - their slots and agentLists are reused by build
+			if (code[s] != 0) {
+				freeNode(s);
+			}
+		}
+		
+		build(1, 0, sorted, 0, n);
+		
+	}
+	
+	/**
+	 * build
+	 * Creates a LinearQuadTree holding a batch of shapes, already subdivided
+	 *
+	 * @param maxBX
+	 * @param maxBY
+	 * @param batch
+	 * @return
+	 */
+	
+	public static LinearQuadTree build(int maxBX, int maxBY, Collection<? extends Shape> batch) {
+		LinearQuadTree tree = new LinearQuadTree(maxBX, maxBY);
+		tree.addAll(batch);
+		return tree;
+	}
+	
+	/**
+	 * build
+	 * Creates the node of code c from the Morton-sorted shapes in sorted[from..to) - a leaf, or, under the split rule of update,
+	 * an internal node whose subnodes are built from the 4 runs of the range with the same next 2 bits
+	 *
+	 * @param c
+	 * @param level
+	 * @param sorted
+	 * @param from
+	 * @param to
+	 */
+	
+	private void build(int c, int level, long [] sorted, int from, int to) {
+		
+		if (to - from < splitThreshold || level >= maxLevel) {
+			
+			int s = newNode(c, true);
+			
+			for (int i = from; i < to; i++) {
+				addList(s, (int)sorted[i]);
+			}
+			
+			return;
+			
+		}
+		
+		int s = newNode(c, false);
+		count[s] = to - from;
+		
+		int shift = 32 + 2*(MAX_LEVEL-level-1);
+		int i = from;
+		
+		for (int q = 0; q < 4; q++) {
+			
+			int end = i;
+			
+			while (end < to && ((sorted[end] >>> shift) & 3) == q) {
+				end++;
+			}
+			
+			build((c << 2) | q, level+1, sorted, i, end);
+			i = end;
+			
+		}
+		
+	}
+	
+	/**
+	 * nodeInts / writeNodes / readNodes
+	 * Node layout for TreeSnapshot - slot by slot rather than in preorder, as checkCollide and fillGrid go through the leaves
+	 * in slot order: slotTop, freeTop and the free slots, then for every slot its code (0 if free) and, for a used slot,
+	 * count, (agentLen << 1 | 1 if internal) and its agentList in order. The slots and the next ones handed out are then
+	 * the same as in the saved tree. readNodes rebuilds the nodes of a new tree whose store already holds every agent.
+	 */
+	
+	long nodeInts() {
+		
+		long ints = 2 + freeTop;
+		
+		for (int s = 0; s < slotTop; s++) {
+			ints += (code[s] == 0) ? 1 : 3 + agentLen[s];
+		}
+		
+		return ints;
+		
+	}
+	
+	void writeNodes(IntBuffer out) {
+		
+		out.put(slotTop).put(freeTop).put(freeSlots, 0, freeTop);
+		
+		for (int s = 0; s < slotTop; s++) {
+			
+			out.put(code[s]);
+			
+			if (code[s] != 0) {
+				out.put(count[s]).put((agentLen[s] << 1) | (leaf[s] ? 0 : 1));
+				out.put(agentList[s], 0, agentLen[s]);
+			}
+			
+		}
+		
+	}
+	
+	void readNodes(IntBuffer in) {
+		
+		int n = store.size();
+		
+		if (leafOf.length < n) {
+			leafOf = Arrays.copyOf(leafOf, n);
+			slotOf = Arrays.copyOf(slotOf, n);
+		}
+		
+		for (int i = agents.size(); i < n; i++) {
+			agents.add(new Shape(store, i));
+		}
+		
+		freeNode(find(1)); //The empty root of the new tree
+		freeTop = 0;
+		
+		int top = in.get();
+		int free = in.get();
+		
+		if (top < 0 || free < 0 || free > top) {
+			throw new IllegalArgumentException("bad slot counts");
+		}
+		
+		if (top > code.length) {
+			growSlots(top);
+		}
+		
+		if (free > freeSlots.length) {
+			freeSlots = new int[free];
+		}
+		
+		in.get(freeSlots, 0, free);
+		freeTop = free;
+		slotTop = top;
+		int held = 0;
+		
+		for (int s = 0; s < top; s++) {
+			
+			code[s] = in.get();
+			
+			if (code[s] == 0) {
+				continue;
+			}
+			
+			count[s] = in.get();
+			int header = in.get();
+			int len = header >>> 1;
+			leaf[s] = (header & 1) == 0;
+			agentLen[s] = 0;
+			put(code[s], s);
+			
+			if (agentList[s] == null) {
+				agentList[s] = new int[Math.max(len, LIST_LENGTH)];
+			}
+			
+			if (!leaf[s] && len != 0) {
+				throw new IllegalArgumentException("internal node " + code[s] + " holds agents");
+			}
+			
+			for (int i = 0; i < len; i++) {
+				
+				int handle = in.get();
+				
+				if (handle < 0 || handle >= n) {
+					throw new IllegalArgumentException("bad handle " + handle);
+				}
+				
+				if (agentLen[s] == agentList[s].length) {
+					agentList[s] = Arrays.copyOf(agentList[s], Math.max(len, LIST_LENGTH));
+				}
+				
+				slotOf[handle] = agentLen[s];
+				leafOf[handle] = s;
+				agentList[s][agentLen[s]++] = handle;
+				
+			}
+			
+			held += len;
+			
+		}
+		
+		if (held != n || find(1) < 0 || count[find(1)] != n) {
+			throw new IllegalArgumentException("node layout does not hold every agent");
+		}
+		
+	}
+	
+	int getCollapseThreshold() {
+		return collapseThreshold;
+	}
+	
+	int getSweepThreshold() {
+		return sweepThreshold;
+	}
+	
+	public int agentC() {
+		return agents.size();
+	}
+	
+	public ArrayList<Shape> getList() {
+		return agents;
+	}
+	
+	public AgentStore getStore() {
+		return store;
+	}
+	
+	/**
+	 * nodeCount
+	 * Number of nodes in the tree, leaves and internal
+	 */
+	
+	int nodeCount() {
+		return keyCount;
+	}
+	
+	public void updateTree() {
+		long start = System.nanoTime();
+		
+		collectDisplaced(); //Finds displaced shapes - same as findChanged, into a reused buffer instead of a new list
+		
+		tick(start); //Updates shape placement in leaves, splits and collapses nodes, updates collisions
+	}
+	
+	/**
+	 * relocateAll
+	 * First phases of updateTree - moves the displaced shapes to their new leaf, then splits and collapses nodes
+	 */
+	
+	public void relocateAll() {
+		collectDisplaced(); //Shapes that left their leaf since the last update
+		
+		relocateDisplaced();
+		
+		update();
+	}
+	
+	/**
+	 * step
+	 * One full simulation step - integrate, relocateDisplaced, update and checkCollide
+	 *
+	 * @param maxWidth
+	 * @param maxHeight
+	 */
+	
+	public void step(int maxWidth, int maxHeight) {
+		long start = System.nanoTime();
+		
+		integrate(maxWidth, maxHeight); //Moves the shapes and finds displaced ones on the way - no scan of the leaves
+		
+		tick(start);
+	}
+	
+	/**
+	 * tick
+	 * Same as quadTree.tick - relocateDisplaced, update and checkCollide, timed for the tuner and the metrics
+	 *
+	 * @param start
+	 */
+	
+	private void tick(long start) {
+		
+		long found = System.nanoTime();
+		int displacedCount = displacedLen;
+		
+		relocations = 0;
+		splits = 0;
+		collapses = 0;
+		
+		relocateDisplaced(); //Updates shape placement in leaves
+		long relocated = System.nanoTime();
+		
+		update(); //Splits and collapses nodes
+		long updated = System.nanoTime();
+		
+		checkCollide(); //Updates speed properties of shapes - updates collisions
+		long collided = System.nanoTime();
+		
+		if (tuner != null) {
+			tuner.tick(this, relocated - start, updated - relocated, collided - updated);
+		}
+		
+		if (metrics.isEnabled()) {
+			
+			metrics.startCensus();
+			
+			for (int s = 0; s < slotTop; s++) {
+				if (code[s] != 0) {
+					metrics.node(level(code[s]), leaf[s], agentLen[s]);
+				}
+			}
+			
+			metrics.record(found - start, relocated - found, updated - relocated, collided - updated, displacedCount, relocations, splits, collapses, pairTests);
+			
+		}
+		
+	}
+	
+	public TreeMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * integrate
+	 * Moves every shape, comparing the Morton code of its new position with the code of its leaf, in chunks of handles like
+	 * quadTree.integrate - in parallel when a pool is set. The chunks are packed in order afterwards, so the displaced
+	 * shapes come out in handle order whatever the number of threads.
+	 *
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @return number of displaced shapes
+	 */
+	
+	public int integrate(int maxWidth, int maxHeight) {
+		
+		int n = store.size();
+		chunk = (pool == null) ? Math.max(n, 1) : granularity;
+		int chunks = (n + chunk - 1)/chunk;
+		integrateWidth = maxWidth;
+		integrateHeight = maxHeight;
+		
+		if (displaced.length < n) {
+			displaced = new int[leafOf.length];
+		}
+		
+		if (chunkLen.length < chunks) {
+			chunkLen = new int[Math.max(chunks, chunkLen.length*2)];
+		}
+		
+		if (pool == null || chunks <= 1) {
+			for (int c = 0; c < chunks; c++) {
+				integrateChunk(c);
+			}
+		} else {
+			integrateTasks.run(pool, chunks);
+		}
+		
+		displacedLen = (chunks > 0) ? chunkLen[0] : 0;
+		
+		for (int c = 1; c < chunks; c++) {
+			System.arraycopy(displaced, c*chunk, displaced, displacedLen, chunkLen[c]);
+			displacedLen += chunkLen[c];
+		}
+		
+		return displacedLen;
+		
+	}
+	
+	/**
+	 * integrateChunk
+	 * Moves the shapes of chunk c and records the displaced ones from c*chunk on
+	 *
+	 * @param c
+	 */
+	
+	private void integrateChunk(int c) {
+		
+		int start = c*chunk;
+		int end = Math.min(start + chunk, store.size());
+		int len = 0;
+		
+		for (int i = start; i < end; i++) {
+			
+			store.move(i, integrateWidth, integrateHeight);
+			
+			int s = leafOf[i];
+			int level = level(code[s]);
+			
+			if ((morton(i) >>> 2*(MAX_LEVEL-level)) != (code[s] ^ (1 << 2*level))) {
+				displaced[start + len++] = i;
+			}
+			
+		}
+		
+		chunkLen[c] = len;
+		
+	}
+	
+	/**
+	 * collectDisplaced
+	 * Scans the leaf slots like findChanged, recording the displaced shapes for relocateDisplaced
+	 */
+	
+	private void collectDisplaced() {
+		
+		if (displaced.length < store.size()) {
+			displaced = new int[leafOf.length];
+		}
+		
+		displacedLen = 0;
+		
+		for (int s = 0; s < slotTop; s++) {
+			
+			if (!leaf[s] || code[s] == 0) {
+				continue;
+			}
+			
+			int level = level(code[s]);
+			int cell = code[s] ^ (1 << 2*level);
+			
+			for (int i = 0; i < agentLen[s]; i++) {
+				if ((morton(agentList[s][i]) >>> 2*(MAX_LEVEL-level)) != cell) {
+					displaced[displacedLen++] = agentList[s][i];
+				}
+			}
+			
+		}
+		
+	}
+	
+	public void relocateDisplaced() {
+		
+		for (int i = 0; i < displacedLen; i++) {
+			relocate(displaced[i]);
+		}
+		
+		relocations += displacedLen;
+		displacedLen = 0;
+		
+	}
+	
+	/**
+	 * findChanged
+	 * Scans every leaf slot (no recursion) - a shape is displaced when the Morton code of its position no longer starts with its leaf's code
+	 *
+	 * @return
+	 */
+	
+	public ArrayList<Shape> findChanged() {
+		
+		ArrayList<Shape> removeList = new ArrayList<Shape>();
+		
+		for (int s = 0; s < slotTop; s++) {
+			
+			if (!leaf[s] || code[s] == 0) {
+				continue;
+			}
+			
+			int level = level(code[s]);
+			int cell = code[s] ^ (1 << 2*level);
+			
+			for (int i = 0; i < agentLen[s]; i++) {
+				if ((morton(agentList[s][i]) >>> 2*(MAX_LEVEL-level)) != cell) {
+					removeList.add(agents.get(agentList[s][i]));
+				}
+			}
+			
+		}
+		
+		return removeList;
+		
+	}
+	
+	public void manageNode(ArrayList<Shape> removeList) {
+		
+		for (int i = 0; i < removeList.size(); i++) {
+			relocate(removeList.get(i).getHandle());
+		}
+		
+	}
+	
+	/**
+	 * relocate
+	 * Moves a displaced agent to its new leaf - the common ancestor of the old and new leaf is found from the highest bit where
+	 * their Morton codes differ, then the agent is uncounted up to it and inserted again below it
+	 *
+	 * @param handle
+	 */
+	
+	public void relocate(int handle) {
+		
+		int s = leafOf[handle];
+		int level = level(code[s]);
+		int m = morton(handle);
+		int diff = (code[s] ^ (1 << 2*level)) ^ (m >>> 2*(MAX_LEVEL-level));
+		
+		if (diff == 0) {
+			return;
+		}
+		
+		int ancestorLevel = level - (32 - Integer.numberOfLeadingZeros(diff) + 1)/2; //Each level is 2 bits
+		int c = code[s];
+		
+		removeAt(s, slotOf[handle]);
+		
+		for (int l = level-1; l >= ancestorLevel; l--) {
+			c >>>= 2;
+			count[find(c)]--; //Includes the common ancestor - insert counts the agent back into it
+		}
+		
+		insert(handle, m, c, ancestorLevel);
+		
+	}
+	
+	/**
+	 * update
+	 * Splits leaves holding splitThreshold+ shapes (up to maxLevel), and collapses nodes holding fewer than collapseThreshold,
+	 * or at maxLevel or deeper after setMaxLevel
+	 */
+	
+	public void update() {
+		update(1, 0);
+	}
+	
+	private void update(int c, int level) {
+		
+		int s = find(c);
+		
+		if (leaf[s]) {
+			if (count[s] >= splitThreshold && level < maxLevel) {
+				relocations += count[s];
+				splits++;
+				split(s, level);
+			}
+			return;
+		}
+		
+		if (count[s] < Math.min(collapseThreshold, splitThreshold) || level >= maxLevel) {
+			relocations += count[s];
+			collapses++;
+			collapse(s);
+			return;
+		}
+		
+		for (int q = 0; q < 4; q++) {
+			update((c << 2) | q, level+1);
+		}
+		
+	}
+	
+	public void queryRect(double x0, double y0, double x1, double y1, AgentVisitor visitor) {
+		query(1, 0, 0, 0, cellX(x0), cellY(y0), cellX(x1), cellY(y1), x0, y0, x1, y1, -1, visitor, null, 0);
+	}
+	
+	public int queryRect(double x0, double y0, double x1, double y1, int [] out) {
+		return query(1, 0, 0, 0, cellX(x0), cellY(y0), cellX(x1), cellY(y1), x0, y0, x1, y1, -1, null, out, 0);
+	}
+	
+	public void queryCircle(double cx, double cy, double r, AgentVisitor visitor) {
+		if (r < 0) {
+			return; //r < 0 marks a rectangle in query
+		}
+		query(1, 0, 0, 0, cellX(cx-r), cellY(cy-r), cellX(cx+r), cellY(cy+r), cx, cy, cx, cy, r, visitor, null, 0);
+	}
+	
+	public int queryCircle(double cx, double cy, double r, int [] out) {
+		if (r < 0) {
+			return 0;
+		}
+		return query(1, 0, 0, 0, cellX(cx-r), cellY(cy-r), cellX(cx+r), cellY(cy+r), cx, cy, cx, cy, r, null, out, 0);
+	}
+	
+	/**
+	 * query
+	 * Range query below the node of code c, whose cell is (ix, iy) at its level. Subtrees are pruned in cell space against the
+	 * cells cx0..cx1, cy0..cy1 covered by the query (clamped like morton, so shapes outside the grid are still found), and shapes
+	 * are tested exactly in the leaves: center inside x0..x1, y0..y1 if r < 0, else within r of (x0, y0)
+	 *
+	 * @return n plus the number of shapes found - they go to the visitor if there is one, else into out from index n
+	 */
+	
+	private int query(int c, int level, int ix, int iy, int cx0, int cy0, int cx1, int cy1,
+			double x0, double y0, double x1, double y1, double r, AgentVisitor visitor, int [] out, int n) {
+		
+		int shift = MAX_LEVEL - level;
+		
+		if ((ix << shift) > cx1 || ((ix+1) << shift) <= cx0 || (iy << shift) > cy1 || ((iy+1) << shift) <= cy0) {
+			return n;
+		}
+		
+		int s = find(c);
+		
+		if (!leaf[s]) {
+			for (int q = 0; q < 4; q++) {
+				n = query((c << 2) | q, level+1, 2*ix + (q & 1), 2*iy + (q >>> 1), cx0, cy0, cx1, cy1, x0, y0, x1, y1, r, visitor, out, n);
+			}
+			return n;
+		}
+		
+		for (int i = 0; i < agentLen[s]; i++) {
+			
+			int handle = agentList[s][i];
+			double x = store.x[handle];
+			double y = store.y[handle];
+			boolean inside;
+			
+			if (r < 0) {
+				inside = x >= x0 && x <= x1 && y >= y0 && y <= y1;
+			} else {
+				inside = (x-x0)*(x-x0) + (y-y0)*(y-y0) <= r*r;
+			}
+			
+			if (!inside) {
+				continue;
+			}
+			
+			if (visitor != null) {
+				visitor.visit(handle);
+			} else if (n < out.length) {
+				out[n] = handle;
+			}
+			
+			n++;
+			
+		}
+		
+		return n;
+		
+	}
+	
+	/**
+	 * nearest
+	 * k nearest agents to (x, y) - best first over node codes, as in quadTree.nearest
+	 *
+	 * @param x
+	 * @param y
+	 * @param k
+	 * @param result
+	 * @return
+	 */
+	
+	public NearestResult nearest(double x, double y, int k, NearestResult result) {
+		
+		result.reset(Math.max(k, 0));
+		
+		if (k > 0) {
+			result.pushNode(null, 1, 0);
+		}
+		
+		while (result.nodeLen > 0) {
+			
+			int c = result.codes[0];
+			double d = result.nodeDists[0];
+			result.popNode();
+			
+			if (d > result.bound()) { //Every node left is at least as far
+				break;
+			}
+			
+			int s = find(c);
+			
+			if (leaf[s]) {
+				
+				for (int i = 0; i < agentLen[s]; i++) {
+					
+					int handle = agentList[s][i];
+					double dx = store.x[handle] - x;
+					double dy = store.y[handle] - y;
+					
+					result.offer(handle, dx*dx + dy*dy);
+					
+				}
+				
+				continue;
+				
+			}
+			
+			for (int q = 0; q < 4; q++) {
+				
+				int child = (c << 2) | q;
+				double dc = distSq(child, x, y);
+				
+				if (count[find(child)] > 0 && dc <= result.bound()) {
+					result.pushNode(null, child, dc);
+				}
+				
+			}
+			
+		}
+		
+		result.finish();
+		
+		return result;
+		
+	}
+	
+	/**
+	 * distSq
+	 * Squared distance from a point to the cell of a node (0 inside). Sides on the edge of the grid reach out to infinity,
+	 * since shapes outside the grid are kept in the closest cell.
+	 *
+	 * @param c
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	
+	private double distSq(int c, double x, double y) {
+		
+		int level = level(c);
+		int cell = c ^ (1 << 2*level);
+		int ix = compact(cell);
+		int iy = compact(cell >>> 1);
+		int last = (1 << level) - 1;
+		double w = maxBoundX/(double)(1 << level);
+		double h = maxBoundY/(double)(1 << level);
+		
+		double lowX = (ix == 0) ? Double.NEGATIVE_INFINITY : ix*w;
+		double highX = (ix == last) ? Double.POSITIVE_INFINITY : (ix+1)*w;
+		double lowY = (iy == 0) ? Double.NEGATIVE_INFINITY : iy*h;
+		double highY = (iy == last) ? Double.POSITIVE_INFINITY : (iy+1)*h;
+		
+		double dx = Math.max(Math.max(lowX - x, x - highX), 0);
+		double dy = Math.max(Math.max(lowY - y, y - highY), 0);
+		
+		return dx*dx + dy*dy;
+		
+	}
+	
+	/**
+	 * setParallel
+	 * See SpatialTree - runs integrate over ranges of granularity handles; checkCollide stays sequential
+	 * 
+	 * @param pool
+	 * @param granularity
+	 */
+	
+	public void setParallel(ForkJoinPool pool, int granularity) {
+		this.pool = pool;
+		this.granularity = Math.max(granularity, 1);
+	}
+	
+	/**
+	 * setSweepThreshold
+	 * See SpatialTree
+	 * 
+	 * @param occupancy
+	 */
+	
+	public void setSweepThreshold(int occupancy) {
+		this.sweepThreshold = Math.max(occupancy, 2);
+	}
+	
+	public void setSplitThreshold(int shapes) {
+		this.splitThreshold = Math.max(shapes, 2);
+	}
+	
+	public int getSplitThreshold() {
+		return splitThreshold;
+	}
+	
+	public void setMaxLevel(int level) {
+		this.maxLevel = Math.max(0, Math.min(level, MAX_LEVEL));
+	}
+	
+	public int getMaxLevel() {
+		return maxLevel;
+	}
+	
+	public void setAutoTuner(AutoTuner tuner) {
+		this.tuner = tuner;
+	}
+	
+	public void setContactCache(ContactCache cache) {
+		
+		if (cache != null) {
+			cache.clear();
+		}
+		
+		this.contacts = cache;
+		
+	}
+	
+	/**
+	 * checkCollide
+	 * Same pair loop as quadTree.checkCollide, over the leaf slots directly - through the ContactCache when set, the slot
+	 * naming the leaf of each shape
+	 */
+	
+	public void checkCollide() {
+		
+		PairVisitor visitor = metrics.isEnabled() ? metrics.response() : store.response(); //Counts contacts while the metrics are on
+		
+		if (contacts == null) {
+			findPairs(visitor);
+			return;
+		}
+		
+		pairTests = 0;
+		contacts.beginTick(store, visitor);
+		
+		for (int handle = 0; handle < store.size(); handle++) {
+			contacts.mark(handle, leafOf[handle]);
+		}
+		
+		contacts.replay();
+		
+		if (contacts.sparse()) { //Few dirty shapes - one by one
+			for (int k = 0; k < contacts.dirtyCount(); k++) {
+				int handle = contacts.dirty(k);
+				int s = leafOf[handle];
+				pairTests += contacts.findPairs(handle, agentList[s], agentLen[s], slotOf);
+			}
+		} else {
+			for (int s = 0; s < slotTop; s++) {
+				if (leaf[s] && code[s] != 0) {
+					pairTests += contacts.findPairs(agentList[s], agentLen[s], slotOf, sweepThreshold);
+				}
+			}
+		}
+		
+		contacts.endTick();
+		
+	}
+	
+	/**
+	 * findPairs
+	 * Calls the visitor with every intersecting pair, leaf slot by leaf slot
+	 * 
+	 * @param visitor
+	 */
+	
+	public void findPairs(PairVisitor visitor) {
+		
+		pairTests = 0;
+		
+		for (int s = 0; s < slotTop; s++) {
+			
+			if (!leaf[s] || code[s] == 0) {
+				continue;
+			}
+			
+			pairTests += NarrowPhase.findPairs(store, agentList[s], agentLen[s], slotOf, sweepThreshold, visitor);
+			
+		}
+		
+	}
+	
+	public void drawGrid(Graphics g) {
+		
+		g.setColor(Color.BLACK);
+		
+		for (int s = 0; s < slotTop; s++) {
+			
+			if (code[s] == 0) {
+				continue;
+			}
+			
+			int level = level(code[s]);
+			int cell = code[s] ^ (1 << 2*level);
+			double w = maxBoundX/(double)(1 << level);
+			double h = maxBoundY/(double)(1 << level);
+			
+			g.drawRect((int)Math.round(compact(cell)*w), (int)Math.round(compact(cell >>> 1)*h), (int)Math.round(w), (int)Math.round(h));
+			
+		}
+		
+	}
+	
+	public int fillGrid(int [] rects) {
+		
+		int n = 0;
+		
+		for (int s = 0; s < slotTop; s++) {
+			
+			if (code[s] == 0) {
+				continue;
+			}
+			
+			if (4*n+4 <= rects.length) {
+				int level = level(code[s]);
+				int cell = code[s] ^ (1 << 2*level);
+				double w = maxBoundX/(double)(1 << level);
+				double h = maxBoundY/(double)(1 << level);
+				rects[4*n] = (int)Math.round(compact(cell)*w);
+				rects[4*n+1] = (int)Math.round(compact(cell >>> 1)*h);
+				rects[4*n+2] = (int)Math.round(w);
+				rects[4*n+3] = (int)Math.round(h);
+			}
+			
+			n++;
+			
+		}
+		
+		return n;
+		
+	}
+	
+	/**
+	 * insert
+	 * Descends from the node of a code down to the leaf containing the agent, counting it in every node on the way
+	 *
+	 * @param handle
+	 * @param m Morton code of the agent at MAX_LEVEL
+	 * @param c code of the starting node
+	 * @param level level of the starting node
+	 */
+	
+	private void insert(int handle, int m, int c, int level) {
+		
+		while (true) {
+			
+			int s = find(c);
+			
+			if (leaf[s]) {
+				addList(s, handle);
+				return;
+			}
+			
+			count[s]++;
+			level++;
+			c = (1 << 2*level) | (m >>> 2*(MAX_LEVEL-level));
+			
+		}
+		
+	}
+	
+	private void split(int s, int level) {
+		
+		int c = code[s];
+		
+		for (int q = 0; q < 4; q++) {
+			newNode((c << 2) | q, true);
+		}
+		
+		leaf[s] = false;
+		
+		int [] list = agentList[s];
+		int shift = 2*(MAX_LEVEL-level-1);
+		
+		for (int i = 0; i < agentLen[s]; i++) {
+			int child = find((c << 2) | ((morton(list[i]) >>> shift) & 3));
+			addList(child, list[i]);
+		}
+		
+		agentLen[s] = 0;
+		
+	}
+	
+	private void collapse(int s) {
+		
+		int c = code[s];
+		count[s] = 0;
+		
+		for (int q = 0; q < 4; q++) {
+			gather((c << 2) | q, s);
+		}
+		
+		leaf[s] = true;
+		
+	}
+	
+	/**
+	 * gather
+	 * Moves the shapes of every leaf under a node into the target slot, freeing the node and its subtree
+	 *
+	 * @param c
+	 * @param target
+	 */
+	
+	private void gather(int c, int target) {
+		
+		int s = find(c);
+		
+		if (leaf[s]) {
+			for (int i = 0; i < agentLen[s]; i++) {
+				addList(target, agentList[s][i]);
+			}
+		} else {
+			for (int q = 0; q < 4; q++) {
+				gather((c << 2) | q, target);
+			}
+		}
+		
+		freeNode(s);
+		
+	}
+	
+	private void addList(int s, int handle) {
+		
+		if (agentLen[s] == agentList[s].length) {
+			agentList[s] = Arrays.copyOf(agentList[s], agentLen[s]*2);
+		}
+		
+		slotOf[handle] = agentLen[s];
+		leafOf[handle] = s;
+		agentList[s][agentLen[s]++] = handle;
+		count[s]++;
+		
+	}
+	
+	private void removeAt(int s, int slot) {
+		
+		int last = agentList[s][--agentLen[s]];
+		
+		if (slot < agentLen[s]) {
+			agentList[s][slot] = last;
+			slotOf[last] = slot;
+		}
+		
+		count[s]--;
+		
+	}
+	
+	/**
+	 * newNode
+	 * Takes a slot from the pool (or a new one) for the node of a code
+	 *
+	 * @param c
+	 * @param isLeaf
+	 * @return slot
+	 */
+	
+	private int newNode(int c, boolean isLeaf) {
+		
+		int s;
+		
+		if (freeTop > 0) {
+			s = freeSlots[--freeTop];
+		} else {
+			if (slotTop == code.length) {
+				growSlots(slotTop*2);
+			}
+			s = slotTop++;
+			
+			if (agentList[s] == null) {
+				agentList[s] = new int[LIST_LENGTH];
+			}
+		}
+		
+		code[s] = c;
+		count[s] = 0;
+		leaf[s] = isLeaf;
+		agentLen[s] = 0;
+		put(c, s);
+		
+		return s;
+		
+	}
+	
+	private void freeNode(int s) {
+		
+		remove(code[s]);
+		code[s] = 0;
+		
+		if (freeTop == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeTop*2);
+		}
+		
+		freeSlots[freeTop++] = s;
+		
+	}
+	
+	private void growSlots(int capacity) {
+		code = Arrays.copyOf(code, capacity);
+		count = Arrays.copyOf(count, capacity);
+		leaf = Arrays.copyOf(leaf, capacity);
+		agentList = Arrays.copyOf(agentList, capacity);
+		agentLen = Arrays.copyOf(agentLen, capacity);
+		
+		for (int i = slotTop; i < capacity; i++) { //Lists for the new slots now, so a tree growing past its largest size does not allocate on every split
+			agentList[i] = new int[LIST_LENGTH];
+		}
+	}
+	
+	/**
+	 * morton
+	 * Morton code of the cell holding the agent's center at MAX_LEVEL - positions outside the grid go to the closest cell
+	 *
+	 * @param handle
+	 * @return
+	 */
+	
+	int morton(int handle) {
+		
+		return spread(cellX(store.x[handle])) | (spread(cellY(store.y[handle])) << 1);
+		
+	}
+	
+	/**
+	 * cellX
+	 * Column of the cell holding x at MAX_LEVEL - clamped to the grid
+	 *
+	 * @param x
+	 * @return
+	 */
+	
+	private int cellX(double x) {
+		return Math.max(0, Math.min((1 << MAX_LEVEL) - 1, (int)Math.floor(x*scaleX)));
+	}
+	
+	/**
+	 * cellY
+	 * Row of the cell holding y at MAX_LEVEL - clamped to the grid
+	 *
+	 * @param y
+	 * @return
+	 */
+	
+	private int cellY(double y) {
+		return Math.max(0, Math.min((1 << MAX_LEVEL) - 1, (int)Math.floor(y*scaleY)));
+	}
+	
+	/**
+	 * level
+	 * Level of the node of a code - half the position of its leading 1 bit
+	 *
+	 * @param c
+	 * @return
+	 */
+	
+	static int level(int c) {
+		return (31 - Integer.numberOfLeadingZeros(c)) >>> 1;
+	}
+	
+	/**
+	 * spread
+	 * Spreads the low 16 bits of v to the even bits of the result
+	 *
+	 * @param v
+	 * @return
+	 */
+	
+	static int spread(int v) {
+		v &= 0xFFFF;
+		v = (v | (v << 8)) & 0x00FF00FF;
+		v = (v | (v << 4)) & 0x0F0F0F0F;
+		v = (v | (v << 2)) & 0x33333333;
+		v = (v | (v << 1)) & 0x55555555;
+		return v;
+	}
+	
+	/**
+	 * compact
+	 * Inverse of spread - gathers the even bits of v
+	 *
+	 * @param v
+	 * @return
+	 */
+	
+	static int compact(int v) {
+		v &= 0x55555555;
+		v = (v | (v >>> 1)) & 0x33333333;
+		v = (v | (v >>> 2)) & 0x0F0F0F0F;
+		v = (v | (v >>> 4)) & 0x00FF00FF;
+		v = (v | (v >>> 8)) & 0x0000FFFF;
+		return v;
+	}
+	
+	//Hash table, Morton code -> slot
+	
+	private int find(int c) {
+		
+		int mask = keys.length - 1;
+		int i = hash(c) & mask;
+		
+		while (keys[i] != c) {
+			if (keys[i] == 0) {
+				return -1;
+			}
+			i = (i + 1) & mask;
+		}
+		
+		return values[i];
+		
+	}
+	
+	private void put(int c, int s) {
+		
+		if ((keyCount + 1)*2 > keys.length) {
+			rehash(keys.length*2);
+		}
+		
+		int mask = keys.length - 1;
+		int i = hash(c) & mask;
+		
+		while (keys[i] != 0 && keys[i] != c) {
+			i = (i + 1) & mask;
+		}
+		
+		if (keys[i] == 0) {
+			keyCount++;
+		}
+		
+		keys[i] = c;
+		values[i] = s;
+		
+	}
+	
+	/**
+	 * remove
+	 * Removes a code from the hash table, shifting back the entries of its probe run so lookups never stop early
+	 *
+	 * @param c
+	 */
+	
+	private void remove(int c) {
+		
+		int mask = keys.length - 1;
+		int i = hash(c) & mask;
+		
+		while (keys[i] != c) {
+			if (keys[i] == 0) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		
+		keyCount--;
+		
+		int j = i;
+		
+		while (true) {
+			
+			j = (j + 1) & mask;
+			
+			if (keys[j] == 0) {
+				break;
+			}
+			
+			int home = hash(keys[j]) & mask;
+			
+			if (((j - home) & mask) >= ((j - i) & mask)) { //Entry j may move back to the hole at i
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+			
+		}
+		
+		keys[i] = 0;
+		
+	}
+	
+	private void rehash(int capacity) {
+		
+		int [] oldKeys = keys;
+		int [] oldValues = values;
+		
+		keys = new int[capacity];
+		values = new int[capacity];
+		keyCount = 0;
+		
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+		
+	}
+	
+	private static int hash(int c) {
+		return (c * 0x9E3779B9) >>> 7;
+	}
+
+}
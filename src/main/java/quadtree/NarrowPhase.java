@@ -0,0 +1,282 @@
+package quadtree;
+
+/*
+ * NarrowPhase
+ * Description: Pair test inside one leaf (the narrow phase of checkCollide). Small leaves run the plain pair loop. Large ones
+ * - dense clusters stuck at MAX_LEVEL can hold hundreds of agents - first copy the rounded centers of the leaf into primitive
+ * arrays, then test each agent against every later one with scan, which VectorNarrowPhase runs SIMD-width at a time.
+ * Leaves above the sweep threshold of the tree are also sorted along their axis of greatest spread (sort and sweep), so scan
+ * only covers the agents whose interval on that axis overlaps. The sorted order is kept in the leaf's agentList, so the next
+ * tick only has to fix what moved, with an insertion sort.
+ * Contacts are resolved in the same order as the plain loop over the (possibly sorted) list, so every kernel gives the same velocities.
+ */
+
+abstract class NarrowPhase {
+
+	static final int MIN_BATCHED = 32; //Leaves with fewer agents skip the copy and run the plain loop
+	static final int SWEEP_THRESHOLD = 96; //Default occupancy from which a leaf is sorted and swept - see quadTree.setSweepThreshold
+
+	static final boolean VECTOR = !(create(true) instanceof ScalarNarrowPhase); //jdk.incubator.vector is there (--add-modules) and not turned off
+
+	private static final ThreadLocal<NarrowPhase> LOCAL = ThreadLocal.withInitial(() -> create(true)); //Scratch arrays are per thread - see quadTree.setParallel
+
+	//Rounded centers of the leaf, in list order - the same rounding as AgentStore.intersects
+	double [] cx = new double[64];
+	double [] cy = new double[64];
+	private int [] hits = new int[64]; //Indexes into the leaf found by scan
+
+	/**
+	 * create
+	 * Returns the vector kernel if it can be used, the scalar one otherwise
+	 * The vector kernel is loaded by name so that a JVM without jdk.incubator.vector never links it. -Dquadtree.vector=false turns it off.
+	 *
+	 * @param vector false for the scalar kernel
+	 * @return
+	 */
+
+	static NarrowPhase create(boolean vector) {
+
+		if (vector && !"false".equals(System.getProperty("quadtree.vector"))) {
+			try {
+				return (NarrowPhase) Class.forName("quadtree.VectorNarrowPhase").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				//Module not resolved - fall back to the scalar kernel
+			}
+		}
+
+		return new ScalarNarrowPhase();
+
+	}
+
+	/**
+	 * findPairs
+	 * Calls the visitor with every intersecting pair of a leaf, pair by pair in list order
+	 *
+	 * @param store
+	 * @param list handles of the leaf
+	 * @param len number of handles used in list
+	 * @param slotOf index of each handle in list - kept up to date when the leaf is sorted
+	 * @param sweepThreshold occupancy from which the leaf is sorted and swept
+	 * @param visitor AgentStore.response to resolve each pair right away
+	 * @return number of pairs tested (see TreeMetrics)
+	 */
+
+	static long findPairs(AgentStore store, int [] list, int len, int [] slotOf, int sweepThreshold, PairVisitor visitor) {
+
+		if (len >= sweepThreshold) {
+			return LOCAL.get().sweepLeaf(store, list, len, slotOf, visitor);
+		} else if (len < MIN_BATCHED) {
+			for (int i = 0; i < len; i++) {
+				for (int a = i+1; a < len; a++) {
+					if (store.intersects(list[i], list[a])) {
+						visitor.visit(list[i], list[a]);
+					}
+				}
+			}
+		} else {
+			LOCAL.get().collideLeaf(store, list, len, visitor);
+		}
+
+		return (long)len*(len-1)/2;
+
+	}
+
+	/**
+	 * collideLeaf
+	 * Finds every intersecting pair of a leaf through scan
+	 *
+	 * @param store
+	 * @param list
+	 * @param len
+	 * @param out
+	 */
+
+	void collideLeaf(AgentStore store, int [] list, int len, PairVisitor out) {
+
+		gather(store, list, len);
+
+		for (int i = 0; i < len; i++) {
+			found(list, i, scan(store.x[list[i]], store.y[list[i]], store.radius[list[i]], i+1, len, hits), out);
+		}
+
+	}
+
+	/**
+	 * sweepLeaf
+	 * Same search as collideLeaf, after sorting the leaf along its axis of greatest spread - agent i is then only scanned
+	 * against the later agents up to the first one whose interval starts past its own
+	 *
+	 * @param store
+	 * @param list sorted in place
+	 * @param len
+	 * @param slotOf updated for every handle of list
+	 * @param out
+	 * @return number of pairs tested
+	 */
+
+	long sweepLeaf(AgentStore store, int [] list, int len, int [] slotOf, PairVisitor out) {
+
+		gather(store, list, len);
+
+		double lowX = Double.POSITIVE_INFINITY;
+		double highX = Double.NEGATIVE_INFINITY;
+		double lowY = Double.POSITIVE_INFINITY;
+		double highY = Double.NEGATIVE_INFINITY;
+
+		for (int k = 0; k < len; k++) {
+			lowX = Math.min(lowX, cx[k]);
+			highX = Math.max(highX, cx[k]);
+			lowY = Math.min(lowY, cy[k]);
+			highY = Math.max(highY, cy[k]);
+		}
+
+		boolean alongX = (highX - lowX >= highY - lowY);
+		double [] key = alongX ? cx : cy;
+		double [] other = alongX ? cy : cx;
+
+		for (int k = 1; k < len; k++) { //Insertion sort - close to linear while the list is still sorted from the last tick
+
+			double keyK = key[k];
+
+			if (key[k-1] <= keyK) {
+				continue;
+			}
+
+			double otherK = other[k];
+			int handle = list[k];
+			int j = k;
+
+			while (j > 0 && key[j-1] > keyK) {
+				key[j] = key[j-1];
+				other[j] = other[j-1];
+				list[j] = list[j-1];
+				j--;
+			}
+
+			key[j] = keyK;
+			other[j] = otherK;
+			list[j] = handle;
+
+		}
+
+		for (int k = 0; k < len; k++) {
+			slotOf[list[k]] = k;
+		}
+
+		long tests = 0;
+
+		for (int i = 0; i < len; i++) {
+
+			int ag1 = list[i];
+			int r = store.radius[ag1];
+			double high = (alongX ? store.x[ag1] : store.y[ag1]) + r;
+
+			int end = len; //First agent whose interval starts past the one of ag1 - key[a]-r > high from there on, the scan would reject them all
+			int low = i+1;
+
+			while (low < end) {
+
+				int mid = (low + end) >>> 1;
+
+				if (key[mid]-r <= high) {
+					low = mid+1;
+				} else {
+					end = mid;
+				}
+
+			}
+
+			found(list, i, scan(store.x[ag1], store.y[ag1], r, i+1, end, hits), out);
+			tests += end-i-1;
+
+		}
+
+		return tests;
+
+	}
+
+	/**
+	 * gather
+	 * Copies the rounded centers of the leaf into cx and cy
+	 */
+
+	private void gather(AgentStore store, int [] list, int len) {
+
+		if (cx.length < len) {
+			cx = new double[list.length];
+			cy = new double[list.length];
+			hits = new int[list.length];
+		}
+
+		for (int k = 0; k < len; k++) {
+			cx[k] = (int)Math.round(store.x[list[k]]);
+			cy[k] = (int)Math.round(store.y[list[k]]);
+		}
+
+	}
+
+	/**
+	 * found
+	 * Passes the pairs of agent i found by scan to out
+	 */
+
+	private void found(int [] list, int i, int count, PairVisitor out) {
+		for (int h = 0; h < count; h++) {
+			out.visit(list[i], list[hits[h]]);
+		}
+	}
+
+	/**
+	 * scan
+	 * Writes into hits, in increasing order, the index of every agent from..len-1 of the leaf that intersects an agent at
+	 * (x, y) with radius r - same test as AgentStore.intersects, on cx and cy
+	 *
+	 * @param x
+	 * @param y
+	 * @param r
+	 * @param from
+	 * @param len
+	 * @param hits
+	 * @return number of indexes written
+	 */
+
+	abstract int scan(double x, double y, int r, int from, int len, int [] hits);
+
+	/**
+	 * scanRange
+	 * Scalar scan - the whole of ScalarNarrowPhase, and the tail of VectorNarrowPhase
+	 *
+	 * @return number of indexes written, counting the n already there
+	 */
+
+	final int scanRange(double x, double y, int r, int from, int to, int [] hits, int n) {
+
+		double lowX = x - r;
+		double highX = x + r;
+		double lowY = y - r;
+		double highY = y + r;
+
+		for (int a = from; a < to; a++) {
+			if (cx[a]-r <= highX && cx[a]+r >= lowX && cy[a]+r >= lowY && cy[a]-r <= highY) {
+				hits[n++] = a;
+			}
+		}
+
+		return n;
+
+	}
+
+	/**
+	 * ScalarNarrowPhase
+	 * One agent at a time
+	 */
+
+	static final class ScalarNarrowPhase extends NarrowPhase {
+
+		int scan(double x, double y, int r, int from, int len, int [] hits) {
+			return scanRange(x, y, r, from, len, hits, 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,242 @@
+package quadtree;
+
+import java.util.Arrays;
+
+/*
+ * NearestResult
+ * Description: Result of SpatialTree.nearest - the k closest agents to a point, closest first. Also holds the scratch space of
+ * the search (the best k so far and the queue of nodes to visit), so a result reused across queries allocates nothing once
+ * it has grown to the largest k and queue seen. One result per thread.
+ */
+
+public class NearestResult {
+
+	//Best k so far - a max-heap on distance while searching, sorted closest first once done
+	private int [] handles = new int[16];
+	private double [] dists = new double[16];
+	private int size;
+	private int k;
+
+	//Queue of nodes to visit - a min-heap on the distance from the point to the node's bounds
+	Object [] nodes = new Object[64]; //quadTree.Node
+	int [] codes = new int[64]; //LinearQuadTree codes
+	double [] nodeDists = new double[64];
+	int nodeLen;
+
+	/**
+	 * size
+	 * Returns the number of agents found - k, unless the tree holds fewer
+	 *
+	 * @return
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * handle
+	 * Returns the handle of the i-th closest agent
+	 *
+	 * @param i
+	 * @return
+	 */
+
+	public int handle(int i) {
+		return handles[i];
+	}
+
+	/**
+	 * distSq
+	 * Returns the squared distance from the point to the center of the i-th closest agent
+	 *
+	 * @param i
+	 * @return
+	 */
+
+	public double distSq(int i) {
+		return dists[i];
+	}
+
+	/**
+	 * reset
+	 * Starts a new search for k agents
+	 *
+	 * @param k
+	 */
+
+	void reset(int k) {
+
+		if (handles.length < k) {
+			handles = new int[k];
+			dists = new double[k];
+		}
+
+		this.k = k;
+		size = 0;
+		nodeLen = 0;
+
+	}
+
+	/**
+	 * bound
+	 * Distance beyond which nothing can enter the result - the k-th best distance once k agents are found
+	 *
+	 * @return
+	 */
+
+	double bound() {
+		return (size < k) ? Double.POSITIVE_INFINITY : dists[0];
+	}
+
+	/**
+	 * offer
+	 * Keeps the agent if it is closer than the k-th best so far
+	 *
+	 * @param handle
+	 * @param d squared distance
+	 */
+
+	void offer(int handle, double d) {
+
+		if (size < k) {
+
+			int i = size++;
+
+			while (i > 0 && dists[(i-1)/2] < d) { //Sift up
+				handles[i] = handles[(i-1)/2];
+				dists[i] = dists[(i-1)/2];
+				i = (i-1)/2;
+			}
+
+			handles[i] = handle;
+			dists[i] = d;
+
+		} else if (k > 0 && d < dists[0]) {
+			siftDown(0, handle, d, size);
+		}
+
+	}
+
+	/**
+	 * finish
+	 * Sorts the best k closest first (heapsort in place), and drops the nodes left in the queue
+	 */
+
+	void finish() {
+
+		for (int i = 0; i < nodeLen; i++) {
+			nodes[i] = null;
+		}
+
+		nodeLen = 0;
+
+		for (int n = size-1; n > 0; n--) {
+			int handle = handles[n];
+			double d = dists[n];
+			handles[n] = handles[0];
+			dists[n] = dists[0];
+			siftDown(0, handle, d, n);
+		}
+
+	}
+
+	private void siftDown(int i, int handle, double d, int n) {
+
+		while (2*i+1 < n) {
+
+			int child = 2*i+1;
+
+			if (child+1 < n && dists[child+1] > dists[child]) {
+				child++;
+			}
+
+			if (dists[child] <= d) {
+				break;
+			}
+
+			handles[i] = handles[child];
+			dists[i] = dists[child];
+			i = child;
+
+		}
+
+		handles[i] = handle;
+		dists[i] = d;
+
+	}
+
+	/**
+	 * pushNode
+	 * Adds a node to the queue - node for quadTree, code for LinearQuadTree
+	 *
+	 * @param node
+	 * @param code
+	 * @param d squared distance from the point to the node
+	 */
+
+	void pushNode(Object node, int code, double d) {
+
+		if (nodeLen == nodeDists.length) {
+			nodes = Arrays.copyOf(nodes, nodeLen*2);
+			codes = Arrays.copyOf(codes, nodeLen*2);
+			nodeDists = Arrays.copyOf(nodeDists, nodeLen*2);
+		}
+
+		int i = nodeLen++;
+
+		while (i > 0 && nodeDists[(i-1)/2] > d) {
+			nodes[i] = nodes[(i-1)/2];
+			codes[i] = codes[(i-1)/2];
+			nodeDists[i] = nodeDists[(i-1)/2];
+			i = (i-1)/2;
+		}
+
+		nodes[i] = node;
+		codes[i] = code;
+		nodeDists[i] = d;
+
+	}
+
+	/**
+	 * popNode
+	 * Removes the closest node from the queue - read nodes[0], codes[0] and nodeDists[0] before calling
+	 */
+
+	void popNode() {
+
+		int n = --nodeLen;
+		Object node = nodes[n];
+		int code = codes[n];
+		double d = nodeDists[n];
+		nodes[n] = null;
+		int i = 0;
+
+		while (2*i+1 < n) {
+
+			int child = 2*i+1;
+
+			if (child+1 < n && nodeDists[child+1] < nodeDists[child]) {
+				child++;
+			}
+
+			if (nodeDists[child] >= d) {
+				break;
+			}
+
+			nodes[i] = nodes[child];
+			codes[i] = codes[child];
+			nodeDists[i] = nodeDists[child];
+			i = child;
+
+		}
+
+		if (n > 0) {
+			nodes[i] = node;
+			codes[i] = code;
+			nodeDists[i] = d;
+		}
+
+	}
+
+}
@@ -0,0 +1,62 @@
+package quadtree;
+
+import java.util.Arrays;
+
+/*
+ * PairList
+ * Description: Growable list of handle pairs, in the order they were found. Lets pair detection run apart from the
+ * collision response, which then applies the pairs in a fixed order.
+ */
+
+class PairList implements PairVisitor {
+
+	int [] pairs = new int[64]; //a0, b0, a1, b1, ...
+	int size; //Number of pairs
+
+	/**
+	 * add
+	 * Appends the pair (a, b)
+	 *
+	 * @param a
+	 * @param b
+	 */
+
+	void add(int a, int b) {
+
+		if (2*size+2 > pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairs.length*2);
+		}
+
+		pairs[2*size] = a;
+		pairs[2*size+1] = b;
+		size++;
+
+	}
+
+	public void visit(int ag1, int ag2) {
+		add(ag1, ag2);
+	}
+
+	/**
+	 * addAll
+	 * Appends every pair of another list, keeping their order
+	 *
+	 * @param other
+	 */
+
+	void addAll(PairList other) {
+
+		if (2*(size+other.size) > pairs.length) {
+			pairs = Arrays.copyOf(pairs, Math.max(pairs.length*2, 2*(size+other.size)));
+		}
+
+		System.arraycopy(other.pairs, 0, pairs, 2*size, 2*other.size);
+		size += other.size;
+
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+}
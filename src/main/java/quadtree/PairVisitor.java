@@ -0,0 +1,21 @@
+package quadtree;
+
+/*
+ * PairVisitor
+ * Description: Callback of BroadPhase.findPairs - gets the handles of each pair of intersecting agents. The collision response
+ * (AgentStore.response) is one; a PairList collects the pairs to resolve them later.
+ */
+
+public interface PairVisitor {
+
+	/**
+	 * visit
+	 * Called once for every intersecting pair
+	 *
+	 * @param ag1
+	 * @param ag2
+	 */
+
+	void visit(int ag1, int ag2);
+
+}
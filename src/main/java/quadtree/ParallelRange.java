@@ -0,0 +1,150 @@
+package quadtree;
+
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * ParallelRange
+ * Description: Runs a body over the indices 0..count-1 on a ForkJoinPool, halving the range down to single indices. The
+ * tasks are kept from one run to the next, in a heap laid out like a binary tree, so once they cover the largest range
+ * seen a run allocates nothing. They are CountedCompleters, and the calling thread parks until the last one completes:
+ * no thread ever joins a task still running, which allocates a wait node every time.
+ */
+
+class ParallelRange {
+
+	interface Body {
+		void run(int index);
+	}
+
+	private final Body body;
+	private Part [] parts = new Part[0]; //parts[2k+1] and parts[2k+2] split the range of parts[k]
+	private Thread caller; //Thread parked in run
+	private volatile boolean finished; //Set once every part has completed
+
+	/**
+	 * Constructor for ParallelRange
+	 *
+	 * @param body run once for every index
+	 */
+
+	ParallelRange(Body body) {
+		this.body = body;
+	}
+
+	/**
+	 * run
+	 * Runs the body over 0..count-1 on a pool and returns once every index is done - rethrowing what the body threw
+	 *
+	 * @param pool
+	 * @param count
+	 */
+
+	void run(ForkJoinPool pool, int count) {
+
+		if (count <= 0) {
+			return;
+		}
+
+		if (parts.length < 4*count) { //Halving a range of count leaves the heap below 4*count
+			Part [] grown = new Part[Math.max(4*count, 2*parts.length)];
+			System.arraycopy(parts, 0, grown, 0, parts.length);
+			for (int k = parts.length; k < grown.length; k++) {
+				grown[k] = new Part(k, k == 0 ? null : grown[(k-1)/2]);
+			}
+			parts = grown;
+		}
+
+		Part root = parts[0];
+		root.reinitialize();
+		root.from = 0;
+		root.to = count;
+
+		Thread current = Thread.currentThread();
+
+		if (current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == pool) {
+			pool.invoke(root); //A worker of the pool helps instead of blocking it
+			return;
+		}
+
+		caller = current;
+		finished = false;
+		pool.execute(root);
+
+		while (!finished) {
+			LockSupport.park(this);
+		}
+
+		while (!root.isDone()) { //Its status is set just after onCompletion
+			Thread.onSpinWait();
+		}
+
+		root.join();
+
+	}
+
+	/**
+	 * Part
+	 * One node of the heap - runs its range, or hands half of it to its right child and runs the other half as its left child
+	 */
+
+	private class Part extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+		private final int index;
+		private int from;
+		private int to;
+
+		Part(int index, Part parent) {
+			super(parent);
+			this.index = index;
+		}
+
+		public void compute() {
+
+			if (to - from <= 1) {
+				for (int i = from; i < to; i++) {
+					body.run(i);
+				}
+				tryComplete();
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			Part left = parts[2*index+1];
+			Part right = parts[2*index+2];
+			setPendingCount(1);
+			right.reinitialize();
+			right.from = mid;
+			right.to = to;
+			right.fork();
+			left.reinitialize();
+			left.from = from;
+			left.to = mid;
+			left.compute();
+
+		}
+
+		public void onCompletion(CountedCompleter<?> caller) {
+			if (index == 0) {
+				wake();
+			}
+		}
+
+		public boolean onExceptionalCompletion(Throwable ex, CountedCompleter<?> caller) {
+			if (index == 0) {
+				wake();
+			}
+			return true;
+		}
+
+	}
+
+	private void wake() {
+		finished = true;
+		LockSupport.unpark(caller);
+	}
+
+}
@@ -0,0 +1,341 @@
+package quadtree;
+
+import java.awt.Rectangle;
+
+/*
+ * Shape
+ * v1.0
+ * Author: James Liang
+ * Date: 10/30/18
+ * Description: Primary agent in the test program. Contains information relevant to movement and position.
+ * Once added to a quadTree, a shape is only a view on its handle in the tree's AgentStore - its own fields are no longer used.
+ */
+
+public class Shape {
+
+	private int radius;
+	private double xPos;
+	private double yPos;
+	private double dx;
+	private double dy;
+	
+	private AgentStore store; //null until the shape is added to a quadTree
+	private int handle;
+	
+	/**
+	 * Constructor for shape
+	 * Initializes with initial center, radius, and speed
+	 * 
+	 * @param radius
+	 * @param xPos
+	 * @param yPos
+	 * @param dx
+	 * @param dy
+	 */
+	
+	public Shape(int radius, double xPos, double yPos, double dx, double dy) {	
+		this.radius = radius;
+		this.xPos = xPos;
+		this.yPos = yPos;
+		this.dx = dx;
+		this.dy = dy;
+	}
+	
+	/**
+	 * Constructor for shape
+	 * View on an agent already in a store (see TreeSnapshot)
+	 * 
+	 * @param store
+	 * @param handle
+	 */
+	
+	Shape(AgentStore store, int handle) {
+		this.store = store;
+		this.handle = handle;
+	}
+	
+	/**
+	 * getRadi
+	 * Returns radius of shape
+	 * 
+	 * @return
+	 */
+	
+	public int getRadi() {
+		return (store == null) ? radius : store.radius[handle];
+	}
+	
+	/**
+	 * bind
+	 * Moves the state of the shape into a store - getters and setters go through the store from now on
+	 * 
+	 * @param store
+	 * @return handle
+	 * @throws IllegalStateException if the shape is in a store already - its own fields are outdated, and its handle would be
+	 * left behind
+	 */
+	
+	int bind(AgentStore store) {
+		
+		if (this.store != null) {
+			throw new IllegalStateException("shape already in a store, at handle " + handle);
+		}
+		
+		this.handle = store.add(radius, xPos, yPos, dx, dy);
+		this.store = store;
+		return handle;
+	}
+	
+	/**
+	 * unbind
+	 * Takes the state of the shape back from its store, before it is removed from it - the shape can be added again
+	 */
+	
+	void unbind() {
+		this.radius = store.radius[handle];
+		this.xPos = store.x[handle];
+		this.yPos = store.y[handle];
+		this.dx = store.dx[handle];
+		this.dy = store.dy[handle];
+		this.store = null;
+	}
+	
+	/**
+	 * rebind
+	 * Points the shape at a new handle in its store, after the agent was moved there (see AgentStore.remove)
+	 * 
+	 * @param handle
+	 */
+	
+	void rebind(int handle) {
+		this.handle = handle;
+	}
+	
+	/**
+	 * getHandle
+	 * Returns the handle of the shape in its store, or -1 if it is not in a quadTree yet
+	 * 
+	 * @return
+	 */
+	
+	public int getHandle() {
+		return (store == null) ? -1 : handle;
+	}
+	
+	/**
+	 * isIn
+	 * Whether the shape is bound to a store
+	 * 
+	 * @param store
+	 * @return
+	 */
+	
+	boolean isIn(AgentStore store) {
+		return this.store == store;
+	}
+	
+	/**
+	 * intersects 
+	 * Checks intersections with nodes
+	 * 
+	 * @param boundingBox
+	 * @return
+	 */
+	
+	public boolean intersects(Rectangle boundingBox) {
+		
+		int lowerX = boundingBox.x;
+		int lowerY = boundingBox.y;
+		int higherX = boundingBox.x+boundingBox.width;
+		int higherY = boundingBox.y+boundingBox.height;
+		
+		double xPos = getXD();
+		double yPos = getYD();
+		
+		if (yPos < higherY && yPos >= lowerY) { //Uses intersections base on only the circle center, as to restrict a shape to be only in one node at a time (hence <higher rather than <=)
+			if (xPos < higherX && xPos >= lowerX) {
+				return true;
+			}
+		}
+		
+		return false;
+		
+	}
+	
+	/**
+	 * intersects
+	 * Overloaded method that checks if my shape intersects with another shape
+	 * If compared to itself, will return false - shouldn't happen, but just a precaution
+	 * 
+	 * @param agent
+	 * @return
+	 */
+	
+	public boolean intersects(Shape agent) { 
+		
+		int centerX = (int)Math.round(agent.getXD());
+		int centerY = (int)Math.round(agent.getYD());
+		
+		if (agent.equals(this)) {
+			return false;
+		}
+		
+		double xPos = getXD();
+		double yPos = getYD();
+		int radius = getRadi();
+		
+		if (centerX-radius <= xPos+radius && centerX+radius >= xPos-radius) {
+			if (centerY+radius >= yPos-radius && centerY-radius <= yPos+radius) {
+				return true;
+			}
+		}
+		
+		return false;
+		
+	}
+
+	
+	/**
+	 * setX
+	 * Setter for x position
+	 * 
+	 * @param pos
+	 */
+	
+	public void setX(double pos) {
+		if (store == null) {
+			this.xPos = pos;
+		} else {
+			store.x[handle] = pos;
+		}
+	}
+	
+	/**
+	 * setY
+	 * Setter for y position
+	 * 
+	 * @param pos
+	 */
+	
+	public void setY(double pos) {
+		if (store == null) {
+			this.yPos = pos;
+		} else {
+			store.y[handle] = pos;
+		}
+	}
+	
+	/**
+	 * setDx
+	 * Setter for x speed (dx)
+	 * 
+	 * @param pos
+	 */
+	
+	
+	public void setDx(double dx) {
+		if (store == null) {
+			this.dx = dx;
+		} else {
+			store.dx[handle] = dx;
+		}
+	}
+	
+	/**
+	 * setDy
+	 * Setter for y speed (dy)
+	 * 
+	 * @param dx
+	 */
+	
+	public void setDy(double dy) {
+		if (store == null) {
+			this.dy = dy;
+		} else {
+			store.dy[handle] = dy;
+		}
+	}
+	
+	/**
+	 * getX
+	 * Getter for x position
+	 * 
+	 * @param dy
+	 */
+	
+	public int getX() {
+		return (int)Math.round(getXD());
+	}
+	
+	/**
+	 * getY
+	 * Getter for y position
+	 *
+	 * @return
+	 */
+	
+	public int getY() {
+		return (int)Math.round(getYD());
+	}
+	
+	/**
+	 * getXD
+	 * Getter for x position, without rounding
+	 * 
+	 * @return
+	 */
+	
+	public double getXD() {
+		return (store == null) ? this.xPos : store.x[handle];
+	}
+	
+	/**
+	 * getYD
+	 * Getter for y position, without rounding
+	 * 
+	 * @return
+	 */
+	
+	public double getYD() {
+		return (store == null) ? this.yPos : store.y[handle];
+	}
+	
+	/**
+	 * getDx
+	 * Getter for dx (speed of x)
+	 * 
+	 * @return
+	 */
+	
+	public int getDx() {
+		return (int)Math.round((store == null) ? this.dx : store.dx[handle]);
+	}
+	
+	/**
+	 * setX
+	 * Getter for dy (speed of y)
+	 * 
+	 * @return
+	 */
+	
+	public int getDy() {
+		return (int)Math.round((store == null) ? this.dy : store.dy[handle]);
+	}
+	
+	/**
+	 * newPos
+	 * Updates position of shape
+	 *
+	 */
+	
+	public void newPos() {
+		if (store == null) {
+			this.xPos += this.dx;
+			this.yPos += this.dy;
+		} else {
+			store.x[handle] += store.dx[handle];
+			store.y[handle] += store.dy[handle];
+		}
+	}
+	
+}
@@ -0,0 +1,676 @@
+package quadtree;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * SimulationEngine
+ * Description: Runs the simulation (BroadPhase.step - wall bounce and movement, then the tree or grid update) on its own thread at a fixed timestep,
+ * with no dependency on AWT/Swing. After every tick it publishes a snapshot of the positions that a renderer can read
+ * without locks, and shapes added or removed from other threads are queued until the start of the next tick, then applied
+ * in one batch.
+ * With views on (setViews), it also publishes a TreeView after every tick, which any number of query threads can hold and
+ * query while the next tick runs - neither side ever waits for the other.
+ */
+
+public class SimulationEngine implements Runnable {
+
+	private static final int DIRTY = 4; //Set in published when the middle buffer holds a frame the reader has not taken yet
+
+	private BroadPhase tree;
+	private int maxWidth;
+	private int maxHeight;
+	private long tickNanos; //0 runs ticks back to back
+
+	//Intake - a lock-free queue any thread can write to, drained by the engine only
+	private ConcurrentLinkedQueue<Queued> intake = new ConcurrentLinkedQueue<Queued>();
+	private Shape [] batch = new Shape[16]; //Shapes of the batch being applied, in the order they were queued
+	private boolean [] removing = new boolean[16]; //Whether each was queued to be removed
+	private long [] order = new long[16]; //Sort key of each, with its index in batch in the low bits
+	private IdentityHashMap<Shape, Boolean> latest = new IdentityHashMap<Shape, Boolean>(); //Shapes of the batch met so far, from the last one queued
+	private RuntimeException queueError; //First queued operation the tree refused - see queueFailed
+	private volatile boolean running;
+	private volatile long ticks;
+	private Thread thread;
+
+	//Triple buffering - the engine owns buffers[back], the renderer owns buffers[front], and the one in between is handed over atomically
+	private Snapshot [] buffers = {new Snapshot(), new Snapshot(), new Snapshot()};
+	private int back = 0;
+	private AtomicInteger published = new AtomicInteger(1);
+	private int front = 2;
+
+	//Views - the latest is published in view, held by the engine until the next one replaces it; the others are free once
+	//every reader closed them, and only then refilled
+	private boolean views;
+	private ArrayList<TreeView> viewPool = new ArrayList<TreeView>();
+	private AtomicReference<TreeView> view = new AtomicReference<TreeView>();
+
+	//Recording - see startRecording
+	private TraceWriter recorder;
+	private IdentityHashMap<Shape, Integer> traceIds = new IdentityHashMap<Shape, Integer>(); //Trace id of every shape recorded
+	private int nextTraceId;
+	private IOException recordError; //First write that failed - nothing is written after it
+
+	/**
+	 * Constructor for SimulationEngine
+	 *
+	 * @param tree tree (or any BroadPhase) holding the shapes - only the engine thread may touch it once the engine is started
+	 * @param maxWidth walls of the area
+	 * @param maxHeight
+	 * @param ticksPerSecond fixed tick rate, or 0 to run as fast as possible
+	 */
+
+	public SimulationEngine(BroadPhase tree, int maxWidth, int maxHeight, double ticksPerSecond) {
+		this.tree = tree;
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.tickNanos = (ticksPerSecond > 0) ? Math.round(1e9/ticksPerSecond) : 0;
+	}
+
+	/**
+	 * start
+	 * Starts the engine thread
+	 */
+
+	public synchronized void start() {
+
+		if (thread != null) {
+			return;
+		}
+
+		running = true;
+		thread = new Thread(this, "SimulationEngine");
+		thread.setDaemon(true);
+		thread.start();
+
+	}
+
+	/**
+	 * stop
+	 * Stops the engine thread and waits for the current tick to finish. Also call it after driving tick by hand, to see
+	 * whether a queued operation failed.
+	 *
+	 * @throws InterruptedException
+	 * @throws RuntimeException the first queued addition or removal the tree refused since the last stop - e.g. the
+	 * IllegalStateException of a shape that is in another broad phase. The engine skipped it and went on.
+	 */
+
+	public synchronized void stop() throws InterruptedException {
+
+		if (thread != null) {
+			running = false;
+			thread.join();
+			thread = null;
+		}
+
+		RuntimeException error = queueError;
+		queueError = null;
+
+		if (error != null) {
+			throw error;
+		}
+
+	}
+
+	public void run() {
+
+		long next = System.nanoTime();
+
+		while (running) {
+
+			tick();
+
+			if (tickNanos > 0) {
+
+				next += tickNanos;
+				long wait = next - System.nanoTime();
+
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				} else if (wait < -10*tickNanos) { //Fell far behind - drop the backlog instead of running a burst of ticks
+					next = System.nanoTime();
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * tick
+	 * One step of the simulation - applies queued additions and removals, moves every shape, updates the tree, then publishes
+	 * a snapshot. Called by the engine thread, or directly when the engine is driven by hand (never both)
+	 */
+
+	public void tick() {
+
+		applyQueued();
+
+		tree.step(maxWidth, maxHeight);
+
+		if (recorder != null && recordError == null) {
+			try {
+				recorder.endTick();
+			} catch (IOException e) {
+				recordFailed(e);
+			}
+		}
+
+		ticks++;
+		publish();
+
+		if (views) {
+			publishView();
+		}
+
+	}
+
+	/**
+	 * addAgent
+	 * Queues a shape to be added at the start of the next tick - safe from any thread
+	 *
+	 * @param agent
+	 */
+
+	public void addAgent(Shape agent) {
+		intake.add(new Queued(agent, false));
+	}
+
+	/**
+	 * removeAgent
+	 * Queues a shape to be removed at the start of the next tick - safe from any thread. Shapes not in the tree by then are
+	 * ignored.
+	 *
+	 * @param agent
+	 */
+
+	public void removeAgent(Shape agent) {
+		intake.add(new Queued(agent, true));
+	}
+
+	/**
+	 * applyQueued
+	 * Applies the queued additions and removals. Only the last operation queued on each shape counts, as if they were applied
+	 * one by one in the order they were queued: a shape removed then added again stays where it is, one added or removed twice
+	 * is added or removed once.
+	 * Additions go in Z-order of their position - the order of the leaves of a quadtree - so consecutive inserts walk down
+	 * the same nodes. Removals go from the highest handle down: the last shape of the store, which takes over each removed
+	 * handle, is then never one still to be removed.
+	 * An operation the tree refuses is skipped, the others still applied (see queueFailed).
+	 */
+
+	private void applyQueued() {
+
+		int n = drain();
+		AgentStore store = tree.getStore();
+
+		for (int i = n-1; i >= 0; i--) { //Drops all but the last operation on each shape, and those with nothing left to do
+			if (latest.put(batch[i], Boolean.TRUE) != null || removing[i] != batch[i].isIn(store)) {
+				batch[i] = null;
+			}
+		}
+
+		latest.clear();
+
+		int side = 1 << LinearQuadTree.MAX_LEVEL;
+		int m = 0;
+
+		for (int i = 0; i < n; i++) {
+			if (batch[i] != null && !removing[i]) {
+				int cx = Math.max(0, Math.min(side-1, (int)(batch[i].getXD()*side/maxWidth)));
+				int cy = Math.max(0, Math.min(side-1, (int)(batch[i].getYD()*side/maxHeight)));
+				order[m++] = (long)(LinearQuadTree.spread(cx) | (LinearQuadTree.spread(cy) << 1)) << 32 | i;
+			}
+		}
+
+		Arrays.sort(order, 0, m);
+
+		for (int k = 0; k < m; k++) {
+			try {
+				tree.addAgent(batch[(int)order[k]]);
+				recordSpawn(batch[(int)order[k]]);
+			} catch (RuntimeException e) {
+				queueFailed(e);
+			}
+		}
+
+		m = 0;
+
+		for (int i = 0; i < n; i++) {
+			if (batch[i] != null && removing[i]) {
+				order[m++] = (long)batch[i].getHandle() << 32 | i;
+			}
+		}
+
+		Arrays.sort(order, 0, m);
+
+		for (int k = m-1; k >= 0; k--) {
+			try {
+				tree.removeAgent(batch[(int)order[k]]);
+				recordDespawn(batch[(int)order[k]]);
+			} catch (RuntimeException e) {
+				queueFailed(e);
+			}
+		}
+
+		Arrays.fill(batch, 0, n, null);
+
+	}
+
+	/**
+	 * startRecording
+	 * Records the run into a trace from now on - every shape in the tree is written as spawned, then the shapes added and
+	 * removed tick by tick. Call it before start, or from the thread driving tick by hand. Replayed by TraceReader, a
+	 * recording started before the first tick on a tree built with addAll gives back the same run.
+	 *
+	 * @param writer
+	 * @throws IOException
+	 */
+
+	public void startRecording(TraceWriter writer) throws IOException {
+
+		recorder = writer;
+		recordError = null;
+		traceIds.clear();
+		nextTraceId = 0;
+
+		for (Shape agent : tree.getList()) {
+			recordSpawn(agent);
+		}
+
+		if (recordError != null) {
+			throw recordError;
+		}
+
+	}
+
+	/**
+	 * stopRecording
+	 * Stops recording and closes the trace. Call it after stop, or from the thread driving tick by hand.
+	 *
+	 * @throws IOException the first write that failed while recording - the trace ends at the tick before it
+	 */
+
+	public void stopRecording() throws IOException {
+
+		TraceWriter writer = recorder;
+		IOException error = recordError;
+		recorder = null;
+		recordError = null;
+		traceIds.clear();
+
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				}
+			}
+		}
+
+		if (error != null) {
+			throw error;
+		}
+
+	}
+
+	private void recordSpawn(Shape agent) {
+
+		if (recorder == null || recordError != null) {
+			return;
+		}
+
+		int id = nextTraceId++;
+		traceIds.put(agent, id);
+
+		AgentStore store = tree.getStore();
+		int handle = agent.getHandle();
+
+		try {
+			recorder.spawn(id, store.radius[handle], store.x[handle], store.y[handle], store.dx[handle], store.dy[handle]);
+		} catch (IOException e) {
+			recordFailed(e);
+		}
+
+	}
+
+	private void recordDespawn(Shape agent) {
+
+		if (recorder == null || recordError != null) {
+			return;
+		}
+
+		Integer id = traceIds.remove(agent);
+
+		if (id == null) { //Put in the tree without going through the engine - never recorded as spawned either
+			return;
+		}
+
+		try {
+			recorder.despawn(id);
+		} catch (IOException e) {
+			recordFailed(e);
+		}
+
+	}
+
+	/**
+	 * recordFailed
+	 * Keeps the error for stopRecording and stops writing - the simulation goes on
+	 *
+	 * @param e
+	 */
+
+	private void recordFailed(IOException e) {
+		recordError = e;
+	}
+
+	/**
+	 * queueFailed
+	 * Keeps the first error of a queued operation for stop - the engine thread must not die of it, nobody would notice
+	 *
+	 * @param e
+	 */
+
+	private void queueFailed(RuntimeException e) {
+		if (queueError == null) {
+			queueError = e;
+		}
+	}
+
+	/**
+	 * drain
+	 * Moves the queued operations into batch and removing, in the order they were queued
+	 *
+	 * @return number of operations
+	 */
+
+	private int drain() {
+
+		int n = 0;
+		Queued queued;
+
+		while ((queued = intake.poll()) != null) {
+
+			if (n == batch.length) {
+				batch = Arrays.copyOf(batch, 2*n);
+				removing = Arrays.copyOf(removing, 2*n);
+				order = new long[2*n];
+			}
+
+			batch[n] = queued.agent;
+			removing[n++] = queued.removal;
+
+		}
+
+		return n;
+
+	}
+
+	/**
+	 * getTicks
+	 * Returns the number of ticks run so far
+	 *
+	 * @return
+	 */
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * acquireSnapshot
+	 * Returns the latest published snapshot. It is not modified until the next call, so it must be read from a single renderer thread.
+	 *
+	 * @return
+	 */
+
+	public Snapshot acquireSnapshot() {
+
+		if ((published.get() & DIRTY) != 0) {
+			front = published.getAndSet(front) & 3;
+		}
+
+		return buffers[front];
+
+	}
+
+	/**
+	 * setViews
+	 * Turns the publication of a TreeView after every tick on or off - turning it on publishes a view of the current state at
+	 * once. Call it before start, or from the thread driving tick by hand.
+	 *
+	 * @param on
+	 */
+
+	public void setViews(boolean on) {
+
+		views = on;
+
+		if (on) {
+			publishView();
+		} else {
+			TreeView old = view.getAndSet(null);
+
+			if (old != null) {
+				old.release();
+			}
+		}
+
+	}
+
+	/**
+	 * acquireView
+	 * Returns the view of the last completed tick, held until closed - safe from any thread, never blocks, and the view does
+	 * not change while held. Every view acquired must be closed, or the engine keeps allocating new ones:
+	 *
+	 *     try (TreeView v = engine.acquireView()) { ... }
+	 *
+	 * Views are not free: every tick, the engine copies every agent into a free view and rebuilds its index, whether or not
+	 * anyone reads it - a pass over the agents much like integrate (see TreeViewBenchmark).
+	 *
+	 * @return null if views are off
+	 */
+
+	public TreeView acquireView() {
+
+		while (true) {
+
+			TreeView latest = view.get();
+
+			if (latest == null || latest.retain()) { //Fails only if the engine replaced and freed it meanwhile - take the new one
+				return latest;
+			}
+
+		}
+
+	}
+
+	/**
+	 * viewCount
+	 * Returns the number of views allocated so far - the most ever held at once, plus one
+	 *
+	 * @return
+	 */
+
+	int viewCount() {
+		return viewPool.size();
+	}
+
+	/**
+	 * publishView
+	 * Fills a free view with the state of the tree and swaps it in as the latest, releasing the engine's hold on the one before
+	 */
+
+	private void publishView() {
+
+		TreeView next = null;
+
+		for (int i = 0; i < viewPool.size() && next == null; i++) {
+			if (viewPool.get(i).isFree()) { //Cannot be retained again until published - free stays free
+				next = viewPool.get(i);
+			}
+		}
+
+		if (next == null) {
+			next = new TreeView();
+			viewPool.add(next);
+		}
+
+		next.fill(tree.getStore(), ticks, maxWidth, maxHeight);
+		next.publish();
+
+		TreeView old = view.getAndSet(next);
+
+		if (old != null) {
+			old.release();
+		}
+
+	}
+
+	/**
+	 * publish
+	 * Copies the state of the tree into the back buffer, then swaps it with the middle one
+	 */
+
+	private void publish() {
+
+		Snapshot snapshot = buffers[back];
+		AgentStore store = tree.getStore();
+		int count = store.size();
+
+		if (snapshot.x.length < count) {
+			snapshot.x = new double[store.capacity()];
+			snapshot.y = new double[store.capacity()];
+			snapshot.radius = new int[store.capacity()];
+		}
+
+		System.arraycopy(store.x, 0, snapshot.x, 0, count);
+		System.arraycopy(store.y, 0, snapshot.y, 0, count);
+		System.arraycopy(store.radius, 0, snapshot.radius, 0, count);
+		snapshot.count = count;
+		snapshot.tick = ticks;
+
+		snapshot.gridCount = tree.fillGrid(snapshot.grid);
+
+		if (4*snapshot.gridCount > snapshot.grid.length) {
+			snapshot.grid = new int[8*snapshot.gridCount];
+			snapshot.gridCount = tree.fillGrid(snapshot.grid);
+		}
+
+		back = published.getAndSet(back | DIRTY) & 3;
+
+	}
+
+	/**
+	 * Snapshot
+	 * Positions and radii of every shape, plus the node bounds of the tree, after one tick
+	 */
+
+	public static class Snapshot {
+
+		public double [] x = new double[0];
+		public double [] y = new double[0];
+		public int [] radius = new int[0];
+		public int count;
+		public long tick;
+		public int [] grid = new int[0]; //x, y, width, height of each node
+		public int gridCount;
+
+	}
+
+	/**
+	 * Queued
+	 * A shape to add or remove at the start of the next tick
+	 */
+
+	private static class Queued {
+
+		final Shape agent;
+		final boolean removal;
+
+		Queued(Shape agent, boolean removal) {
+			this.agent = agent;
+			this.removal = removal;
+		}
+
+	}
+
+	/**
+	 * main
+	 * Headless run - prints ticks per second, without any rendering
+	 * Arguments: number of agents (5000), seconds (10), tree kind (pointer, loose, linear or grid for UniformGrid), and a
+	 * trace file to record the run into (none) - replayed by TraceReader.main
+	 *
+	 * @param args
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+
+		int agentCount = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+		int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		String kind = (args.length > 2) ? args[2] : "pointer";
+
+		int radius = 5;
+		int maxWidth = (int)Math.ceil(Math.sqrt(agentCount*400.0*16/9)); //Same density as testProgram on a 1920x1045 screen
+		int maxHeight = maxWidth*9/16;
+
+		BroadPhase tree;
+
+		if (kind.equals("grid")) {
+			tree = new UniformGrid(maxWidth, maxHeight, radius);
+		} else if (kind.equals("linear")) {
+			tree = new LinearQuadTree(maxWidth, maxHeight);
+		} else if (kind.equals("loose")) {
+			tree = new quadTree<Shape>(maxWidth, maxHeight, 2);
+		} else {
+			tree = new quadTree<Shape>(maxWidth, maxHeight);
+		}
+
+		TreeConfig.load().apply(tree); //-Dquadtree.config=<file>, -Dquadtree.split, depth, sweep, autotune
+
+		Random numGenerator = new Random(1);
+
+		ArrayList<Shape> batch = new ArrayList<Shape>();
+		
+		for (int i = 0; i < agentCount; i++) {
+			batch.add(new Shape(radius, numGenerator.nextInt(maxWidth-radius*2), numGenerator.nextInt(maxHeight-radius*2), numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4));
+		}
+		
+		tree.addAll(batch);
+
+		SimulationEngine engine = new SimulationEngine(tree, maxWidth, maxHeight, 0);
+
+		if (args.length > 3) {
+			engine.startRecording(TraceWriter.create(Paths.get(args[3]), maxWidth, maxHeight));
+		}
+
+		engine.start();
+
+		long last = 0;
+
+		for (int i = 0; i < seconds; i++) {
+			Thread.sleep(1000);
+			long now = engine.getTicks();
+			System.out.println("ticks/s: " + (now - last));
+			last = now;
+		}
+
+		engine.stop();
+		engine.stopRecording();
+
+	}
+
+}
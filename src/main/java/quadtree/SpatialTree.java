@@ -0,0 +1,225 @@
+package quadtree;
+
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * SpatialTree
+ * Description: What drivers (testProgram, the benchmarks) need from a tree of agents, so the pointer-based quadTree
+ * and the flat LinearQuadTree can be swapped without touching the driver. Everything a BroadPhase does, plus the phases of a tick
+ * one by one and the tree-only queries.
+ */
+
+public interface SpatialTree extends BroadPhase {
+	
+	/**
+	 * agentC
+	 * Returns the number of shapes/agents contained within the tree
+	 *
+	 * @return
+	 */
+	
+	int agentC();
+	
+	/**
+	 * queryRect
+	 * Same query as BroadPhase.queryRect, writing the handles found into out as long as they fit
+	 *
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param out
+	 * @return number of agents found - more than out.length if out was too small
+	 */
+
+	int queryRect(double x0, double y0, double x1, double y1, int [] out);
+
+	/**
+	 * queryCircle
+	 * Same query as BroadPhase.queryCircle, writing the handles found into out as long as they fit
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param r
+	 * @param out
+	 * @return number of agents found - more than out.length if out was too small
+	 */
+
+	int queryCircle(double cx, double cy, double r, int [] out);
+
+	/**
+	 * nearest
+	 * Finds the k agents whose center is closest to (x, y) - best first over the nodes, closest node first,
+	 * stopping once no node left can hold anything closer than the k-th best. Reusing result avoids allocating.
+	 *
+	 * @param x
+	 * @param y
+	 * @param k
+	 * @param result filled and returned
+	 * @return
+	 */
+
+	NearestResult nearest(double x, double y, int k, NearestResult result);
+
+	/**
+	 * nearest
+	 * Same search, into a new result
+	 *
+	 * @param x
+	 * @param y
+	 * @param k
+	 * @return
+	 */
+
+	default NearestResult nearest(double x, double y, int k) {
+		return nearest(x, y, k, new NearestResult());
+	}
+
+	/**
+	 * updateTree
+	 * One tick of the tree - relocateAll (same as findChanged, manageNode and update), then checkCollide
+	 */
+	
+	void updateTree();
+
+	/**
+	 * integrate
+	 * Moves every shape by its speed (bouncing off the walls) and records the shapes that left their node, for relocateDisplaced
+	 *
+	 * @param maxWidth walls of the area
+	 * @param maxHeight
+	 * @return number of displaced shapes
+	 */
+
+	int integrate(int maxWidth, int maxHeight);
+
+	/**
+	 * relocateDisplaced
+	 * Moves the shapes recorded by the last integrate to their new node - takes the place of findChanged and manageNode
+	 */
+
+	void relocateDisplaced();
+
+	/**
+	 * findChanged
+	 * First phase of updateTree - finds the shapes that left their leaf
+	 *
+	 * @return
+	 */
+	
+	ArrayList<Shape> findChanged();
+	
+	/**
+	 * manageNode
+	 * Second phase of updateTree - moves the shapes found by findChanged to their new leaf
+	 *
+	 * @param removeList
+	 */
+	
+	void manageNode(ArrayList<Shape> removeList);
+	
+	/**
+	 * update
+	 * Third phase of updateTree - splits and collapses nodes
+	 */
+	
+	void update();
+	
+	/**
+	 * checkCollide
+	 * Last phase of updateTree - resolves collisions in every leaf
+	 */
+	
+	void checkCollide();
+	
+	/**
+	 * setSweepThreshold
+	 * Sets the occupancy from which checkCollide sorts a leaf along its axis of greatest spread and sweeps it, instead of
+	 * comparing every pair (see NarrowPhase). Integer.MAX_VALUE turns sweeping off.
+	 *
+	 * @param occupancy
+	 */
+	
+	void setSweepThreshold(int occupancy);
+
+	/**
+	 * setSplitThreshold
+	 * Sets the number of shapes a leaf needs before update splits it (at least 2). Nodes already split follow on the next update.
+	 *
+	 * @param shapes
+	 */
+
+	void setSplitThreshold(int shapes);
+
+	int getSplitThreshold();
+
+	/**
+	 * setMaxLevel
+	 * Sets the deepest level update splits nodes to, between 0 (a single leaf) and MAX_LEVEL. The next update collapses
+	 * any node below it.
+	 *
+	 * @param level
+	 */
+
+	void setMaxLevel(int level);
+
+	int getMaxLevel();
+
+	/**
+	 * setAutoTuner
+	 * Reports the cost of every step and updateTree, phase by phase, to the tuner, which may then change the split threshold
+	 * and depth limit between ticks. A null tuner keeps the current settings.
+	 *
+	 * @param tuner
+	 */
+
+	void setAutoTuner(AutoTuner tuner);
+
+	/**
+	 * setContactCache
+	 * Keeps the contacts of checkCollide from tick to tick in the cache, which ages every contact and replays those between
+	 * shapes that stayed in place, in the same leaf; only the shapes that moved (further than ContactCache.setTolerance) or
+	 * changed leaf are tested, each against its leaf. Replayed contacts are resolved before the others, so the velocities
+	 * can differ from those of the uncached order. The cache is cleared first. Loose and parallel trees do not use it; null
+	 * turns it off (the default).
+	 * It only pays off where most shapes are at rest. Marking and replaying cost time of their own: on 100k agents moving
+	 * at a tenth of the uniform layout's speed, with the default tolerance of 0, checkCollide of quadTree takes 11002 us
+	 * with the cache against 6009 us without; at full speed the cache costs 16-25% more (see the README).
+	 *
+	 * @param cache
+	 */
+
+	void setContactCache(ContactCache cache);
+
+	/**
+	 * setParallel
+	 * Runs integrate on a ForkJoinPool over chunks of granularity handles, with the same results as sequential, bit for bit.
+	 * quadTree also splits checkCollide over its subtrees; LinearQuadTree runs it sequentially. A null pool goes back to sequential.
+	 *
+	 * @param pool
+	 * @param granularity
+	 */
+
+	void setParallel(ForkJoinPool pool, int granularity);
+
+	/**
+	 * getMetrics
+	 * Returns the per-phase counters of the tree - off until TreeMetrics.setEnabled(true)
+	 *
+	 * @return
+	 */
+
+	TreeMetrics getMetrics();
+
+	/**
+	 * drawGrid
+	 * Draws the node boundaries of the tree
+	 *
+	 * @param g
+	 */
+	
+	void drawGrid(Graphics g);
+	
+}
@@ -0,0 +1,349 @@
+package quadtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * TraceReader
+ * Description: Replays a trace written by TraceWriter into a BroadPhase, tick by tick (see readTick)
+ */
+
+public class TraceReader implements AutoCloseable {
+
+	private final Path file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(TraceWriter.CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+	private boolean eof;
+
+	private int maxWidth;
+	private int maxHeight;
+	private Shape [] agents = new Shape[1024]; //Shape of each trace id, null once despawned
+	private ArrayList<Shape> pending = new ArrayList<Shape>(); //Spawns into an empty broad phase, for addAll
+	private long ticks;
+
+	private TraceReader(Path file, FileChannel channel) {
+		this.file = file;
+		this.channel = channel;
+		buffer.flip(); //Empty - filled by need
+	}
+
+	/**
+	 * open
+	 * Opens a trace and reads its header
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException if the file is not a trace, or comes from a newer version
+	 */
+
+	public static TraceReader open(Path file) throws IOException {
+
+		TraceReader reader = new TraceReader(file, FileChannel.open(file, StandardOpenOption.READ));
+
+		try {
+
+			if (!reader.need(TraceWriter.HEADER) || reader.buffer.getInt() != TraceWriter.MAGIC) {
+				throw new IOException(file + " is not a trace");
+			}
+
+			int version = reader.buffer.getInt();
+
+			if (version != TraceWriter.VERSION) {
+				throw new IOException(file + " is a version " + version + " trace, this reader knows version " + TraceWriter.VERSION);
+			}
+
+			reader.maxWidth = reader.buffer.getInt();
+			reader.maxHeight = reader.buffer.getInt();
+
+		} catch (IOException e) {
+			reader.close();
+			throw e;
+		}
+
+		return reader;
+
+	}
+
+	public int getMaxWidth() {
+		return maxWidth;
+	}
+
+	public int getMaxHeight() {
+		return maxHeight;
+	}
+
+	/**
+	 * getTicks
+	 * Returns the number of ticks read so far
+	 *
+	 * @return
+	 */
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * replayTick
+	 * Applies the events of the next tick to a broad phase, then steps it once
+	 *
+	 * @param broadPhase
+	 * @return false once the trace has no tick left
+	 * @throws IOException
+	 */
+
+	public boolean replayTick(BroadPhase broadPhase) throws IOException {
+
+		if (!readTick(broadPhase)) {
+			return false;
+		}
+
+		broadPhase.step(maxWidth, maxHeight);
+
+		return true;
+
+	}
+
+	/**
+	 * readTick
+	 * Applies the events of the next tick to a broad phase, without stepping it - null only decodes them. The file is read
+	 * TraceWriter.CHUNK bytes at a time into one direct buffer and decoded in place, so only that chunk is in memory whatever
+	 * the size of the trace, and decoding allocates nothing but the shapes it spawns.
+	 * Spawns at the start of a tick into an empty broad phase are added with addAll, as a tree is usually bulk loaded before
+	 * the first tick. Replaying a recording of SimulationEngine on the same kind of tree, with the same settings, gives back
+	 * the recorded run exactly.
+	 *
+	 * @param broadPhase
+	 * @return false once the trace has no tick left
+	 * @throws IOException if the trace is damaged or names an agent it never spawned
+	 */
+
+	public boolean readTick(BroadPhase broadPhase) throws IOException {
+
+		if (!need(1)) {
+			return false;
+		}
+
+		boolean bulk = broadPhase != null && broadPhase.getStore().size() == 0;
+
+		while (true) {
+
+			if (!need(1)) {
+				throw new IOException(file + " ends in the middle of a tick");
+			}
+
+			byte type = buffer.get();
+
+			if (type == TraceWriter.TICK) {
+				break;
+			}
+
+			if (type == TraceWriter.SPAWN) {
+
+				require(8 + 32);
+				int id = buffer.getInt();
+				int radius = buffer.getInt();
+				double x = buffer.getDouble();
+				double y = buffer.getDouble();
+				double dx = buffer.getDouble();
+				double dy = buffer.getDouble();
+
+				if (broadPhase == null) {
+					continue;
+				}
+
+				if (id < 0) {
+					throw new IOException(file + " spawns agent " + id);
+				}
+
+				if (id >= agents.length) {
+					agents = Arrays.copyOf(agents, Math.max(id+1, 2*agents.length));
+				}
+
+				Shape agent = new Shape(radius, x, y, dx, dy);
+				agents[id] = agent;
+
+				if (bulk) {
+					pending.add(agent);
+				} else {
+					broadPhase.addAgent(agent);
+				}
+
+			} else if (type == TraceWriter.MOVE) {
+
+				require(4 + 32);
+				int id = buffer.getInt();
+				double x = buffer.getDouble();
+				double y = buffer.getDouble();
+				double dx = buffer.getDouble();
+				double dy = buffer.getDouble();
+
+				if (broadPhase == null) {
+					continue;
+				}
+
+				bulk = addPending(broadPhase, bulk);
+				int handle = agent(id).getHandle();
+				AgentStore store = broadPhase.getStore();
+				store.x[handle] = x;
+				store.y[handle] = y;
+				store.dx[handle] = dx;
+				store.dy[handle] = dy;
+
+			} else if (type == TraceWriter.DESPAWN) {
+
+				require(4);
+				int id = buffer.getInt();
+
+				if (broadPhase == null) {
+					continue;
+				}
+
+				bulk = addPending(broadPhase, bulk);
+				broadPhase.removeAgent(agent(id));
+				agents[id] = null;
+
+			} else {
+				throw new IOException(file + " holds an unknown event " + type);
+			}
+
+		}
+
+		addPending(broadPhase, bulk);
+		ticks++;
+
+		return true;
+
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * addPending
+	 * Adds the spawns held back for addAll, before an event that needs them in the broad phase
+	 *
+	 * @return false - spawns are added one by one from now on
+	 */
+
+	private boolean addPending(BroadPhase broadPhase, boolean bulk) {
+
+		if (bulk && !pending.isEmpty()) {
+			broadPhase.addAll(pending);
+			pending.clear();
+		}
+
+		return false;
+
+	}
+
+	private Shape agent(int id) throws IOException {
+
+		if (id < 0 || id >= agents.length || agents[id] == null) {
+			throw new IOException(file + " names agent " + id + ", which is not alive");
+		}
+
+		return agents[id];
+
+	}
+
+	/**
+	 * need
+	 * Makes sure the buffer holds at least n bytes, reading the next chunk when it runs low
+	 *
+	 * @param n
+	 * @return false if the trace ends exactly here
+	 * @throws IOException if it ends within the n bytes
+	 */
+
+	private boolean need(int n) throws IOException {
+
+		if (buffer.remaining() >= n) {
+			return true;
+		}
+
+		buffer.compact();
+
+		while (!eof && buffer.hasRemaining()) { //Fills the whole chunk, so reads stay rare and large
+			eof = channel.read(buffer) < 0;
+		}
+
+		buffer.flip();
+
+		if (buffer.remaining() >= n) {
+			return true;
+		}
+
+		if (buffer.remaining() == 0) {
+			return false;
+		}
+
+		throw new IOException(file + " is truncated");
+
+	}
+
+	private void require(int n) throws IOException {
+
+		if (!need(n)) {
+			throw new IOException(file + " is truncated");
+		}
+
+	}
+
+	/**
+	 * main
+	 * Replays a trace as fast as it goes and prints ticks and megabytes per second
+	 * Arguments: trace file, tree kind (pointer, loose, linear, grid for UniformGrid, or none to decode without a tree)
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+
+	public static void main(String[] args) throws IOException {
+
+		Path file = Paths.get(args[0]);
+		String kind = (args.length > 1) ? args[1] : "pointer";
+
+		try (TraceReader reader = TraceReader.open(file)) {
+
+			int maxWidth = reader.getMaxWidth();
+			int maxHeight = reader.getMaxHeight();
+			BroadPhase tree;
+
+			if (kind.equals("none")) {
+				tree = null;
+			} else if (kind.equals("grid")) {
+				tree = new UniformGrid(maxWidth, maxHeight, 5);
+			} else if (kind.equals("linear")) {
+				tree = new LinearQuadTree(maxWidth, maxHeight);
+			} else if (kind.equals("loose")) {
+				tree = new quadTree<Shape>(maxWidth, maxHeight, 2);
+			} else {
+				tree = new quadTree<Shape>(maxWidth, maxHeight);
+			}
+
+			if (tree != null) {
+				TreeConfig.load().apply(tree);
+			}
+
+			long start = System.nanoTime();
+
+			while (tree == null ? reader.readTick(null) : reader.replayTick(tree)) {
+			}
+
+			double seconds = (System.nanoTime() - start)/1e9;
+			System.out.printf("%d ticks in %.2f s: %.0f ticks/s, %.0f MB/s%n", reader.getTicks(), seconds, reader.getTicks()/seconds, reader.channel.size()/seconds/1e6);
+
+		}
+
+	}
+
+}
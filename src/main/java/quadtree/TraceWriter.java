@@ -0,0 +1,173 @@
+package quadtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * TraceWriter
+ * Description: Writes a trace - agent events, tick by tick - for TraceReader to replay into a tree (see create)
+ */
+
+public class TraceWriter implements AutoCloseable {
+
+	static final int MAGIC = 0x52545451; //"QTTR"
+	static final int VERSION = 1;
+	static final int HEADER = 16;
+	static final int CHUNK = 1 << 20;
+
+	static final byte TICK = 0;
+	static final byte SPAWN = 1;
+	static final byte MOVE = 2;
+	static final byte DESPAWN = 3;
+	static final int MAX_EVENT = 1 + 8 + 32; //SPAWN
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+	private long ticks;
+
+	private TraceWriter(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * create
+	 * Starts a trace in a file, replacing it. Events are buffered and written CHUNK bytes at a time, so a trace can grow far
+	 * beyond memory. The file is little-endian: a header of HEADER bytes (magic, version, maxWidth, maxHeight), then the
+	 * events, each one byte of type followed by its fields (see spawn, move, despawn and endTick). Agents are named by trace
+	 * ids chosen by the writer, not handles, which change as agents are removed.
+	 *
+	 * @param file
+	 * @param maxWidth walls of the area the trace runs in
+	 * @param maxHeight
+	 * @return
+	 * @throws IOException
+	 */
+
+	public static TraceWriter create(Path file, int maxWidth, int maxHeight) throws IOException {
+
+		TraceWriter writer = new TraceWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+		writer.buffer.putInt(MAGIC).putInt(VERSION).putInt(maxWidth).putInt(maxHeight);
+
+		return writer;
+
+	}
+
+	/**
+	 * spawn
+	 * Adds an agent. Record: SPAWN, then id, radius (ints), x, y, dx, dy (doubles)
+	 *
+	 * @param id trace id, unused by any agent alive
+	 * @param radius
+	 * @param x
+	 * @param y
+	 * @param dx
+	 * @param dy
+	 * @throws IOException
+	 */
+
+	public void spawn(int id, int radius, double x, double y, double dx, double dy) throws IOException {
+		room();
+		buffer.put(SPAWN).putInt(id).putInt(radius).putDouble(x).putDouble(y).putDouble(dx).putDouble(dy);
+	}
+
+	/**
+	 * move
+	 * Sets the position and speed of an agent. Record: MOVE, then id (int), x, y, dx, dy (doubles)
+	 * SimulationEngine does not write it - its motion is replayed by the simulation itself. It is for recorders outside
+	 * the engine, such as a server logging the positions its clients send.
+	 *
+	 * @param id
+	 * @param x
+	 * @param y
+	 * @param dx
+	 * @param dy
+	 * @throws IOException
+	 */
+
+	public void move(int id, double x, double y, double dx, double dy) throws IOException {
+		room();
+		buffer.put(MOVE).putInt(id).putDouble(x).putDouble(y).putDouble(dx).putDouble(dy);
+	}
+
+	/**
+	 * despawn
+	 * Removes an agent - its id may be spawned again afterwards. Record: DESPAWN, then id (int)
+	 *
+	 * @param id
+	 * @throws IOException
+	 */
+
+	public void despawn(int id) throws IOException {
+		room();
+		buffer.put(DESPAWN).putInt(id);
+	}
+
+	/**
+	 * endTick
+	 * Ends the events of a tick - on replay the events before it are applied, then the tree steps once. Record: TICK alone
+	 *
+	 * @throws IOException
+	 */
+
+	public void endTick() throws IOException {
+		room();
+		buffer.put(TICK);
+		ticks++;
+	}
+
+	/**
+	 * getTicks
+	 * Returns the number of ticks written
+	 *
+	 * @return
+	 */
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * close
+	 * Writes what is left in the buffer and closes the file
+	 */
+
+	public void close() throws IOException {
+
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+
+	}
+
+	/**
+	 * room
+	 * Writes the buffer out once it may not fit another event
+	 */
+
+	private void room() throws IOException {
+
+		if (buffer.remaining() < MAX_EVENT) {
+			flush();
+		}
+
+	}
+
+	private void flush() throws IOException {
+
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+
+	}
+
+}
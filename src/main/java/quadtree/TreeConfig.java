@@ -0,0 +1,133 @@
+package quadtree;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/*
+ * TreeConfig
+ * Description: Tree settings read at startup instead of compiled in, so every map can run with its own (see load)
+ */
+
+public class TreeConfig {
+
+	//Keys, as in the file or after -Dquadtree. - a setting left out keeps the tree's default
+	static final String SPLIT = "split"; //Shapes a leaf needs before it splits (SPLIT_THRESHOLD)
+	static final String DEPTH = "depth"; //Deepest level a node can reach (MAX_LEVEL)
+	static final String SWEEP = "sweep"; //Occupancy from which a leaf is sorted and swept (NarrowPhase.SWEEP_THRESHOLD)
+	static final String AUTOTUNE = "autotune"; //true to let an AutoTuner adjust split and depth while running
+	static final String METRICS = "metrics"; //A name, to turn TreeMetrics on and register them with JMX as quadtree:type=TreeMetrics,name=<name>
+	static final String CONTACTS = "contacts"; //true to keep contacts across ticks in a ContactCache
+
+	private final Properties values;
+
+	private TreeConfig(Properties values) {
+		this.values = values;
+	}
+
+	/**
+	 * load
+	 * Reads the properties file named by -Dquadtree.config (one per map), if any, then the -Dquadtree.<key> system
+	 * properties, which override the file
+	 *
+	 * @return
+	 * @throws IllegalArgumentException if the file cannot be read
+	 */
+
+	public static TreeConfig load() {
+
+		Properties values = new Properties();
+		String file = System.getProperty("quadtree.config");
+
+		if (file != null) {
+			try (InputStream in = Files.newInputStream(Paths.get(file))) {
+				values.load(in);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("cannot read " + file, e);
+			}
+		}
+
+		for (String key : new String [] {SPLIT, DEPTH, SWEEP, AUTOTUNE, METRICS, CONTACTS}) {
+
+			String value = System.getProperty("quadtree." + key);
+
+			if (value != null) {
+				values.setProperty(key, value);
+			}
+
+		}
+
+		return new TreeConfig(values);
+
+	}
+
+	/**
+	 * of
+	 * Settings from the given properties, without looking at the system ones
+	 *
+	 * @param values
+	 * @return
+	 */
+
+	public static TreeConfig of(Properties values) {
+		return new TreeConfig(values);
+	}
+
+	/**
+	 * apply
+	 * Sets every configured value on a tree - before addAll, so the bulk build already uses them. UniformGrid has none of
+	 * the settings and is left as it is.
+	 *
+	 * @param broadPhase
+	 */
+
+	public void apply(BroadPhase broadPhase) {
+
+		if (!(broadPhase instanceof SpatialTree)) {
+			return;
+		}
+
+		SpatialTree tree = (SpatialTree) broadPhase;
+
+		if (values.containsKey(SPLIT)) {
+			tree.setSplitThreshold(intValue(SPLIT));
+		}
+
+		if (values.containsKey(DEPTH)) {
+			tree.setMaxLevel(intValue(DEPTH));
+		}
+
+		if (values.containsKey(SWEEP)) {
+			tree.setSweepThreshold(intValue(SWEEP));
+		}
+
+		if (Boolean.parseBoolean(values.getProperty(AUTOTUNE, "false").trim())) {
+			tree.setAutoTuner(new AutoTuner());
+		}
+
+		if (Boolean.parseBoolean(values.getProperty(CONTACTS, "false").trim())) {
+			tree.setContactCache(new ContactCache());
+		}
+
+		if (values.containsKey(METRICS)) {
+			tree.getMetrics().setEnabled(true);
+			tree.getMetrics().register(values.getProperty(METRICS).trim());
+		}
+
+	}
+
+	private int intValue(String key) {
+
+		String value = values.getProperty(key).trim();
+
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("quadtree." + key + " is not a number: " + value);
+		}
+
+	}
+
+}
@@ -0,0 +1,423 @@
+package quadtree;
+
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * TreeMetrics
+ * Description: Per-phase counters of a tree (see TreeMetricsMXBean for what each one means), off by default and switched
+ * on and off at runtime with setEnabled. While on, the tree times the phases of every step and updateTree, counts its pair
+ * tests, contacts, splits and collapses, and takes a census of its nodes after the tick; recording allocates nothing.
+ * Only the tree's thread writes. Readers (snapshot, JMX) copy the counters under a sequence number that is odd while a tick
+ * is being recorded, and retry if it changed, so they never see half a tick and never block the tree.
+ */
+
+public class TreeMetrics implements TreeMetricsMXBean {
+
+	public static final int FIND_CHANGED = 0;
+	public static final int MANAGE_NODE = 1;
+	public static final int UPDATE = 2;
+	public static final int CHECK_COLLIDE = 3;
+	static final int PHASES = 4;
+	static final int OCCUPANCY_BUCKETS = 16; //The last one also holds every leaf above 2^14 shapes
+
+	private volatile boolean enabled;
+	private volatile boolean resetRequested; //reset from another thread - done by the tree's thread on its next record
+	private volatile long version; //Odd while record is writing
+	private ObjectName name; //Set by register
+
+	//Published - written by record only
+	private long ticks;
+	private long [] phaseNanos = new long[PHASES];
+	private long [] lastPhaseNanos = new long[PHASES];
+	private long displaced;
+	private long relocations;
+	private long splits;
+	private long collapses;
+	private int nodeCount;
+	private int leafCount;
+	private long [] depthHistogram = new long[quadTree.MAX_LEVEL+1];
+	private long [] occupancyHistogram = new long[OCCUPANCY_BUCKETS];
+	private long pairTests;
+	private long contacts;
+
+	//Census of the tick being recorded
+	private int censusNodes;
+	private int censusLeaves;
+	private long [] censusDepth = new long[quadTree.MAX_LEVEL+1];
+	private long [] censusOccupancy = new long[OCCUPANCY_BUCKETS];
+
+	private final Contacts counter;
+
+	/**
+	 * TreeMetrics Constructor
+	 * Initializes for a tree whose collisions are resolved by response (AgentStore.response)
+	 *
+	 * @param response
+	 */
+
+	TreeMetrics(PairVisitor response) {
+		this.counter = new Contacts(response);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * response
+	 * The collision response, counting contacts - safe from the threads of a parallel checkCollide
+	 *
+	 * @return
+	 */
+
+	PairVisitor response() {
+		return counter;
+	}
+
+	/**
+	 * startCensus / node
+	 * Census of the nodes after a tick - the tree calls node once for every node, between startCensus and record
+	 */
+
+	void startCensus() {
+		censusNodes = 0;
+		censusLeaves = 0;
+		Arrays.fill(censusDepth, 0);
+		Arrays.fill(censusOccupancy, 0);
+	}
+
+	void node(int level, boolean leaf, int shapes) {
+
+		censusNodes++;
+		censusDepth[Math.min(level, censusDepth.length-1)]++;
+
+		if (leaf) {
+			censusLeaves++;
+			censusOccupancy[Math.min(32 - Integer.numberOfLeadingZeros(shapes), OCCUPANCY_BUCKETS-1)]++;
+		}
+
+	}
+
+	/**
+	 * record
+	 * Adds one tick and publishes the census taken since startCensus
+	 *
+	 * @param findChanged nanoseconds of each phase
+	 * @param manageNode
+	 * @param update
+	 * @param checkCollide
+	 * @param displaced shapes that left their node
+	 * @param relocations shapes moved to another node
+	 * @param splits
+	 * @param collapses
+	 * @param pairTests
+	 */
+
+	void record(long findChanged, long manageNode, long update, long checkCollide, int displaced, int relocations, int splits, int collapses, long pairTests) {
+
+		long v = version;
+		version = v+1;
+		VarHandle.storeStoreFence(); //The counters are not written before the sequence number turns odd
+
+		if (resetRequested) {
+			resetRequested = false;
+			clear();
+		}
+
+		ticks++;
+		lastPhaseNanos[FIND_CHANGED] = findChanged;
+		lastPhaseNanos[MANAGE_NODE] = manageNode;
+		lastPhaseNanos[UPDATE] = update;
+		lastPhaseNanos[CHECK_COLLIDE] = checkCollide;
+
+		for (int p = 0; p < PHASES; p++) {
+			phaseNanos[p] += lastPhaseNanos[p];
+		}
+
+		this.displaced += displaced;
+		this.relocations += relocations;
+		this.splits += splits;
+		this.collapses += collapses;
+		this.pairTests += pairTests;
+		this.contacts += counter.count.sumThenReset();
+		nodeCount = censusNodes;
+		leafCount = censusLeaves;
+		System.arraycopy(censusDepth, 0, depthHistogram, 0, censusDepth.length);
+		System.arraycopy(censusOccupancy, 0, occupancyHistogram, 0, censusOccupancy.length);
+
+		version = v+2;
+
+	}
+
+	private void clear() {
+		ticks = 0;
+		Arrays.fill(phaseNanos, 0);
+		displaced = 0;
+		relocations = 0;
+		splits = 0;
+		collapses = 0;
+		pairTests = 0;
+		contacts = 0;
+	}
+
+	/**
+	 * snapshot
+	 * Copies every counter, from one tick
+	 *
+	 * @return
+	 */
+
+	public Snapshot snapshot() {
+
+		while (true) {
+
+			long v = version;
+
+			if ((v & 1) == 0) {
+
+				Snapshot s = new Snapshot(ticks, phaseNanos.clone(), lastPhaseNanos.clone(), displaced, relocations, splits, collapses,
+						nodeCount, leafCount, depthHistogram.clone(), occupancyHistogram.clone(), pairTests, contacts);
+
+				VarHandle.loadLoadFence(); //The copy is done before the sequence number is checked again
+
+				if (version == v) {
+					return s;
+				}
+
+			}
+
+			Thread.onSpinWait();
+
+		}
+
+	}
+
+	public long getTicks() {
+		return snapshot().ticks;
+	}
+
+	public long [] getPhaseNanos() {
+		return snapshot().phaseNanos;
+	}
+
+	public long [] getLastPhaseNanos() {
+		return snapshot().lastPhaseNanos;
+	}
+
+	public long getDisplaced() {
+		return snapshot().displaced;
+	}
+
+	public long getRelocations() {
+		return snapshot().relocations;
+	}
+
+	public long getSplits() {
+		return snapshot().splits;
+	}
+
+	public long getCollapses() {
+		return snapshot().collapses;
+	}
+
+	public int getNodeCount() {
+		return snapshot().nodeCount;
+	}
+
+	public int getLeafCount() {
+		return snapshot().leafCount;
+	}
+
+	public long [] getDepthHistogram() {
+		return snapshot().depthHistogram;
+	}
+
+	public long [] getOccupancyHistogram() {
+		return snapshot().occupancyHistogram;
+	}
+
+	public long getPairTests() {
+		return snapshot().pairTests;
+	}
+
+	public long getContacts() {
+		return snapshot().contacts;
+	}
+
+	public void reset() {
+		resetRequested = true;
+	}
+
+	/**
+	 * register
+	 * Registers with the platform MBean server as quadtree:type=TreeMetrics,name=<name>
+	 *
+	 * @param name
+	 * @return
+	 */
+
+	public synchronized ObjectName register(String name) {
+
+		try {
+			ObjectName objectName = new ObjectName("quadtree:type=TreeMetrics,name=" + name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.name = objectName;
+			return objectName;
+		} catch (JMException e) {
+			throw new IllegalStateException("cannot register " + name, e);
+		}
+
+	}
+
+	/**
+	 * unregister
+	 * Removes the MBean registered by register, if any
+	 */
+
+	public synchronized void unregister() {
+
+		if (name == null) {
+			return;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			throw new IllegalStateException("cannot unregister " + name, e);
+		}
+
+		name = null;
+
+	}
+
+	/**
+	 * Contacts
+	 * Counts the pairs passed to the collision response
+	 */
+
+	private static class Contacts implements PairVisitor {
+
+		private final PairVisitor response;
+		private final LongAdder count = new LongAdder(); //Threads of a parallel checkCollide add to it at the same time
+
+		Contacts(PairVisitor response) {
+			this.response = response;
+		}
+
+		public void visit(int ag1, int ag2) {
+			count.increment();
+			response.visit(ag1, ag2);
+		}
+
+	}
+
+	/**
+	 * Snapshot
+	 * Counters of a tree at one tick - see TreeMetricsMXBean
+	 */
+
+	public static final class Snapshot {
+
+		private final long ticks;
+		private final long [] phaseNanos;
+		private final long [] lastPhaseNanos;
+		private final long displaced;
+		private final long relocations;
+		private final long splits;
+		private final long collapses;
+		private final int nodeCount;
+		private final int leafCount;
+		private final long [] depthHistogram;
+		private final long [] occupancyHistogram;
+		private final long pairTests;
+		private final long contacts;
+
+		Snapshot(long ticks, long [] phaseNanos, long [] lastPhaseNanos, long displaced, long relocations, long splits, long collapses,
+				int nodeCount, int leafCount, long [] depthHistogram, long [] occupancyHistogram, long pairTests, long contacts) {
+			this.ticks = ticks;
+			this.phaseNanos = phaseNanos;
+			this.lastPhaseNanos = lastPhaseNanos;
+			this.displaced = displaced;
+			this.relocations = relocations;
+			this.splits = splits;
+			this.collapses = collapses;
+			this.nodeCount = nodeCount;
+			this.leafCount = leafCount;
+			this.depthHistogram = depthHistogram;
+			this.occupancyHistogram = occupancyHistogram;
+			this.pairTests = pairTests;
+			this.contacts = contacts;
+		}
+
+		public long getTicks() {
+			return ticks;
+		}
+
+		public long getPhaseNanos(int phase) {
+			return phaseNanos[phase];
+		}
+
+		public long getLastPhaseNanos(int phase) {
+			return lastPhaseNanos[phase];
+		}
+
+		public long getDisplaced() {
+			return displaced;
+		}
+
+		public long getRelocations() {
+			return relocations;
+		}
+
+		public long getSplits() {
+			return splits;
+		}
+
+		public long getCollapses() {
+			return collapses;
+		}
+
+		public int getNodeCount() {
+			return nodeCount;
+		}
+
+		public int getLeafCount() {
+			return leafCount;
+		}
+
+		public long [] getDepthHistogram() {
+			return depthHistogram.clone();
+		}
+
+		public long [] getOccupancyHistogram() {
+			return occupancyHistogram.clone();
+		}
+
+		public long getPairTests() {
+			return pairTests;
+		}
+
+		public long getContacts() {
+			return contacts;
+		}
+
+		public String toString() {
+			return "ticks=" + ticks + " phaseNanos=" + Arrays.toString(phaseNanos) + " displaced=" + displaced + " relocations=" + relocations
+					+ " splits=" + splits + " collapses=" + collapses + " nodes=" + nodeCount + " leaves=" + leafCount
+					+ " depth=" + Arrays.toString(depthHistogram) + " occupancy=" + Arrays.toString(occupancyHistogram)
+					+ " pairTests=" + pairTests + " contacts=" + contacts;
+		}
+
+	}
+
+}
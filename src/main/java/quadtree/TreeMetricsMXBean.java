@@ -0,0 +1,100 @@
+package quadtree;
+
+/*
+ * TreeMetricsMXBean
+ * Description: JMX view of TreeMetrics - registered as quadtree:type=TreeMetrics,name=<name> by TreeMetrics.register.
+ * Counters (times, displaced shapes, relocations, splits, collapses, pair tests, contacts, ticks) only grow while enabled,
+ * so a dashboard takes rates from them; node count and both histograms describe the tree after the last recorded tick.
+ * Every attribute is read from one consistent tick.
+ */
+
+public interface TreeMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getTicks();
+
+	/**
+	 * getPhaseNanos
+	 * Nanoseconds spent in findChanged, manageNode, update and checkCollide, in that order, over every recorded tick
+	 * (findChanged includes the move of step, which finds the displaced shapes while moving them)
+	 *
+	 * @return
+	 */
+
+	long [] getPhaseNanos();
+
+	/**
+	 * getLastPhaseNanos
+	 * Same as getPhaseNanos, for the last tick only
+	 *
+	 * @return
+	 */
+
+	long [] getLastPhaseNanos();
+
+	long getDisplaced();
+
+	/**
+	 * getRelocations
+	 * Shapes moved from one node to another - the displaced ones, plus the ones moved by splits and collapses
+	 *
+	 * @return
+	 */
+
+	long getRelocations();
+
+	long getSplits();
+
+	long getCollapses();
+
+	int getNodeCount();
+
+	int getLeafCount();
+
+	/**
+	 * getDepthHistogram
+	 * Number of nodes at each level, from the root (level 0) to MAX_LEVEL
+	 *
+	 * @return
+	 */
+
+	long [] getDepthHistogram();
+
+	/**
+	 * getOccupancyHistogram
+	 * Number of leaves by number of shapes held - bucket 0 counts empty leaves, bucket b leaves with 2^(b-1) to 2^b - 1 shapes
+	 *
+	 * @return
+	 */
+
+	long [] getOccupancyHistogram();
+
+	/**
+	 * getPairTests
+	 * Pairs compared by the pair search (the narrow phase, and the cross-node search of a loose tree)
+	 *
+	 * @return
+	 */
+
+	long getPairTests();
+
+	/**
+	 * getContacts
+	 * Pairs found intersecting and resolved
+	 *
+	 * @return
+	 */
+
+	long getContacts();
+
+	/**
+	 * reset
+	 * Sets every counter back to 0
+	 */
+
+	void reset();
+
+}
@@ -0,0 +1,261 @@
+package quadtree;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/*
+ * TreeSnapshot
+ * Description: Binary checkpoint of a tree - agents and node layout - through memory-mapped files (see write and read)
+ */
+
+public class TreeSnapshot {
+
+	static final int MAGIC = 0x534e5451; //"QTNS"
+	static final int VERSION = 1;
+	static final int HEADER = 64;
+	private static final int CHECKSUM = 56; //Offset of the checksum in the header
+
+	private static final int POINTER = 0;
+	private static final int LOOSE = 1;
+	private static final int LINEAR = 2;
+
+	private TreeSnapshot() {
+	}
+
+	/**
+	 * write
+	 * Saves a quadTree or LinearQuadTree to a file, replacing it - one bulk copy per array, no per-agent formatting. The file
+	 * is written next to the target and moved over it once complete, so a crash while saving leaves the previous snapshot in
+	 * place. Layout, little-endian:
+	 *   header (HEADER bytes)  magic, version, kind, maxBX, maxBY, split, collapse, maxLevel, sweep, agents, looseness, nodeInts, checksum
+	 *   x, y, dx, dy           agents doubles each
+	 *   radius                 agents ints
+	 *   nodes                  nodeInts ints - see quadTree.writeNodes and LinearQuadTree.writeNodes
+	 * The checksum is the CRC32C of the whole file, with the checksum itself read as 0. Settings that are not part of the
+	 * tree state (AutoTuner, metrics, ContactCache, setParallel, AgentStore.setResponse) are not saved.
+	 *
+	 * @param tree
+	 * @param file
+	 * @throws IOException
+	 */
+
+	public static void write(SpatialTree tree, Path file) throws IOException {
+
+		AgentStore store = tree.getStore();
+		int n = store.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		long nodeInts;
+
+		header.putInt(MAGIC).putInt(VERSION);
+
+		if (tree instanceof quadTree) {
+			quadTree<?> pointer = (quadTree<?>) tree;
+			header.putInt(pointer.isLoose() ? LOOSE : POINTER).putInt(pointer.maxBoundX).putInt(pointer.maxBoundY);
+			header.putInt(pointer.getSplitThreshold()).putInt(pointer.getSplitThreshold()).putInt(pointer.getMaxLevel());
+			header.putInt(pointer.getSweepThreshold()).putInt(n).putDouble(pointer.getLooseness());
+			nodeInts = pointer.nodeInts();
+		} else if (tree instanceof LinearQuadTree) {
+			LinearQuadTree linear = (LinearQuadTree) tree;
+			header.putInt(LINEAR).putInt(linear.maxBoundX).putInt(linear.maxBoundY);
+			header.putInt(linear.getSplitThreshold()).putInt(linear.getCollapseThreshold()).putInt(linear.getMaxLevel());
+			header.putInt(linear.getSweepThreshold()).putInt(n).putDouble(1);
+			nodeInts = linear.nodeInts();
+		} else {
+			throw new IllegalArgumentException("cannot snapshot " + tree.getClass().getName());
+		}
+
+		header.putLong(nodeInts).putLong(0);
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			CRC32C crc = new CRC32C();
+			crc.update(header.array(), 0, HEADER);
+			long offset = HEADER;
+
+			for (double [] column : new double [][] {store.x, store.y, store.dx, store.dy}) {
+				MappedByteBuffer section = map(channel, MapMode.READ_WRITE, offset, 8L*n);
+				section.asDoubleBuffer().put(column, 0, n);
+				offset = finish(section, crc, offset);
+			}
+
+			MappedByteBuffer section = map(channel, MapMode.READ_WRITE, offset, 4L*n);
+			section.asIntBuffer().put(store.radius, 0, n);
+			offset = finish(section, crc, offset);
+
+			section = map(channel, MapMode.READ_WRITE, offset, 4*nodeInts);
+
+			if (tree instanceof quadTree) {
+				((quadTree<?>) tree).writeNodes(section.asIntBuffer());
+			} else {
+				((LinearQuadTree) tree).writeNodes(section.asIntBuffer());
+			}
+
+			finish(section, crc, offset);
+
+			header.putLong(CHECKSUM, crc.getValue());
+			header.rewind();
+			MappedByteBuffer head = map(channel, MapMode.READ_WRITE, 0, HEADER);
+			head.put(header);
+			head.force();
+
+		}
+
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+	}
+
+	/**
+	 * read
+	 * Restores a tree saved by write, with the same nodes and the same order in every agentList as the saved one - it goes on
+	 * tick for tick exactly like the original would have. The counts in the header are checked against the length of the
+	 * file before anything is allocated or mapped.
+	 *
+	 * @param file
+	 * @return a quadTree (loose or not) or a LinearQuadTree, as saved
+	 * @throws IOException if the file is not a snapshot, comes from a newer version, has counts that do not match its length
+	 * or fails its checksum
+	 */
+
+	public static SpatialTree read(Path file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			if (channel.size() < HEADER) {
+				throw new IOException(file + " is not a tree snapshot");
+			}
+
+			ByteBuffer header = map(channel, MapMode.READ_ONLY, 0, HEADER);
+
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(file + " is not a tree snapshot");
+			}
+
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(file + " is a version " + header.getInt(4) + " snapshot, this reader knows version " + VERSION);
+			}
+
+			int kind = header.getInt(8);
+			int maxBX = header.getInt(12);
+			int maxBY = header.getInt(16);
+			int split = header.getInt(20);
+			int collapse = header.getInt(24);
+			int maxLevel = header.getInt(28);
+			int sweep = header.getInt(32);
+			int n = header.getInt(36);
+			double looseness = header.getDouble(40);
+			long nodeInts = header.getLong(48);
+			long checksum = header.getLong(CHECKSUM);
+
+			long nodeBytes = channel.size() - HEADER - 36L*n; //Before 4*nodeInts, which overflows on a bad count
+
+			if (n < 0 || nodeBytes < 0 || nodeInts < 0 || nodeInts != nodeBytes/4 || nodeBytes % 4 != 0) {
+				throw new IOException(file + " is truncated or has a bad header");
+			}
+
+			if (8L*n > Integer.MAX_VALUE || nodeBytes > Integer.MAX_VALUE) { //Larger than one mapping
+				throw new IOException(file + " is too large to read");
+			}
+
+			CRC32C crc = new CRC32C();
+			ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN).put(header.duplicate().clear());
+			head.putLong(CHECKSUM, 0);
+			crc.update(head.array(), 0, HEADER);
+
+			SpatialTree tree;
+
+			try {
+				if (kind == LINEAR) {
+					tree = new LinearQuadTree(maxBX, maxBY, split, collapse, maxLevel);
+				} else if (kind == LOOSE) {
+					tree = new quadTree<Shape>(maxBX, maxBY, looseness);
+				} else if (kind == POINTER) {
+					tree = new quadTree<Shape>(maxBX, maxBY);
+				} else {
+					throw new IOException(file + " holds an unknown tree kind " + kind);
+				}
+			} catch (IllegalArgumentException e) {
+				throw new IOException(file + " has a bad header", e);
+			}
+
+			tree.setSplitThreshold(split);
+			tree.setMaxLevel(maxLevel);
+			tree.setSweepThreshold(sweep);
+
+			AgentStore store = tree.getStore();
+			store.setSize(n);
+			long offset = HEADER;
+
+			for (double [] column : new double [][] {store.x, store.y, store.dx, store.dy}) {
+				MappedByteBuffer section = map(channel, MapMode.READ_ONLY, offset, 8L*n);
+				section.asDoubleBuffer().get(column, 0, n);
+				offset = finish(section, crc, offset);
+			}
+
+			MappedByteBuffer section = map(channel, MapMode.READ_ONLY, offset, 4L*n);
+			section.asIntBuffer().get(store.radius, 0, n);
+			offset = finish(section, crc, offset);
+
+			section = map(channel, MapMode.READ_ONLY, offset, nodeBytes);
+			crc.update(section.duplicate());
+
+			if (crc.getValue() != checksum) {
+				throw new IOException(file + " fails its checksum");
+			}
+
+			try {
+				if (tree instanceof quadTree) {
+					((quadTree<?>) tree).readNodes(section.asIntBuffer());
+				} else {
+					((LinearQuadTree) tree).readNodes(section.asIntBuffer());
+				}
+			} catch (IllegalArgumentException | BufferUnderflowException e) {
+				throw new IOException(file + " has a bad node layout", e);
+			}
+
+			return tree;
+
+		}
+
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, MapMode mode, long offset, long bytes) throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, offset, bytes);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * finish
+	 * Adds a section to the checksum (forcing it to disk when it was written) and returns the offset of the next one
+	 */
+
+	private static long finish(MappedByteBuffer section, CRC32C crc, long offset) {
+
+		if (!section.isReadOnly()) {
+			section.force();
+		}
+
+		crc.update(section.duplicate());
+
+		return offset + section.capacity();
+
+	}
+
+}
@@ -0,0 +1,513 @@
+package quadtree;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * TreeView
+ * Description: Read-only, indexed copy of the agents after one tick, queried by any thread (see SimulationEngine.acquireView)
+ */
+
+public class TreeView implements AutoCloseable {
+
+	private static final double AGENTS_PER_CELL = 2;
+
+	private final AtomicInteger refs = new AtomicInteger(); //Holders - 1 for the engine while this is the latest view, 1 per reader
+
+	private long tick;
+	private int count;
+	private double [] x = new double[0];
+	private double [] y = new double[0];
+	private int [] radius = new int[0];
+	private int maxRadius;
+
+	//Index - a uniform grid rebuilt by fill with a counting sort like UniformGrid, sized for about AGENTS_PER_CELL agents per
+	//cell whatever their radius (queries only look at centers)
+	private double cellSize;
+	private int columns;
+	private int rows;
+	private int [] cellStart = new int[1]; //Agents of cell c are cellAgents[cellStart[c]..cellStart[c+1])
+	private int [] cellAgents = new int[0];
+	private double [] cellX = new double[0]; //Position and radius of cellAgents[k] at k - queries read them in order
+	private double [] cellY = new double[0];
+	private int [] cellRadius = new int[0];
+	private int [] cellOf = new int[0]; //Scratch of fill
+
+	/**
+	 * getTick
+	 * Returns the tick this view was taken after (SimulationEngine.getTicks at the time)
+	 *
+	 * @return
+	 */
+
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * size
+	 * Returns the number of agents in the view - handles go from 0 to size-1
+	 *
+	 * @return
+	 */
+
+	public int size() {
+		return count;
+	}
+
+	public double x(int handle) {
+		return x[handle];
+	}
+
+	public double y(int handle) {
+		return y[handle];
+	}
+
+	public int radius(int handle) {
+		return radius[handle];
+	}
+
+	/**
+	 * getMaxRadius
+	 * Returns the largest radius in the view - how far past a rectangle to query for every shape that overlaps it
+	 *
+	 * @return
+	 */
+
+	public int getMaxRadius() {
+		return maxRadius;
+	}
+
+	/**
+	 * queryRect
+	 * Same query as BroadPhase.queryRect, on the positions of the view
+	 *
+	 * @param x0 lower corner
+	 * @param y0
+	 * @param x1 higher corner
+	 * @param y1
+	 * @param visitor
+	 */
+
+	public void queryRect(double x0, double y0, double x1, double y1, AgentVisitor visitor) {
+
+		for (int iy = cellY(y0); iy <= cellY(y1); iy++) {
+			for (int ix = cellX(x0); ix <= cellX(x1); ix++) {
+
+				int c = iy*columns + ix;
+
+				for (int k = cellStart[c]; k < cellStart[c+1]; k++) {
+
+					int handle = cellAgents[k];
+					double hx = cellX[k];
+					double hy = cellY[k];
+
+					if (hx >= x0 && hx <= x1 && hy >= y0 && hy <= y1) {
+						visitor.visit(handle);
+					}
+
+				}
+
+			}
+		}
+
+	}
+
+	/**
+	 * querySlots
+	 * Same query, calling the visitor with the slot of each agent in the index instead of its handle - read with slotX, slotY
+	 * and slotRadius, which are laid out in index order, so a query over many agents reads memory front to back
+	 *
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param visitor
+	 */
+
+	void querySlots(double x0, double y0, double x1, double y1, AgentVisitor visitor) {
+
+		for (int iy = cellY(y0); iy <= cellY(y1); iy++) {
+
+			int c0 = iy*columns + cellX(x0);
+			int c1 = iy*columns + cellX(x1);
+
+			for (int k = cellStart[c0]; k < cellStart[c1+1]; k++) { //The cells of a row are contiguous
+
+				if (cellX[k] >= x0 && cellX[k] <= x1 && cellY[k] >= y0 && cellY[k] <= y1) {
+					visitor.visit(k);
+				}
+
+			}
+
+		}
+
+	}
+
+	double slotX(int k) {
+		return cellX[k];
+	}
+
+	double slotY(int k) {
+		return cellY[k];
+	}
+
+	int slotRadius(int k) {
+		return cellRadius[k];
+	}
+
+	/**
+	 * queryRect
+	 * Same query, writing the handles found into out as long as they fit
+	 *
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param out
+	 * @return number of agents found - more than out.length if out was too small
+	 */
+
+	public int queryRect(double x0, double y0, double x1, double y1, int [] out) {
+
+		int found = 0;
+
+		for (int iy = cellY(y0); iy <= cellY(y1); iy++) {
+			for (int ix = cellX(x0); ix <= cellX(x1); ix++) {
+
+				int c = iy*columns + ix;
+
+				for (int k = cellStart[c]; k < cellStart[c+1]; k++) {
+
+					int handle = cellAgents[k];
+					double hx = cellX[k];
+					double hy = cellY[k];
+
+					if (hx >= x0 && hx <= x1 && hy >= y0 && hy <= y1) {
+
+						if (found < out.length) {
+							out[found] = handle;
+						}
+
+						found++;
+
+					}
+
+				}
+
+			}
+		}
+
+		return found;
+
+	}
+
+	/**
+	 * queryCircle
+	 * Same query as BroadPhase.queryCircle, on the positions of the view
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param r
+	 * @param visitor
+	 */
+
+	public void queryCircle(double cx, double cy, double r, AgentVisitor visitor) {
+
+		if (r < 0) {
+			return;
+		}
+
+		for (int iy = cellY(cy-r); iy <= cellY(cy+r); iy++) {
+			for (int ix = cellX(cx-r); ix <= cellX(cx+r); ix++) {
+
+				int c = iy*columns + ix;
+
+				for (int k = cellStart[c]; k < cellStart[c+1]; k++) {
+
+					int handle = cellAgents[k];
+					double hx = cellX[k];
+					double hy = cellY[k];
+
+					if ((hx-cx)*(hx-cx) + (hy-cy)*(hy-cy) <= r*r) {
+						visitor.visit(handle);
+					}
+
+				}
+
+			}
+		}
+
+	}
+
+	/**
+	 * queryCircle
+	 * Same query, writing the handles found into out as long as they fit
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param r
+	 * @param out
+	 * @return number of agents found - more than out.length if out was too small
+	 */
+
+	public int queryCircle(double cx, double cy, double r, int [] out) {
+
+		int found = 0;
+
+		if (r < 0) {
+			return 0;
+		}
+
+		for (int iy = cellY(cy-r); iy <= cellY(cy+r); iy++) {
+			for (int ix = cellX(cx-r); ix <= cellX(cx+r); ix++) {
+
+				int c = iy*columns + ix;
+
+				for (int k = cellStart[c]; k < cellStart[c+1]; k++) {
+
+					int handle = cellAgents[k];
+					double hx = cellX[k];
+					double hy = cellY[k];
+
+					if ((hx-cx)*(hx-cx) + (hy-cy)*(hy-cy) <= r*r) {
+
+						if (found < out.length) {
+							out[found] = handle;
+						}
+
+						found++;
+
+					}
+
+				}
+
+			}
+		}
+
+		return found;
+
+	}
+
+	/**
+	 * nearest
+	 * Same search as SpatialTree.nearest, on the positions of the view - rings of cells around the cell of (x, y), one ring
+	 * further each time, stopping once every cell outside the rings searched is farther than the k-th best. k of 0 or less
+	 * finds nothing, as on the trees
+	 *
+	 * @param px
+	 * @param py
+	 * @param k
+	 * @param result filled and returned - one per thread
+	 * @return
+	 */
+
+	public NearestResult nearest(double px, double py, int k, NearestResult result) {
+
+		result.reset(Math.max(Math.min(k, count), 0));
+
+		if (k <= 0 || count == 0) {
+			result.finish();
+			return result;
+		}
+
+		int cx = cellX(px);
+		int cy = cellY(py);
+		int rings = Math.max(Math.max(cx, columns-1-cx), Math.max(cy, rows-1-cy));
+
+		for (int d = 0; d <= rings; d++) {
+
+			for (int iy = Math.max(cy-d, 0); iy <= Math.min(cy+d, rows-1); iy++) {
+
+				boolean edge = iy == cy-d || iy == cy+d;
+				int step = edge ? 1 : 2*d; //Inside rows only hold the two ends of the ring
+
+				for (int ix = cx-d; ix <= cx+d; ix += Math.max(step, 1)) {
+
+					if (ix < 0 || ix >= columns) {
+						continue;
+					}
+
+					int c = iy*columns + ix;
+
+					for (int i = cellStart[c]; i < cellStart[c+1]; i++) {
+						result.offer(cellAgents[i], (cellX[i]-px)*(cellX[i]-px) + (cellY[i]-py)*(cellY[i]-py));
+					}
+
+				}
+
+			}
+
+			//Closest any cell beyond ring d can be - the distance from the point to the edge of the block of rings searched
+			double gap = Math.min(Math.min(px - (cx-d)*cellSize, (cx+d+1)*cellSize - px), Math.min(py - (cy-d)*cellSize, (cy+d+1)*cellSize - py));
+
+			if (gap > 0 && gap*gap >= result.bound()) {
+				break;
+			}
+
+		}
+
+		result.finish();
+
+		return result;
+
+	}
+
+	/**
+	 * nearest
+	 * Same search, into a new result
+	 *
+	 * @param px
+	 * @param py
+	 * @param k
+	 * @return
+	 */
+
+	public NearestResult nearest(double px, double py, int k) {
+		return nearest(px, py, k, new NearestResult());
+	}
+
+	/**
+	 * close
+	 * Releases the view, which must not be used afterwards. A view is reference counted - acquireView retains it, close
+	 * releases it - and the engine only refills a view nobody holds.
+	 */
+
+	public void close() {
+		release();
+	}
+
+	/**
+	 * retain
+	 * Takes a hold on the view, unless it was released by everyone - then it may be refilled already, and must not be read
+	 *
+	 * @return whether the hold was taken
+	 */
+
+	boolean retain() {
+
+		int n;
+
+		do {
+
+			n = refs.get();
+
+			if (n == 0) {
+				return false;
+			}
+
+		} while (!refs.compareAndSet(n, n+1));
+
+		return true;
+
+	}
+
+	void release() {
+
+		if (refs.decrementAndGet() < 0) {
+			throw new IllegalStateException("view released more often than acquired");
+		}
+
+	}
+
+	/**
+	 * isFree
+	 * Whether nobody holds the view - only then may the engine refill it
+	 *
+	 * @return
+	 */
+
+	boolean isFree() {
+		return refs.get() == 0;
+	}
+
+	/**
+	 * fill
+	 * Copies the agents of the store and indexes them - called by the engine on a free view, before publish
+	 *
+	 * @param store
+	 * @param tick
+	 * @param maxWidth area the cells cover - positions outside it go to the closest cell
+	 * @param maxHeight
+	 */
+
+	void fill(AgentStore store, long tick, int maxWidth, int maxHeight) {
+
+		int n = store.size();
+
+		if (x.length < n) {
+			x = new double[store.capacity()];
+			y = new double[store.capacity()];
+			radius = new int[store.capacity()];
+			cellAgents = new int[store.capacity()];
+			cellX = new double[store.capacity()];
+			cellY = new double[store.capacity()];
+			cellRadius = new int[store.capacity()];
+			cellOf = new int[store.capacity()];
+		}
+
+		System.arraycopy(store.x, 0, x, 0, n);
+		System.arraycopy(store.y, 0, y, 0, n);
+		System.arraycopy(store.radius, 0, radius, 0, n);
+		this.count = n;
+		this.tick = tick;
+		this.maxRadius = 0;
+
+		for (int i = 0; i < n; i++) {
+			maxRadius = Math.max(maxRadius, radius[i]);
+		}
+
+		double size = Math.sqrt((double)maxWidth*maxHeight*AGENTS_PER_CELL/Math.max(n, 1));
+		int newColumns = Math.max((int)Math.ceil(maxWidth/size), 1);
+		int newRows = Math.max((int)Math.ceil(maxHeight/size), 1);
+
+		if (newColumns != columns || newRows != rows) { //Only when the number of agents changed
+			columns = newColumns;
+			rows = newRows;
+			cellStart = new int[columns*rows + 1];
+		}
+
+		cellSize = size;
+
+		int cells = columns*rows;
+
+		Arrays.fill(cellStart, 0);
+
+		for (int i = 0; i < n; i++) {
+			int c = cellY(y[i])*columns + cellX(x[i]);
+			cellOf[i] = c;
+			cellStart[c]++;
+		}
+
+		for (int c = 1; c <= cells; c++) {
+			cellStart[c] += cellStart[c-1];
+		}
+
+		for (int i = n-1; i >= 0; i--) {
+			int k = --cellStart[cellOf[i]];
+			cellAgents[k] = i;
+			cellX[k] = x[i];
+			cellY[k] = y[i];
+			cellRadius[k] = radius[i];
+		}
+
+	}
+
+	/**
+	 * publish
+	 * Marks a filled view as held by the engine - the atomic write orders the fill before any reader's retain
+	 */
+
+	void publish() {
+		refs.set(1);
+	}
+
+	private int cellX(double px) {
+		return Math.min(Math.max((int)Math.floor(px/cellSize), 0), columns-1);
+	}
+
+	private int cellY(double py) {
+		return Math.min(Math.max((int)Math.floor(py/cellSize), 0), rows-1);
+	}
+
+}
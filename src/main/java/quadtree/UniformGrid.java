@@ -0,0 +1,334 @@
+package quadtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/*
+ * UniformGrid
+ * Description: BroadPhase on a uniform grid of square cells, one cell size for the whole area - 2*radius+1, the farthest
+ * apart two centers can be and still intersect (AgentStore.intersects rounds one of them), so every pair lies in one cell or
+ * two neighbouring ones. Cells are rebuilt from scratch by relocateAll with a counting sort into flat arrays, which is cheap
+ * when every agent has the same radius and the density is even. Positions outside the area go to the closest cell, like
+ * LinearQuadTree.morton, so shapes that left it are still found.
+ */
+
+public class UniformGrid implements BroadPhase {
+
+	int maxBoundX;
+	int maxBoundY;
+	private int radius; //Largest radius so far - sets the cell size
+	private int cellSize;
+	private int columns;
+	private int rows;
+
+	private AgentStore store = new AgentStore();
+	private ArrayList<Shape> agents = new ArrayList<Shape>(); //Every shape, by handle
+	private int [] cellOf = new int[16]; //Cell of each handle at the last relocateAll
+	private int [] cellStart = new int[1]; //Agents of cell c are cellAgents[cellStart[c]..cellStart[c+1])
+	private int [] cellAgents = new int[16]; //Handles, cell by cell, in handle order within a cell
+	private boolean stale; //Agents were added since the last relocateAll
+
+	/**
+	 * UniformGrid Constructor
+	 * Initializes with the dimensions of the area and the radius of the agents (a larger agent added later grows the cells)
+	 *
+	 * @param maxBX
+	 * @param maxBY
+	 * @param radius
+	 */
+
+	public UniformGrid(int maxBX, int maxBY, int radius) {
+		this.maxBoundX = maxBX;
+		this.maxBoundY = maxBY;
+		resize(Math.max(radius, 1));
+	}
+
+	/**
+	 * resize
+	 * Sets the cells for agents of a radius
+	 *
+	 * @param radius
+	 */
+
+	private void resize(int radius) {
+		this.radius = radius;
+		this.cellSize = 2*radius + 1;
+		this.columns = Math.max((maxBoundX + cellSize - 1)/cellSize, 1);
+		this.rows = Math.max((maxBoundY + cellSize - 1)/cellSize, 1);
+		this.cellStart = new int[columns*rows + 1];
+		this.stale = true;
+	}
+
+	public void addAgent(Shape agent) {
+
+		if (agent.isIn(store)) {
+			return;
+		}
+
+		int handle = agent.bind(store);
+		agents.add(agent);
+
+		if (handle == cellOf.length) {
+			cellOf = Arrays.copyOf(cellOf, handle*2);
+			cellAgents = Arrays.copyOf(cellAgents, handle*2);
+		}
+
+		if (store.radius[handle] > radius) {
+			resize(store.radius[handle]);
+		}
+
+		stale = true; //The cells are rebuilt on the next query, findPairs or relocateAll
+
+	}
+
+	public void addAll(Collection<? extends Shape> batch) {
+
+		for (Shape agent : batch) {
+			addAgent(agent);
+		}
+
+		relocateAll();
+
+	}
+
+	/**
+	 * removeAgent
+	 * Removes a shape from the store (see BroadPhase.removeAgent) - the cells are rebuilt on the next query, findPairs or relocateAll
+	 *
+	 * @param agent
+	 */
+
+	public void removeAgent(Shape agent) {
+
+		if (!agent.isIn(store)) {
+			return;
+		}
+
+		int handle = agent.getHandle();
+		agent.unbind();
+
+		int moved = store.remove(handle);
+		Shape last = agents.remove(agents.size()-1);
+
+		if (moved >= 0) {
+			last.rebind(handle);
+			agents.set(handle, last);
+		}
+
+		stale = true;
+
+	}
+
+	public ArrayList<Shape> getList() {
+		return agents;
+	}
+
+	public AgentStore getStore() {
+		return store;
+	}
+
+	/**
+	 * relocateAll
+	 * Rebuilds every cell - counts the agents of each cell, turns the counts into the end of each cell, then places the
+	 * handles from the last one down so every cell ends up in handle order
+	 */
+
+	public void relocateAll() {
+
+		int n = store.size();
+		int cells = columns*rows;
+
+		Arrays.fill(cellStart, 0);
+
+		for (int i = 0; i < n; i++) {
+			int c = cellY(store.y[i])*columns + cellX(store.x[i]);
+			cellOf[i] = c;
+			cellStart[c]++;
+		}
+
+		for (int c = 1; c <= cells; c++) {
+			cellStart[c] += cellStart[c-1];
+		}
+
+		for (int i = n-1; i >= 0; i--) {
+			cellAgents[--cellStart[cellOf[i]]] = i;
+		}
+
+		stale = false;
+
+	}
+
+	public void queryRect(double x0, double y0, double x1, double y1, AgentVisitor visitor) {
+
+		if (stale) {
+			relocateAll();
+		}
+
+		for (int iy = cellY(y0); iy <= cellY(y1); iy++) {
+			for (int ix = cellX(x0); ix <= cellX(x1); ix++) {
+
+				int c = iy*columns + ix;
+
+				for (int k = cellStart[c]; k < cellStart[c+1]; k++) {
+
+					int handle = cellAgents[k];
+					double x = store.x[handle];
+					double y = store.y[handle];
+
+					if (x >= x0 && x <= x1 && y >= y0 && y <= y1) {
+						visitor.visit(handle);
+					}
+
+				}
+
+			}
+		}
+
+	}
+
+	public void queryCircle(double cx, double cy, double r, AgentVisitor visitor) {
+
+		if (r < 0) {
+			return;
+		}
+
+		if (stale) {
+			relocateAll();
+		}
+
+		for (int iy = cellY(cy-r); iy <= cellY(cy+r); iy++) {
+			for (int ix = cellX(cx-r); ix <= cellX(cx+r); ix++) {
+
+				int c = iy*columns + ix;
+
+				for (int k = cellStart[c]; k < cellStart[c+1]; k++) {
+
+					int handle = cellAgents[k];
+					double x = store.x[handle];
+					double y = store.y[handle];
+
+					if ((x-cx)*(x-cx) + (y-cy)*(y-cy) <= r*r) {
+						visitor.visit(handle);
+					}
+
+				}
+
+			}
+		}
+
+	}
+
+	/**
+	 * findPairs
+	 * Cell by cell in row order: each agent is tested against the later agents of its own cell, then against every agent of
+	 * the 4 neighbouring cells that come after it (right, and the 3 below), so each pair of cells is visited once
+	 *
+	 * @param visitor
+	 */
+
+	public void findPairs(PairVisitor visitor) {
+
+		if (stale) {
+			relocateAll();
+		}
+
+		for (int iy = 0; iy < rows; iy++) {
+			for (int ix = 0; ix < columns; ix++) {
+
+				int c = iy*columns + ix;
+
+				for (int k = cellStart[c]; k < cellStart[c+1]; k++) {
+
+					int ag1 = cellAgents[k];
+
+					for (int a = k+1; a < cellStart[c+1]; a++) {
+						if (store.intersects(ag1, cellAgents[a])) {
+							visitor.visit(ag1, cellAgents[a]);
+						}
+					}
+
+					if (ix+1 < columns) {
+						findPairs(ag1, c+1, visitor);
+					}
+
+					if (iy+1 < rows) {
+
+						if (ix > 0) {
+							findPairs(ag1, c+columns-1, visitor);
+						}
+
+						findPairs(ag1, c+columns, visitor);
+
+						if (ix+1 < columns) {
+							findPairs(ag1, c+columns+1, visitor);
+						}
+
+					}
+
+				}
+
+			}
+		}
+
+	}
+
+	private void findPairs(int ag1, int c, PairVisitor visitor) {
+		for (int a = cellStart[c]; a < cellStart[c+1]; a++) {
+			if (store.intersects(ag1, cellAgents[a])) {
+				visitor.visit(ag1, cellAgents[a]);
+			}
+		}
+	}
+
+	/**
+	 * fillGrid
+	 * Writes the bounds of every cell holding at least one agent
+	 *
+	 * @param rects
+	 * @return
+	 */
+
+	public int fillGrid(int [] rects) {
+
+		if (stale) {
+			relocateAll();
+		}
+
+		int n = 0;
+
+		for (int c = 0; c < columns*rows; c++) {
+
+			if (cellStart[c] == cellStart[c+1]) {
+				continue;
+			}
+
+			if (4*n+4 <= rects.length) {
+				rects[4*n] = (c % columns)*cellSize;
+				rects[4*n+1] = (c / columns)*cellSize;
+				rects[4*n+2] = cellSize;
+				rects[4*n+3] = cellSize;
+			}
+
+			n++;
+
+		}
+
+		return n;
+
+	}
+
+	/**
+	 * cellX / cellY
+	 * Column and row of a position, clamped to the grid
+	 */
+
+	private int cellX(double x) {
+		return Math.min(Math.max((int)Math.floor(x/cellSize), 0), columns-1);
+	}
+
+	private int cellY(double y) {
+		return Math.min(Math.max((int)Math.floor(y/cellSize), 0), rows-1);
+	}
+
+}
@@ -0,0 +1,51 @@
+package quadtree;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * VectorNarrowPhase
+ * Description: NarrowPhase kernel on jdk.incubator.vector - tests one agent against a full SIMD register of leaf neighbours
+ * at a time, and the remainder with the scalar loop. Only loaded by NarrowPhase.create, so the JVM needs
+ * --add-modules jdk.incubator.vector for it to be used.
+ */
+
+final class VectorNarrowPhase extends NarrowPhase {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	int scan(double x, double y, int r, int from, int len, int [] hits) {
+
+		double lowX = x - r;
+		double highX = x + r;
+		double lowY = y - r;
+		double highY = y + r;
+
+		int n = 0;
+		int a = from;
+
+		for (; a + SPECIES.length() <= len; a += SPECIES.length()) {
+
+			DoubleVector vx = DoubleVector.fromArray(SPECIES, cx, a);
+			DoubleVector vy = DoubleVector.fromArray(SPECIES, cy, a);
+
+			VectorMask<Double> hit = vx.sub(r).compare(VectorOperators.LE, highX) //Same four comparisons as scanRange
+				.and(vx.add(r).compare(VectorOperators.GE, lowX))
+				.and(vy.add(r).compare(VectorOperators.GE, lowY))
+				.and(vy.sub(r).compare(VectorOperators.LE, highY));
+
+			//Few registers hit - their lanes go through the scalar test, because turning the mask into bits (toLong) allocates
+			//the mask whenever the JIT has not made it an intrinsic
+			if (hit.anyTrue()) {
+				n = scanRange(x, y, r, a, a + SPECIES.length(), hits, n);
+			}
+
+		}
+
+		return scanRange(x, y, r, a, len, hits, n);
+
+	}
+
+}
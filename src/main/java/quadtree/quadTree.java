@@ -0,0 +1,2154 @@
+package quadtree;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.awt.Color;
+import java.awt.Graphics;
+
+/*
+ * quadTree
+ * v1.0
+ * Author: James Liang
+ * Date: 10/30/18
+ * Description: Organizes primary grids by splitting into a quadTree structure - collection of 2x2 grids
+ */
+
+public class quadTree<E> implements SpatialTree {
+	
+	static final int MAX_LEVEL = 9; //Deepest levelCounter any node can reach - the resolution of pathCode, and the bound of setMaxLevel
+	static final int SPLIT_THRESHOLD = 5; //Default shapes a node needs before it splits (see update)
+	static final int LIST_LENGTH = 16; //Starting length of agentList - room for a leaf about to split, so lists rarely grow
+	
+	private Node root;
+	private AgentStore store = new AgentStore(); //State of every shape, addressed by handle
+	private ArrayList<Shape> agents = new ArrayList<Shape>(); //Flat registry of every shape (index is the handle) - nodes only hold handles at the leaves
+	@SuppressWarnings("unchecked")
+	private Node [] leafOf = (Node []) new quadTree<?>.Node[16]; //Leaf holding each handle (any node in loose mode)
+	private int [] slotOf = new int[16]; //Index of each handle in the agentList of its node
+	int maxBoundX;
+	int maxBoundY;
+	
+	private boolean loose; //Loose mode - see the constructor below
+	private double looseness = 1;
+	
+	private ForkJoinPool pool; //Runs integrate and checkCollide in parallel when set - see setParallel
+	private int granularity;
+	private ParallelRange integrateTasks = new ParallelRange(this::integrateChunk); //Tasks of the parallel phases, reused from tick to tick
+	private ParallelRange collideTasks = new ParallelRange(this::collideUnit);
+	private int integrateWidth; //Bounds of the integrate running in parallel
+	private int integrateHeight;
+	@SuppressWarnings("unchecked")
+	private Node [] units = (Node []) new quadTree<?>.Node[16]; //Subtrees searched by the parallel checkCollide, in pre-order
+	private boolean [] unitDeep = new boolean[16]; //Whether a unit covers its whole subtree, or only the shapes kept in its node
+	private long [] unitTests = new long[16]; //Pairs tested in each unit
+	private PairList [] unitPairs = new PairList[0]; //Pairs found in each unit in loose mode, resolved in unit order
+	private int unitCount;
+	private int sweepThreshold = NarrowPhase.SWEEP_THRESHOLD; //Leaves with at least that many shapes are sorted and swept
+	private int splitThreshold = SPLIT_THRESHOLD; //Shapes a node needs before it splits, and below which it collapses
+	private int maxLevel = MAX_LEVEL; //Deepest levelCounter a node can split to
+	private AutoTuner tuner; //Adjusts both from the cost of each step when set
+	private ContactCache contacts; //Carries contacts across ticks when set - sequential tight tree only
+	private TreeMetrics metrics = new TreeMetrics(store.response());
+	
+	//Counts of the current tick, for metrics
+	private int relocations; //Shapes moved to another node - displaced, or moved by a split or collapse
+	private int splits;
+	private int collapses;
+	private long pairTests;
+	
+	@SuppressWarnings("unchecked")
+	private Node [] freeNodes = (Node []) new quadTree<?>.Node[16]; //Nodes freed by collapse, reused by subdivide so splitting allocates nothing
+	private int freeTop;
+	private int nodeCount; //Nodes created so far, in the tree or in freeNodes
+	
+	private int [] displaced = new int[16]; //Handles found by integrate, by chunk - chunk c writes from c*chunk on
+	private int [] displacedLen = new int[1]; //Number of handles found in each chunk
+	private int chunk; //Agents per chunk in the last integrate
+	private int chunks; //Number of chunks in the last integrate
+	
+	/**
+	 * quadTree Constructor
+	 * 
+	 * Initializes with the dimensions of the grid
+	 * 
+	 * @param maxBX
+	 * @param maxBY
+	 */
+	
+	quadTree(int maxBX, int maxBY){
+		this.maxBoundX = maxBX;
+		this.maxBoundY = maxBY;
+		root = new Node(0,0,this.maxBoundX, this.maxBoundY, 0, null);
+	}
+	
+	/**
+	 * quadTree Constructor
+	 * 
+	 * Initializes a loose quadTree with the dimensions of the grid. Every node gets loose bounds, looseness times the size of its
+	 * grid cell around the same center, and each shape lives in the deepest node whose loose bounds hold the whole shape -
+	 * so a shape can stay in an internal node. Shapes straddling a split line are then still compared in checkCollide,
+	 * with one insertion per shape.
+	 * 
+	 * @param maxBX
+	 * @param maxBY
+	 * @param looseness at least 1 (2 is the usual choice)
+	 */
+	
+	quadTree(int maxBX, int maxBY, double looseness){
+		this(maxBX, maxBY);
+		
+		if (!(looseness >= 1)) {
+			throw new IllegalArgumentException("looseness must be at least 1: " + looseness);
+		}
+		
+		this.loose = true;
+		this.looseness = looseness;
+	}
+	
+	/**
+	 * quadTree Constructor
+	 * 
+	 * Initializes with the dimensions of the grid, the number of shapes a node needs before it splits and the deepest
+	 * levelCounter a node can reach (at most MAX_LEVEL)
+	 * 
+	 * @param maxBX
+	 * @param maxBY
+	 * @param splitThreshold
+	 * @param maxLevel
+	 */
+	
+	quadTree(int maxBX, int maxBY, int splitThreshold, int maxLevel){
+		this(maxBX, maxBY);
+		setSplitThreshold(splitThreshold);
+		setMaxLevel(maxLevel);
+	}
+	
+	/**
+	 * setParallel
+	 * Runs checkCollide on a ForkJoinPool, splitting the work over the q1..q4 subtrees down to subtrees of granularity shapes,
+	 * and integrate over ranges of granularity handles. Results are the same as sequential, bit for bit. A null pool goes back to sequential.
+	 * 
+	 * @param pool
+	 * @param granularity
+	 */
+	
+	public void setParallel(ForkJoinPool pool, int granularity) {
+		this.pool = pool;
+		this.granularity = Math.max(granularity, 1);
+	}
+	
+	/**
+	 * setSweepThreshold
+	 * See SpatialTree - ignored in loose mode, whose pair search crosses nodes
+	 * 
+	 * @param occupancy
+	 */
+	
+	public void setSweepThreshold(int occupancy) {
+		this.sweepThreshold = Math.max(occupancy, 2);
+	}
+	
+	public void setSplitThreshold(int shapes) {
+		this.splitThreshold = Math.max(shapes, 2);
+	}
+	
+	public int getSplitThreshold() {
+		return splitThreshold;
+	}
+	
+	public void setMaxLevel(int level) {
+		this.maxLevel = Math.max(0, Math.min(level, MAX_LEVEL));
+	}
+	
+	public int getMaxLevel() {
+		return maxLevel;
+	}
+	
+	public void setAutoTuner(AutoTuner tuner) {
+		this.tuner = tuner;
+	}
+	
+	public void setContactCache(ContactCache cache) {
+		
+		if (cache != null) {
+			cache.clear();
+		}
+		
+		this.contacts = cache;
+		
+	}
+	
+	/**
+	 * addAgent
+	 * Calls agentC() method so that method may be used in main
+	 * A shape already in the tree is ignored
+	 * 
+	 * @param agent
+	 */
+	
+	public void addAgent(Shape agent) {
+		
+		if (agent.isIn(store)) {
+			return;
+		}
+		
+		int handle = agent.bind(store);
+		agents.add(agent);
+		
+		if (handle == leafOf.length) {
+			leafOf = Arrays.copyOf(leafOf, handle*2);
+			slotOf = Arrays.copyOf(slotOf, handle*2);
+		}
+		
+		root = add(this.root, handle);
+		
+	}
+	
+	/**
+	 * addAll
+	 * Adds a batch of shapes, then rebuilds the whole tree over every shape in one pass: shapes are sorted by pathCode and
+	 * nodes are built top-down from their ranges (see build). The tree comes out fully subdivided, instead of splitting one
+	 * level per update() as it does after addAgent.
+	 * 
+	 * @param batch
+	 */
+	
+	public void addAll(Collection<? extends Shape> batch) {
+		
+		for (Shape agent : batch) {
+			
+			if (agent.isIn(store)) {
+				continue;
+			}
+			
+			int handle = agent.bind(store);
+			agents.add(agent);
+			
+			if (handle == leafOf.length) {
+				leafOf = Arrays.copyOf(leafOf, handle*2);
+				slotOf = Arrays.copyOf(slotOf, handle*2);
+			}
+			
+		}
+		
+		int n = store.size();
+		long [] sorted = new long[n]; //Path code in the high bits, handle in the low ones
+		
+		for (int i = 0; i < n; i++) {
+			sorted[i] = (pathCode(i) << 32) | i;
+		}
+		
+		Arrays.sort(sorted);
+		
+		root = new Node(0, 0, maxBoundX, maxBoundY, 0, null);
+		build(root, sorted, 0, n);
+		
+	}
+	
+	/**
+	 * removeAgent
+	 * Removes a shape from its leaf, then moves the last shape of the store into its handle (see BroadPhase.removeAgent)
+	 * Not between integrate and relocateDisplaced - the displaced handles would be stale
+	 * 
+	 * @param agent
+	 */
+	
+	public void removeAgent(Shape agent) {
+		
+		if (!agent.isIn(store)) {
+			return;
+		}
+		
+		int handle = agent.getHandle();
+		root = remove(root, agent);
+		agent.unbind();
+		
+		int moved = store.remove(handle);
+		Shape last = agents.remove(agents.size()-1);
+		
+		if (moved >= 0) { //The last shape takes the place of the removed one, in its store, in agents and in its leaf
+			last.rebind(handle);
+			agents.set(handle, last);
+			leafOf[handle] = leafOf[moved];
+			slotOf[handle] = slotOf[moved];
+			leafOf[handle].agentList[slotOf[handle]] = handle;
+			leafOf[moved] = null;
+		}
+		
+		if (contacts != null) {
+			contacts.clear(); //Handles changed
+		}
+		
+	}
+	
+	/**
+	 * build
+	 * Creates a quadTree holding a batch of shapes, already subdivided
+	 * 
+	 * @param maxBX
+	 * @param maxBY
+	 * @param batch
+	 * @return
+	 */
+	
+	public static quadTree<Shape> build(int maxBX, int maxBY, Collection<? extends Shape> batch) {
+		quadTree<Shape> tree = new quadTree<Shape>(maxBX, maxBY);
+		tree.addAll(batch);
+		return tree;
+	}
+	
+	/**
+	 * build
+	 * Creates a loose quadTree holding a batch of shapes, already subdivided
+	 * 
+	 * @param maxBX
+	 * @param maxBY
+	 * @param looseness
+	 * @param batch
+	 * @return
+	 */
+	
+	public static quadTree<Shape> build(int maxBX, int maxBY, double looseness, Collection<? extends Shape> batch) {
+		quadTree<Shape> tree = new quadTree<Shape>(maxBX, maxBY, looseness);
+		tree.addAll(batch);
+		return tree;
+	}
+	
+	/**
+	 * pathCode
+	 * Morton-style code of the MAX_LEVEL cell holding a shape's center - 2 bits per level (0..3 for q1..q4), found by
+	 * descending the split lines Node.subdivide would draw, without creating any node. Sorting by it puts the shapes of every
+	 * node in one contiguous range.
+	 * 
+	 * @param handle
+	 * @return
+	 */
+	
+	private long pathCode(int handle) {
+		
+		double x = store.x[handle];
+		double y = store.y[handle];
+		int lowX = 0;
+		int lowY = 0;
+		int highX = maxBoundX;
+		int highY = maxBoundY;
+		long code = 0;
+		
+		for (int level = 0; level < MAX_LEVEL; level++) {
+			
+			int midX = Node.middle(lowX, highX);
+			int midY = Node.middle(lowY, highY);
+			int west = (x < midX) ? 1 : 0; //Same tests as Node.child, kept free of branches as they are close to random
+			int south = (y < midY) ? 0 : 1;
+			
+			code = (code << 2) | (2*south + (west ^ south)); //q1, q2, q3, q4 = 0, 1, 2, 3
+			
+			lowX += (1-west)*(midX-lowX);
+			highX -= west*(highX-midX);
+			lowY += south*(midY-lowY);
+			highY -= (1-south)*(highY-midY);
+			
+		}
+		
+		return code;
+		
+	}
+	
+	/**
+	 * build
+	 * Builds the subtree of a fresh node from the shapes in sorted[from..to), sorted by pathCode. A node splits under the same
+	 * rule as update (splitThreshold shapes, up to maxLevel), and each subnode is built from the run of the range with its
+	 * 2 bits of the code. In loose mode, shapes too big for their subnode are taken out of its run and kept in the node.
+	 * 
+	 * @param node
+	 * @param sorted
+	 * @param from
+	 * @param to
+	 */
+	
+	private void build(Node node, long [] sorted, int from, int to) {
+		
+		if (to - from < splitThreshold || node.levelCounter >= maxLevel) {
+			for (int i = from; i < to; i++) {
+				node.addList((int)sorted[i]);
+			}
+			return;
+		}
+		
+		node.subdivide();
+		
+		int shift = 32 + 2*(MAX_LEVEL-1-node.levelCounter);
+		int i = from;
+		
+		for (int q = 0; q < 4; q++) {
+			
+			Node next = (q == 0) ? node.q1 : (q == 1) ? node.q2 : (q == 2) ? node.q3 : node.q4;
+			int end = i;
+			int kept = i; //Shapes that fit the subnode are packed at the front of the run
+			
+			while (end < to && ((sorted[end] >>> shift) & 3) == q) {
+				
+				int handle = (int)sorted[end];
+				
+				if (!loose || next.fits(handle)) {
+					sorted[kept++] = sorted[end];
+				} else {
+					node.addList(handle);
+				}
+				
+				end++;
+				
+			}
+			
+			build(next, sorted, i, kept);
+			i = end;
+			
+		}
+		
+		node.count = to - from;
+		
+	}
+	
+	/**
+	 * getStore
+	 * Returns the store holding the state of every shape in the quadTree
+	 * 
+	 * @return
+	 */
+	
+	public AgentStore getStore() {
+		return store;
+	}
+	
+	/**
+	 * getNode / getSlot
+	 * Node holding a handle, and the index of the handle in the agentList of that node - the back-pointers relocate starts from
+	 * 
+	 * @param handle
+	 * @return
+	 */
+	
+	Node getNode(int handle) {
+		return leafOf[handle];
+	}
+	
+	int getSlot(int handle) {
+		return slotOf[handle];
+	}
+	
+	/**
+	 * nodeInts / writeNodes / readNodes
+	 * Node layout for TreeSnapshot - every node in preorder (q1..q4), as (agentLen << 1 | 1 if it has subnodes) followed by
+	 * its agentList, in order, so a restored tree resolves pairs in the same order as the saved one. readNodes rebuilds the
+	 * nodes of a new tree whose store already holds every agent.
+	 */
+	
+	long nodeInts() {
+		return nodeInts(root);
+	}
+	
+	private long nodeInts(Node root) {
+		
+		long ints = 1 + root.agentLen;
+		
+		if (root.q1 != null) {
+			ints += nodeInts(root.q1) + nodeInts(root.q2) + nodeInts(root.q3) + nodeInts(root.q4);
+		}
+		
+		return ints;
+		
+	}
+	
+	void writeNodes(IntBuffer out) {
+		writeNodes(root, out);
+	}
+	
+	private void writeNodes(Node root, IntBuffer out) {
+		
+		out.put((root.agentLen << 1) | (root.q1 != null ? 1 : 0));
+		out.put(root.agentList, 0, root.agentLen);
+		
+		if (root.q1 != null) {
+			writeNodes(root.q1, out);
+			writeNodes(root.q2, out);
+			writeNodes(root.q3, out);
+			writeNodes(root.q4, out);
+		}
+		
+	}
+	
+	void readNodes(IntBuffer in) {
+		
+		int n = store.size();
+		
+		if (leafOf.length < n) {
+			leafOf = Arrays.copyOf(leafOf, n);
+			slotOf = Arrays.copyOf(slotOf, n);
+		}
+		
+		for (int i = agents.size(); i < n; i++) {
+			agents.add(new Shape(store, i));
+		}
+		
+		if (readNodes(root, in) != n) {
+			throw new IllegalArgumentException("node layout does not hold every agent");
+		}
+		
+	}
+	
+	private int readNodes(Node root, IntBuffer in) {
+		
+		int header = in.get();
+		
+		for (int i = header >>> 1; i > 0; i--) {
+			
+			int handle = in.get();
+			
+			if (handle < 0 || handle >= store.size()) {
+				throw new IllegalArgumentException("bad handle " + handle);
+			}
+			
+			root.addList(handle);
+			
+		}
+		
+		if ((header & 1) != 0) {
+			
+			if (root.levelCounter >= MAX_LEVEL) {
+				throw new IllegalArgumentException("node below MAX_LEVEL");
+			}
+			
+			root.subdivide();
+			root.count += readNodes(root.q1, in) + readNodes(root.q2, in) + readNodes(root.q3, in) + readNodes(root.q4, in);
+			
+		}
+		
+		return root.count;
+		
+	}
+	
+	boolean isLoose() {
+		return loose;
+	}
+	
+	double getLooseness() {
+		return looseness;
+	}
+	
+	int getSweepThreshold() {
+		return sweepThreshold;
+	}
+	
+	/**
+	 * agentC
+	 * Returns the number of shapes/agents contained within the quadTree
+	 * 
+	 * @return agents.size
+	 */
+	
+	public int agentC() {
+		return agents.size();
+	}
+	
+	/**
+	 * drawGrid
+	 * Draws the quadTree (called in main) - can't reference root node in main
+	 * 
+	 * @param g
+	 */
+	
+	public void drawGrid(Graphics g) {
+		
+		draw(g, root);
+		
+	}
+	
+	public int fillGrid(int [] rects) {
+		return fillGrid(rects, root, 0);
+	}
+	
+	/**
+	 * fillGrid
+	 * Writes the bounds of root and its subtree into rects from node index n, recursively
+	 * 
+	 * @param rects
+	 * @param root
+	 * @param n
+	 * @return index of the next node
+	 */
+	
+	private int fillGrid(int [] rects, Node root, int n) {
+		
+		if (4*n+4 <= rects.length) {
+			rects[4*n] = root.lowerBoundX;
+			rects[4*n+1] = root.lowerBoundY;
+			rects[4*n+2] = root.higherBoundX-root.lowerBoundX;
+			rects[4*n+3] = root.higherBoundY-root.lowerBoundY;
+		}
+		
+		n++;
+		
+		if (root.q1 != null) {
+			n = fillGrid(rects, root.q1, n);
+			n = fillGrid(rects, root.q2, n);
+			n = fillGrid(rects, root.q3, n);
+			n = fillGrid(rects, root.q4, n);
+		}
+		
+		return n;
+		
+	}
+	
+	/**
+	 * draw
+	 * Draws the quadTree recursively, used in drawGrid.
+	 * 
+	 * @param g
+	 * @param root
+	 */
+	
+	public void draw(Graphics g, Node root) {
+		
+		g.drawLine(root.lowerBoundX, root.lowerBoundY, root.lowerBoundX, root.higherBoundY);
+		g.drawLine(root.lowerBoundX, root.lowerBoundY, root.higherBoundX, root.lowerBoundY);
+		g.drawLine(root.higherBoundX, root.lowerBoundY, root.higherBoundX, root.higherBoundY);
+		g.drawLine(root.lowerBoundX, root.higherBoundY, root.higherBoundX, root.higherBoundY);
+		
+		g.setColor(Color.BLACK);
+		
+		if (root.q1 != null) {
+			draw(g, root.q1);
+			draw(g, root.q2);
+			draw(g, root.q3);
+			draw(g, root.q4);
+			
+		}
+		
+	}
+	
+	/**
+	 * remove
+	 * Removes agent from subtree - swap-removes it from its leaf by slot, then walks up to root decrementing the subtree counts
+	 * Only touches the nodes, the registry behind getList is left as is
+	 * 
+	 * @param root
+	 * @param agent
+	 * @return
+	 */
+	
+	public Node remove(Node root, Shape agent) {
+		
+		int handle = agent.getHandle();
+		Node node = (handle < 0) ? null : leafOf[handle];
+		
+		if (node == null) {
+			return root;
+		}
+		
+		node.removeAt(slotOf[handle]);
+		
+		while (node != root && node.parent != null) {
+			node = node.parent;
+			node.count--;
+		}
+		
+		leafOf[handle] = null;
+		
+		return root;
+		
+	}
+	
+	/**
+	 * add
+	 * Adds agent to quadTree. Descends from root to the leaf containing the shape's center, counting it in every node on the way.
+	 * Shapes outside the bounds of root go to the closest leaf, so they are never lost from the tree.
+	 * 
+	 * @param root
+	 * @param handle
+	 * @return
+	 */
+	
+	public Node add(Node root, int handle) {
+		
+		Node node = root;
+		
+		while (node.q1 != null) {
+			
+			Node next = node.child(handle);
+			
+			if (loose && !next.fits(handle)) { //Loose mode - stops at the deepest node that holds the whole shape
+				break;
+			}
+			
+			node.count++;
+			node = next;
+			
+		}
+		
+		node.addList(handle);
+		
+		return root;
+		
+	}
+	
+	/**
+	 * relocate
+	 * Moves a displaced agent to its new leaf. Climbs from its current leaf to the nearest node that still contains it (the common ancestor
+	 * of the old and new leaf), uncounting it from each node on the way, then descends from there. Cost is proportional to depth, not tree size.
+	 * In loose mode, an agent kept in an internal node also moves down once it fits the child containing its center.
+	 * 
+	 * @param handle
+	 */
+	
+	public void relocate(int handle) {
+		
+		Node node = leafOf[handle];
+		
+		if (node == null || node.settled(handle)) {
+			return;
+		}
+		
+		node.removeAt(slotOf[handle]);
+		
+		while (node.parent != null && !node.holds(handle)) {
+			node = node.parent;
+			node.count--;
+		}
+		
+		add(node, handle); //Counts the agent back into the common ancestor, which it never left
+		
+	}
+	
+	/**
+	 * updateTree
+	 * 
+	 * Uses a combination of methods to update the overall gridTree
+	 * Functions include: updating shape collisions, updating shape placement in quadTree nodes, creating new grids
+	 */
+	
+	public void updateTree() {
+		long start = System.nanoTime();
+		
+		collectDisplaced(); //Finds displaced nodes - same as findChanged, into a reused buffer instead of new lists
+		
+		tick(start); //Updates shape placement in Nodes, creates new quadTree branches, removes old ones, updates collisions
+		
+		//display();
+	}
+	
+	/**
+	 * relocateAll
+	 * First phases of updateTree - moves the displaced shapes to their new node, then splits and collapses nodes
+	 */
+	
+	public void relocateAll() {
+		collectDisplaced(); //Shapes that left their node since the last update
+		
+		relocateDisplaced();
+		
+		update();
+	}
+	
+	/**
+	 * step
+	 * One full simulation step - moves every shape, relocates the displaced ones, then update and checkCollide
+	 * 
+	 * @param maxWidth
+	 * @param maxHeight
+	 */
+	
+	public void step(int maxWidth, int maxHeight) {
+		long start = System.nanoTime();
+		
+		integrate(maxWidth, maxHeight); //Moves the shapes and finds displaced ones on the way - no findChanged traversal
+		
+		tick(start);
+	}
+	
+	/**
+	 * tick
+	 * Rest of updateTree and step once the displaced shapes are known - relocateDisplaced, update and checkCollide - timed
+	 * phase by phase for the tuner and the metrics
+	 * 
+	 * @param start System.nanoTime when the tick started
+	 */
+	
+	private void tick(long start) {
+		
+		long found = System.nanoTime();
+		int displacedCount = 0;
+		
+		for (int c = 0; c < chunks; c++) {
+			displacedCount += displacedLen[c];
+		}
+		
+		relocations = 0;
+		splits = 0;
+		collapses = 0;
+		
+		relocateDisplaced(); //Updates shape placement in Nodes
+		long relocated = System.nanoTime();
+		
+		update(); //Creates new quadTree branches, removes old ones
+		long updated = System.nanoTime();
+		
+		checkCollide(); //Updates speed properties of shapes - updates collisions
+		long collided = System.nanoTime();
+		
+		if (tuner != null) {
+			tuner.tick(this, relocated - start, updated - relocated, collided - updated);
+		}
+		
+		if (metrics.isEnabled()) {
+			metrics.startCensus();
+			census(root);
+			metrics.record(found - start, relocated - found, updated - relocated, collided - updated, displacedCount, relocations, splits, collapses, pairTests);
+		}
+		
+	}
+	
+	/**
+	 * census
+	 * Reports every node under root to the metrics
+	 * 
+	 * @param root
+	 */
+	
+	private void census(Node root) {
+		
+		metrics.node(root.levelCounter, root.q1 == null, root.agentLen);
+		
+		if (root.q1 != null) {
+			census(root.q1);
+			census(root.q2);
+			census(root.q3);
+			census(root.q4);
+		}
+		
+	}
+	
+	public TreeMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * integrate
+	 * Moves every shape (AgentStore.move) and checks it against the node holding it, in chunks of handles.
+	 * Chunks share nothing but read-only nodes, so they run in parallel when a pool is set; each one records its displaced
+	 * handles in its own part of displaced, which keeps them in handle order whatever the number of threads.
+	 * 
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @return number of displaced shapes
+	 */
+	
+	public int integrate(int maxWidth, int maxHeight) {
+		
+		int n = store.size();
+		chunk = (pool == null) ? Math.max(n, 1) : granularity;
+		chunks = (n + chunk - 1)/chunk;
+		
+		if (displaced.length < n) {
+			displaced = new int[leafOf.length];
+		}
+		
+		if (displacedLen.length < chunks) {
+			displacedLen = new int[Math.max(chunks, displacedLen.length*2)];
+		}
+		
+		if (pool == null || chunks <= 1) {
+			integrate(0, chunks, maxWidth, maxHeight);
+		} else {
+			integrateWidth = maxWidth;
+			integrateHeight = maxHeight;
+			integrateTasks.run(pool, chunks);
+		}
+		
+		int total = 0;
+		
+		for (int c = 0; c < chunks; c++) {
+			total += displacedLen[c];
+		}
+		
+		return total;
+		
+	}
+	
+	/**
+	 * integrate
+	 * Moves the shapes of chunks from (inclusive) to to (exclusive) and records the displaced ones
+	 * 
+	 * @param from
+	 * @param to
+	 * @param maxWidth
+	 * @param maxHeight
+	 */
+	
+	private void integrate(int from, int to, int maxWidth, int maxHeight) {
+		
+		int n = store.size();
+		
+		for (int c = from; c < to; c++) {
+			
+			int start = c*chunk;
+			int end = Math.min(start + chunk, n);
+			int len = 0;
+			
+			for (int i = start; i < end; i++) {
+				
+				store.move(i, maxWidth, maxHeight);
+				
+				if (!leafOf[i].settled(i)) {
+					displaced[start + len++] = i;
+				}
+				
+			}
+			
+			displacedLen[c] = len;
+			
+		}
+		
+	}
+	
+	/**
+	 * collectDisplaced
+	 * Walks the tree like findChanged, recording the displaced shapes for relocateDisplaced in tree order
+	 */
+	
+	private void collectDisplaced() {
+		
+		int n = store.size();
+		
+		if (displaced.length < n) {
+			displaced = new int[leafOf.length];
+		}
+		
+		chunk = Math.max(n, 1);
+		chunks = 1;
+		displacedLen[0] = collectDisplaced(root, 0);
+		
+	}
+	
+	private int collectDisplaced(Node root, int len) {
+		
+		for (int i = 0; i < root.agentLen; i++) { //Internal nodes only hold shapes in loose mode
+			if (!root.settled(root.agentList[i])) {
+				displaced[len++] = root.agentList[i];
+			}
+		}
+		
+		if (root.q1 != null) {
+			len = collectDisplaced(root.q1, len);
+			len = collectDisplaced(root.q2, len);
+			len = collectDisplaced(root.q3, len);
+			len = collectDisplaced(root.q4, len);
+		}
+		
+		return len;
+		
+	}
+	
+	/**
+	 * relocateDisplaced
+	 * Relocates the shapes recorded by the last integrate, in handle order
+	 */
+	
+	public void relocateDisplaced() {
+		
+		for (int c = 0; c < chunks; c++) {
+			for (int i = 0; i < displacedLen[c]; i++) {
+				relocate(displaced[c*chunk + i]);
+			}
+			
+			relocations += displacedLen[c];
+		}
+		
+		chunks = 0;
+		
+	}
+	
+	/**
+	 * findChanged
+	 * First phase of updateTree - finds displaced shapes over the whole tree
+	 * 
+	 * @return
+	 */
+	
+	public ArrayList<Shape> findChanged() {
+		return findChanged(root);
+	}
+	
+	/**
+	 * manageNode
+	 * Second phase of updateTree - relocates the displaced shapes found by findChanged
+	 * 
+	 * @param removeList
+	 */
+	
+	public void manageNode(ArrayList<Shape> removeList) {
+		root = manageNode(root, removeList);
+	}
+	
+	/**
+	 * update
+	 * Third phase of updateTree - splits and collapses nodes over the whole tree
+	 */
+	
+	public void update() {
+		root = update(root);
+	}
+	
+	/**
+	 * checkCollide
+	 * Last phase of updateTree - resolves collisions in every leaf
+	 */
+	
+	public void checkCollide() {
+		
+		if (pool == null && !loose && contacts != null) {
+			pairTests = findPairsCached(response());
+		} else if (pool == null) {
+			pairTests = loose ? findPairsLoose(root, response(), true) : findPairs(root, response());
+		} else {
+			unitCount = 0;
+			gatherUnits(root);
+			collideTasks.run(pool, unitCount);
+			pairTests = 0;
+			for (int i = 0; i < unitCount; i++) {
+				pairTests += unitTests[i];
+				if (loose) {
+					applyPairs(unitPairs[i]); //Pairs can cross subtrees - found in parallel, resolved in sequential order
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * gatherUnits
+	 * Splits the pair search of the parallel checkCollide into units, in pre-order - subtrees of granularity shapes or less,
+	 * and in loose mode the shapes kept in each node above them, which come before its subnodes
+	 * 
+	 * @param node
+	 */
+	
+	private void gatherUnits(Node node) {
+		
+		if (node.q1 == null || node.count <= granularity) {
+			addUnit(node, true);
+			return;
+		}
+		
+		if (loose) {
+			addUnit(node, false);
+		}
+		
+		gatherUnits(node.q1);
+		gatherUnits(node.q2);
+		gatherUnits(node.q3);
+		gatherUnits(node.q4);
+		
+	}
+	
+	private void addUnit(Node node, boolean deep) {
+		
+		if (unitCount == units.length) {
+			units = Arrays.copyOf(units, 2*unitCount);
+			unitDeep = Arrays.copyOf(unitDeep, 2*unitCount);
+			unitTests = Arrays.copyOf(unitTests, 2*unitCount);
+		}
+		
+		if (loose && unitCount == unitPairs.length) {
+			PairList [] grown = Arrays.copyOf(unitPairs, units.length);
+			for (int i = unitPairs.length; i < grown.length; i++) {
+				grown[i] = new PairList();
+			}
+			unitPairs = grown;
+		}
+		
+		units[unitCount] = node;
+		unitDeep[unitCount] = deep;
+		unitCount++;
+		
+	}
+	
+	/**
+	 * collideUnit
+	 * Pair search of one unit of the parallel checkCollide - leaves share no shapes in the tight tree, so each unit resolves
+	 * its own pairs; in loose mode they are kept for checkCollide to resolve in order
+	 * 
+	 * @param i
+	 */
+	
+	private void collideUnit(int i) {
+		
+		if (loose) {
+			unitPairs[i].clear();
+			unitTests[i] = findPairsLoose(units[i], unitPairs[i], unitDeep[i]);
+		} else {
+			unitTests[i] = findPairs(units[i], response());
+		}
+		
+	}
+	
+	/**
+	 * integrateChunk
+	 * Runs integrate over one chunk, for the parallel integrate
+	 * 
+	 * @param c
+	 */
+	
+	private void integrateChunk(int c) {
+		integrate(c, c + 1, integrateWidth, integrateHeight);
+	}
+	
+	/**
+	 * response
+	 * The collision response - counting contacts while the metrics are on
+	 * 
+	 * @return
+	 */
+	
+	private PairVisitor response() {
+		return metrics.isEnabled() ? metrics.response() : store.response();
+	}
+	
+	/**
+	 * getList
+	 * Returns an arrayList of all the shapes/agents in a quadtree.
+	 * 
+	 * @return
+	 */
+	
+	public ArrayList<Shape> getList(){
+		return agents;
+	}
+	
+	/**
+	 * getRoot
+	 * Returns the root node
+	 * 
+	 * @return
+	 */
+	
+	Node getRoot() {
+		return root;
+	}
+	
+	/**
+	 * newNode
+	 * Returns a node with the given dimensions, taken from freeNodes
+	 * 
+	 * @return
+	 */
+	
+	private Node newNode(int lowerBoundX, int lowerBoundY, int higherBoundX, int higherBoundY, int levelCounter, Node parent) {
+		
+		if (freeTop == 0) { //Creates a batch, so a tree growing past its largest size does not allocate again on every split
+			for (int i = Math.max(16, nodeCount/4); i > 0; i--) {
+				freeNode(new Node(0, 0, 0, 0, 0, null));
+			}
+		}
+		
+		Node node = freeNodes[--freeTop];
+		freeNodes[freeTop] = null;
+		node.reset(lowerBoundX, lowerBoundY, higherBoundX, higherBoundY, levelCounter, parent);
+		
+		return node;
+		
+	}
+	
+	private void freeNode(Node node) {
+		
+		if (freeTop == freeNodes.length) {
+			freeNodes = Arrays.copyOf(freeNodes, freeTop*2);
+		}
+		
+		node.parent = null;
+		freeNodes[freeTop++] = node;
+		
+	}
+	
+	/**
+	 * queryRect / queryCircle
+	 * Range queries from root - see SpatialTree. Recursion only, so a query allocates nothing.
+	 */
+	
+	public void queryRect(double x0, double y0, double x1, double y1, AgentVisitor visitor) {
+		queryRect(root, x0, y0, x1, y1, visitor, null, 0);
+	}
+	
+	public int queryRect(double x0, double y0, double x1, double y1, int [] out) {
+		return queryRect(root, x0, y0, x1, y1, null, out, 0);
+	}
+	
+	public void queryCircle(double cx, double cy, double r, AgentVisitor visitor) {
+		queryCircle(root, cx, cy, r, visitor, null, 0);
+	}
+	
+	public int queryCircle(double cx, double cy, double r, int [] out) {
+		return queryCircle(root, cx, cy, r, null, out, 0);
+	}
+	
+	/**
+	 * queryRect
+	 * Visits the shapes of root and its subtree whose center is inside the rectangle, skipping subtrees outside of it
+	 * Goes to the visitor if there is one, else into out from index n
+	 * 
+	 * @param root
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param visitor
+	 * @param out
+	 * @param n
+	 * @return n plus the number of shapes found
+	 */
+	
+	private int queryRect(Node root, double x0, double y0, double x1, double y1, AgentVisitor visitor, int [] out, int n) {
+		
+		if (!root.meets(x0, y0, x1, y1)) {
+			return n;
+		}
+		
+		for (int i = 0; i < root.agentLen; i++) { //Internal nodes only hold shapes in loose mode
+			
+			int handle = root.agentList[i];
+			double x = store.x[handle];
+			double y = store.y[handle];
+			
+			if (x >= x0 && x <= x1 && y >= y0 && y <= y1) {
+				n = found(handle, visitor, out, n);
+			}
+			
+		}
+		
+		if (root.q1 != null) {
+			n = queryRect(root.q1, x0, y0, x1, y1, visitor, out, n);
+			n = queryRect(root.q2, x0, y0, x1, y1, visitor, out, n);
+			n = queryRect(root.q3, x0, y0, x1, y1, visitor, out, n);
+			n = queryRect(root.q4, x0, y0, x1, y1, visitor, out, n);
+		}
+		
+		return n;
+		
+	}
+	
+	/**
+	 * queryCircle
+	 * Visits the shapes of root and its subtree whose center is within r of (cx, cy), skipping subtrees farther than r
+	 * 
+	 * @param root
+	 * @param cx
+	 * @param cy
+	 * @param r
+	 * @param visitor
+	 * @param out
+	 * @param n
+	 * @return n plus the number of shapes found
+	 */
+	
+	private int queryCircle(Node root, double cx, double cy, double r, AgentVisitor visitor, int [] out, int n) {
+		
+		if (root.distSq(cx, cy) > r*r) {
+			return n;
+		}
+		
+		for (int i = 0; i < root.agentLen; i++) {
+			
+			int handle = root.agentList[i];
+			double dx = store.x[handle] - cx;
+			double dy = store.y[handle] - cy;
+			
+			if (dx*dx + dy*dy <= r*r) {
+				n = found(handle, visitor, out, n);
+			}
+			
+		}
+		
+		if (root.q1 != null) {
+			n = queryCircle(root.q1, cx, cy, r, visitor, out, n);
+			n = queryCircle(root.q2, cx, cy, r, visitor, out, n);
+			n = queryCircle(root.q3, cx, cy, r, visitor, out, n);
+			n = queryCircle(root.q4, cx, cy, r, visitor, out, n);
+		}
+		
+		return n;
+		
+	}
+	
+	/**
+	 * nearest
+	 * k nearest agents to (x, y) - pops the closest node off the queue in result, offers its shapes, and queues its subnodes
+	 * unless they are farther than the k-th best so far. Loose nodes hold shapes whose center is in their grid cell, so the
+	 * distance to the cell bounds is a lower bound in both modes.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param k
+	 * @param result
+	 * @return
+	 */
+	
+	@SuppressWarnings("unchecked")
+	public NearestResult nearest(double x, double y, int k, NearestResult result) {
+		
+		result.reset(Math.max(k, 0));
+		
+		if (k > 0) {
+			result.pushNode(root, 0, 0);
+		}
+		
+		while (result.nodeLen > 0) {
+			
+			Node node = (Node) result.nodes[0];
+			double d = result.nodeDists[0];
+			result.popNode();
+			
+			if (d > result.bound()) { //Every node left is at least as far
+				break;
+			}
+			
+			for (int i = 0; i < node.agentLen; i++) {
+				
+				int handle = node.agentList[i];
+				double dx = store.x[handle] - x;
+				double dy = store.y[handle] - y;
+				
+				result.offer(handle, dx*dx + dy*dy);
+				
+			}
+			
+			if (node.q1 != null) {
+				pushNearest(result, node.q1, x, y);
+				pushNearest(result, node.q2, x, y);
+				pushNearest(result, node.q3, x, y);
+				pushNearest(result, node.q4, x, y);
+			}
+			
+		}
+		
+		result.finish();
+		
+		return result;
+		
+	}
+	
+	private void pushNearest(NearestResult result, Node node, double x, double y) {
+		
+		double d = node.distSq(x, y);
+		
+		if (node.count > 0 && d <= result.bound()) { //Empty subtrees hold nothing to find
+			result.pushNode(node, 0, d);
+		}
+		
+	}
+	
+	private static int found(int handle, AgentVisitor visitor, int [] out, int n) {
+		
+		if (visitor != null) {
+			visitor.visit(handle);
+		} else if (n < out.length) {
+			out[n] = handle;
+		}
+		
+		return n+1;
+		
+	}
+	
+	/**
+	 * update
+	 * If the number of shapes in a certain node reaches splitThreshold (5 by default), then split the node into 4 more subnodes
+	 * Viceversa, if a non-leaf node contains fewer shapes, or sits at maxLevel or deeper (after setMaxLevel), then delete all of its subnodes
+	 * Uses the subtree count of each node, so internal nodes never need to hold the shapes themselves
+	 * 
+	 * @param root
+	 * @return
+	 */
+	
+	public Node update(Node root) {
+		
+		if (root.listLen() >= splitThreshold && root.levelCounter < maxLevel) { //Nodes at maxLevel no longer split - aims to prevent the creation of infinite nodes
+			if (root.q1 == null) {
+				
+				relocations += root.agentLen;
+				splits++;
+				
+				root.subdivide(); //Creates new nodes by dividing up the dimensions of the current node
+				root.split(); //Distributes the shapes inside the current root into the subnodes
+				
+				return root;
+				
+			} else {
+				root.q1 = update(root.q1);
+				root.q2 = update(root.q2);
+				root.q3 = update(root.q3);
+				root.q4 = update(root.q4);
+			}
+		} else {
+			//If agentList falls below threshold, and is not a leafNode, then nullify subNodes
+			if (root.q1 != null) {
+				relocations += root.count - root.agentLen; //Shapes kept in the node itself (loose mode) stay where they are
+				collapses++;
+				
+				root.collapse(); //Node is a leaf again - gathers the shapes of its subnodes
+				return root;
+			}
+		}
+		
+		return root;
+	
+	}
+	
+	/**
+	 * findChanged
+	 * Determines which shapes have been displaced from their native node - if a shape moves outside a node, it will be part of the returned arrayList
+	 * 
+	 * @param root
+	 * @return
+	 */
+	
+	public ArrayList<Shape> findChanged(Node root){
+	
+		if (root.q1 == null) {
+			
+			ArrayList<Shape> removeList = new ArrayList<Shape>();
+
+			for (int i = 0; i < root.agentLen; i++) {
+				if (root.holds(root.agentList[i]) == false) { //If no intersection occurs at a leaf node, then my shape must be displaced
+					removeList.add(agents.get(root.agentList[i]));
+				}
+			}
+			
+			return removeList;
+			
+		}
+		
+		ArrayList<Shape> changedAgent = new ArrayList<Shape>();
+		
+		for (int i = 0; i < root.agentLen; i++) { //Internal nodes only hold shapes in loose mode
+			if (root.settled(root.agentList[i]) == false) {
+				changedAgent.add(agents.get(root.agentList[i]));
+			}
+		}
+		
+		//Changed agent stacks the arrayLists of all the root's subnodes
+		
+		changedAgent.addAll(findChanged(root.q1));
+		changedAgent.addAll(findChanged(root.q2));
+		changedAgent.addAll(findChanged(root.q3));
+		changedAgent.addAll(findChanged(root.q4));
+		
+		return changedAgent;
+		
+	}
+	
+	/**
+	 * manageNode
+	 * 
+	 * Using the list of displacedNodes (found in the previous method), relocate each of them from its old leaf to its new one.
+	 * 
+	 * @param root
+	 * @param removeList
+	 * @return
+	 */
+	
+	public Node manageNode(Node root, ArrayList<Shape> removeList) {
+		
+		for (int i = 0; i < removeList.size(); i++) {
+			relocate(removeList.get(i).getHandle());
+		}
+		
+		return root;
+		
+	}
+
+	/**
+	 * checkCollide
+	 * Using the intersection function contained within shape, determine which shapes intersect
+	 * If shapes intersect, redistribute their velocities (AgentStore.collide) - the pair test of each leaf is done by NarrowPhase
+	 * Note: Shape comparison only occurs within individual nodes, so 2 intersection shapes that belong to adjacent nodes will not be considered to intersect
+	 * (unless the quadTree is loose - see checkCollideLoose)
+	 * 
+	 * @param root
+	 * @return
+	 */
+	
+	public Node checkCollide(Node root) {
+		
+		if (loose) {
+			return checkCollideLoose(root);
+		}
+		
+		findPairs(root, store.response()); //Checks only leaf nodes - redistributes the velocities of every intersecting pair
+		
+		return root;
+		
+	}
+	
+	/**
+	 * findPairs
+	 * Calls the visitor with every intersecting pair, in the order checkCollide resolves them - checkCollide is
+	 * findPairs(getStore().response()), run sequentially
+	 * 
+	 * @param visitor
+	 */
+	
+	public void findPairs(PairVisitor visitor) {
+		
+		if (loose) {
+			findPairsLoose(root, visitor, true);
+		} else {
+			findPairs(root, visitor);
+		}
+		
+	}
+	
+	/**
+	 * findPairs
+	 * Pair search over the leaves under root
+	 * 
+	 * @param root
+	 * @param visitor
+	 * @return number of pairs tested
+	 */
+	
+	private long findPairs(Node root, PairVisitor visitor) {
+		
+		if (root.q1 != null) { //Recursive traversal
+			return findPairs(root.q1, visitor) + findPairs(root.q2, visitor) + findPairs(root.q3, visitor) + findPairs(root.q4, visitor);
+		}
+		
+		return NarrowPhase.findPairs(store, root.agentList, root.agentLen, slotOf, sweepThreshold, visitor);
+		
+	}
+	
+	/**
+	 * findPairsCached
+	 * Same pairs as findPairs, through the ContactCache - the contacts between shapes that stayed in place in the same leaf
+	 * are replayed first, and only the other shapes are tested against their leaf: one by one when they are few, leaf by leaf
+	 * otherwise
+	 * 
+	 * @param visitor
+	 * @return number of pairs tested
+	 */
+	
+	private long findPairsCached(PairVisitor visitor) {
+		
+		contacts.beginTick(store, visitor);
+		
+		for (int handle = 0; handle < store.size(); handle++) {
+			contacts.mark(handle, leafOf[handle].id);
+		}
+		
+		contacts.replay();
+		long tests = 0;
+		
+		if (contacts.sparse()) {
+			for (int k = 0; k < contacts.dirtyCount(); k++) {
+				int handle = contacts.dirty(k);
+				Node leaf = leafOf[handle];
+				tests += contacts.findPairs(handle, leaf.agentList, leaf.agentLen, slotOf);
+			}
+		} else {
+			tests = findDirtyPairs(root);
+		}
+		
+		contacts.endTick();
+		
+		return tests;
+		
+	}
+	
+	/**
+	 * findDirtyPairs
+	 * Tests the dirty shapes of every leaf under root through the ContactCache
+	 * 
+	 * @param root
+	 * @return number of pairs tested
+	 */
+	
+	private long findDirtyPairs(Node root) {
+		
+		if (root.q1 != null) {
+			return findDirtyPairs(root.q1) + findDirtyPairs(root.q2) + findDirtyPairs(root.q3) + findDirtyPairs(root.q4);
+		}
+		
+		return contacts.findPairs(root.agentList, root.agentLen, slotOf, sweepThreshold);
+		
+	}
+	
+	/**
+	 * checkCollideLoose
+	 * checkCollide for loose mode. Shapes of a node are compared with each other, then each one is compared with the shapes of
+	 * every other node whose loose bounds overlap it - found by descending from root, so the candidates come from its own branch
+	 * and the neighbouring nodes its shape reaches into. Pairs across two nodes are only resolved from the lower handle.
+	 * 
+	 * @param root
+	 * @return
+	 */
+	
+	private Node checkCollideLoose(Node root) {
+		
+		findPairsLoose(root, store.response(), true);
+		
+		return root;
+		
+	}
+	
+	/**
+	 * findPairsLoose
+	 * Pair search of checkCollideLoose over the subtree of root - each pair found is passed to out
+	 * 
+	 * @param root
+	 * @param out
+	 * @param deep false to stop at root, without its subnodes
+	 * @return number of pairs tested
+	 */
+	
+	private long findPairsLoose(Node root, PairVisitor out, boolean deep) {
+		
+		long tests = (long)root.agentLen*(root.agentLen-1)/2;
+		
+		for (int i = 0; i < root.agentLen; i++) {
+			
+			int ag1 = root.agentList[i];
+			
+			for (int a = i+1; a < root.agentLen; a++) {
+				if (store.intersects(ag1, root.agentList[a])) {
+					out.visit(ag1, root.agentList[a]);
+				}
+			}
+			
+			tests += collideAcross(this.root, root, ag1, out);
+			
+		}
+		
+		if (deep && root.q1 != null) {
+			tests += findPairsLoose(root.q1, out, true);
+			tests += findPairsLoose(root.q2, out, true);
+			tests += findPairsLoose(root.q3, out, true);
+			tests += findPairsLoose(root.q4, out, true);
+		}
+		
+		return tests;
+		
+	}
+	
+	/**
+	 * collideAcross
+	 * Compares a shape with the shapes of every node under node (other than its own) whose loose bounds overlap the shape
+	 * 
+	 * @param node
+	 * @param home node holding ag1
+	 * @param ag1
+	 * @param out see findPairsLoose
+	 * @return number of pairs tested
+	 */
+	
+	private long collideAcross(Node node, Node home, int ag1, PairVisitor out) {
+		
+		if (!node.overlaps(ag1)) {
+			return 0;
+		}
+		
+		long tests = 0;
+		
+		if (node != home) {
+			for (int a = 0; a < node.agentLen; a++) {
+				
+				int ag2 = node.agentList[a];
+				
+				if (ag2 > ag1) {
+					
+					tests++;
+					
+					if (store.intersects(ag1, ag2)) {
+						out.visit(ag1, ag2);
+					}
+					
+				}
+				
+			}
+		}
+		
+		if (node.q1 != null) {
+			tests += collideAcross(node.q1, home, ag1, out);
+			tests += collideAcross(node.q2, home, ag1, out);
+			tests += collideAcross(node.q3, home, ag1, out);
+			tests += collideAcross(node.q4, home, ag1, out);
+		}
+		
+		return tests;
+		
+	}
+	
+	/**
+	 * applyPairs
+	 * Resolves a list of pairs in order
+	 * 
+	 * @param pairs
+	 */
+	
+	private void applyPairs(PairList pairs) {
+		
+		PairVisitor response = response();
+		
+		for (int i = 0; i < pairs.size; i++) {
+			response.visit(pairs.pairs[2*i], pairs.pairs[2*i+1]);
+		}
+		
+	}
+	
+	public double [] subOp(double [] vector1, double [] vector2) {
+		
+		int dim = vector1.length;
+		
+		double [] newVector = new double[dim];
+		
+		for (int i = 0; i < dim; i++) {
+			newVector[i] = vector1[i]-vector2[i];
+		}
+		
+		return newVector;
+		
+	}
+	
+	public double [] multOp(double [] vector, double value) {
+		int dim = vector.length;
+		
+		for (int i = 0; i < dim; i++) {
+			vector[i] = vector[i]*value;
+		}
+		
+		return vector;
+	}
+	
+	public double eucDist(double [] pos1, double [] pos2) {
+		
+		double xDis = pos2[0] - pos1[0];
+		double yDis = pos2[1] - pos1[1];
+		
+		double dist = Math.sqrt(yDis*yDis + xDis*xDis);
+		
+		return dist;
+		
+	}
+	
+	public double dotOp(double [] vec1, double [] vec2) {
+		
+		double dotValue = 0;
+	
+		for (int i = 0; i < vec1.length; i++) {
+			dotValue += vec1[i]+vec2[i];
+		}
+		
+		return dotValue;
+		
+	}
+	
+	public double [] getVelocity1(double [] vel1, double [] vel2, double [] pos1, double [] pos2){
+		
+		double mid = dotOp(subOp(vel1, vel2), subOp(pos1, pos2));
+		double dist = eucDist(pos1, pos2);
+		
+		double scalar = mid/dist;
+		
+		double [] velVec = subOp(vel1, multOp(subOp(pos1, pos2),scalar));
+		
+		return velVec;
+	}
+	
+	public double [] getVelocity2(double [] vel1, double [] vel2, double [] pos1, double [] pos2){
+		
+		double [] velVec;
+		
+		double mid = dotOp(subOp(vel2, vel1), subOp(pos2, pos1));
+		double dist = eucDist(pos2, pos1);
+		
+		double scalar = mid/dist;
+		
+		velVec = subOp(vel2, multOp(subOp(pos2, pos1),scalar));
+		
+		return velVec;
+	}
+	
+	
+	class Node{ //Contained nodeClass (nodes of the subtree)
+		
+		public int lowerBoundX;
+		public int lowerBoundY;
+		public int higherBoundX;
+		public int higherBoundY;
+		
+		public int levelCounter = 0; // "Levels" of nodes - prevents infinite recursion of created nodes
+		public Node q1; //Every individual node contains 4 subnodes - not initialized until necessary
+		public Node q2;
+		public Node q3;
+		public Node q4;
+		public Node parent; //null for root
+		
+		int count; //Number of shapes in the subtree of this node
+		int [] agentList = new int[LIST_LENGTH]; //Handles of all shapes within node - empty unless the node is a leaf
+		int agentLen; //Number of handles used in agentList
+		final int id = nodeCount; //Index of the node among those created - names its leaf in the ContactCache
+		
+		/**
+		 * Constructor for Node
+		 * Defines the nth iteration of this node (levelCounter), alongside the dimensions
+		 * 
+		 * @param lowerBoundX
+		 * @param lowerBoundY
+		 * @param higherBoundX
+		 * @param higherBoundY
+		 * @param levelCounter
+		 * @param parent
+		 */
+		
+		Node(int lowerBoundX, int lowerBoundY, int higherBoundX, int higherBoundY, int levelCounter, Node parent){
+			nodeCount++;
+			reset(lowerBoundX, lowerBoundY, higherBoundX, higherBoundY, levelCounter, parent);
+		}
+		
+		/**
+		 * reset
+		 * Turns the node into an empty leaf with new dimensions - lets a node taken from freeNodes be reused, agentList included
+		 * 
+		 * @param lowerBoundX
+		 * @param lowerBoundY
+		 * @param higherBoundX
+		 * @param higherBoundY
+		 * @param levelCounter
+		 * @param parent
+		 */
+		
+		void reset(int lowerBoundX, int lowerBoundY, int higherBoundX, int higherBoundY, int levelCounter, Node parent) {
+			this.levelCounter = levelCounter;
+			this.parent = parent;
+			this.lowerBoundX = lowerBoundX;
+			this.lowerBoundY = lowerBoundY;
+			this.higherBoundX = higherBoundX;
+			this.higherBoundY = higherBoundY;
+			q1 = null;
+			q2 = null;
+			q3 = null;
+			q4 = null;
+			count = 0;
+			agentLen = 0;
+		}
+		
+		/**
+		 * subdivide
+		 * Creates the 4 subnodes, splitting the node at its middle
+		 */
+		
+		public void subdivide() {
+			
+			int midY = middle(lowerBoundY, higherBoundY);
+			int midX = middle(lowerBoundX, higherBoundX);
+			
+			q1 = newNode(midX, lowerBoundY, higherBoundX, midY, levelCounter + 1, this);
+			q2 = newNode(lowerBoundX, lowerBoundY, midX, midY, levelCounter + 1, this);
+			q3 = newNode(lowerBoundX, midY, midX, higherBoundY, levelCounter + 1, this);
+			q4 = newNode(midX, midY, higherBoundX, higherBoundY, levelCounter + 1, this);
+			
+		}
+		
+		/**
+		 * middle
+		 * Split line between two bounds - integer halving, as the Math.round of the original split never had a fraction to round
+		 * 
+		 * @param low
+		 * @param high
+		 * @return
+		 */
+		
+		static int middle(int low, int high) {
+			return (high-low)/2+low;
+		}
+		
+		/**
+		 * split
+		 * Distributes shapes in current nodes to subnodes
+		 * Loops through agentList, moves each agent/shape to the one subnode containing its center
+		 * In loose mode, shapes too big for the loose bounds of that subnode stay in this node
+		 */
+		
+		public void split() {
+			
+			int kept = 0;
+			
+			for (int i = 0; i < agentLen; i++) {
+				
+				int handle = agentList[i];
+				Node next = child(handle);
+				
+				if (!loose || next.fits(handle)) {
+					next.addList(handle);
+				} else {
+					slotOf[handle] = kept;
+					agentList[kept++] = handle;
+				}
+				
+			}
+			
+			agentLen = kept;
+			
+		}
+		
+		/**
+		 * collapse
+		 * Deletes all subnodes, gathering the shapes of their leaves back into this node
+		 */
+		
+		public void collapse() {
+			
+			count = agentLen; //Shapes kept in this node in loose mode
+			q1.gather(this);
+			q2.gather(this);
+			q3.gather(this);
+			q4.gather(this);
+			
+			q1 = null;
+			q2 = null;
+			q3 = null;
+			q4 = null;
+			
+		}
+		
+		/**
+		 * gather
+		 * Adds the shapes of this node and every node under it to another node, returning the emptied nodes to freeNodes
+		 * 
+		 * @param target
+		 */
+		
+		private void gather(Node target) {
+			
+			for (int i = 0; i < agentLen; i++) {
+				target.addList(agentList[i]);
+			}
+			
+			if (q1 != null) {
+				q1.gather(target);
+				q2.gather(target);
+				q3.gather(target);
+				q4.gather(target);
+			}
+			
+			freeNode(this);
+			
+		}
+		
+		/**
+		 * child
+		 * Returns the subnode containing the center of an agent. Shapes outside the node go to the closest subnode.
+		 * 
+		 * @param handle
+		 * @return
+		 */
+		
+		public Node child(int handle) {
+			
+			if (store.y[handle] < q1.higherBoundY) {
+				return (store.x[handle] < q1.lowerBoundX) ? q2 : q1;
+			}
+			
+			return (store.x[handle] < q4.lowerBoundX) ? q3 : q4;
+			
+		}
+		
+		/**
+		 * contains
+		 * Same test as Shape.intersects(Rectangle), on the node's bounds - true if the center of the shape is inside the node
+		 * 
+		 * @param handle
+		 * @return
+		 */
+		
+		public boolean contains(int handle) {
+			
+			double x = store.x[handle];
+			double y = store.y[handle];
+			
+			return y < higherBoundY && y >= lowerBoundY && x < higherBoundX && x >= lowerBoundX;
+			
+		}
+
+		/**
+		 * holds
+		 * True if the shape belongs in this node: its center is inside the node and, in loose mode, the whole shape is inside
+		 * the node's loose bounds (root takes any shape)
+		 * 
+		 * @param handle
+		 * @return
+		 */
+		
+		public boolean holds(int handle) {
+			return contains(handle) && (!loose || parent == null || fits(handle));
+		}
+		
+		/**
+		 * settled
+		 * True if the shape stays in this node: the node holds it and, when the node is internal (loose mode), the shape does not
+		 * fit the child containing its center - add would have taken it down there
+		 * 
+		 * @param handle
+		 * @return
+		 */
+		
+		public boolean settled(int handle) {
+			return holds(handle) && (q1 == null || !child(handle).fits(handle));
+		}
+		
+		/**
+		 * fits
+		 * True if the whole shape is inside the loose bounds of the node
+		 * 
+		 * @param handle
+		 * @return
+		 */
+		
+		public boolean fits(int handle) {
+			
+			double marginX = (looseness-1)/2*(higherBoundX-lowerBoundX);
+			double marginY = (looseness-1)/2*(higherBoundY-lowerBoundY);
+			double r = store.radius[handle];
+			
+			return store.x[handle]-r >= lowerBoundX-marginX && store.x[handle]+r <= higherBoundX+marginX
+					&& store.y[handle]-r >= lowerBoundY-marginY && store.y[handle]+r <= higherBoundY+marginY;
+			
+		}
+		
+		/**
+		 * overlaps
+		 * True if the box around the shape (same reach as Shape.intersects) overlaps the loose bounds of the node
+		 * 
+		 * @param handle
+		 * @return
+		 */
+		
+		public boolean overlaps(int handle) {
+			
+			if (parent == null) {
+				return true; //Root takes the shapes outside the grid too
+			}
+			
+			double marginX = (looseness-1)/2*(higherBoundX-lowerBoundX);
+			double marginY = (looseness-1)/2*(higherBoundY-lowerBoundY);
+			double reach = 2*store.radius[handle] + 1; //Shape.intersects compares rounded centers 2 radii apart
+			
+			return store.x[handle]+reach >= lowerBoundX-marginX && store.x[handle]-reach <= higherBoundX+marginX
+					&& store.y[handle]+reach >= lowerBoundY-marginY && store.y[handle]-reach <= higherBoundY+marginY;
+			
+		}
+		
+		/**
+		 * meets
+		 * True if the rectangle overlaps the bounds of the node. Sides on the edge of the grid reach out to infinity,
+		 * since shapes outside the grid are kept in the closest node.
+		 * 
+		 * @param x0
+		 * @param y0
+		 * @param x1
+		 * @param y1
+		 * @return
+		 */
+		
+		public boolean meets(double x0, double y0, double x1, double y1) {
+			return x1 >= lowX() && x0 <= highX() && y1 >= lowY() && y0 <= highY();
+		}
+		
+		/**
+		 * distSq
+		 * Squared distance from a point to the bounds of the node (0 inside), with the same open sides as meets
+		 * 
+		 * @param px
+		 * @param py
+		 * @return
+		 */
+		
+		public double distSq(double px, double py) {
+			
+			double dx = Math.max(Math.max(lowX() - px, px - highX()), 0);
+			double dy = Math.max(Math.max(lowY() - py, py - highY()), 0);
+			
+			return dx*dx + dy*dy;
+			
+		}
+		
+		private double lowX() {
+			return (lowerBoundX == 0) ? Double.NEGATIVE_INFINITY : lowerBoundX;
+		}
+		
+		private double highX() {
+			return (higherBoundX == maxBoundX) ? Double.POSITIVE_INFINITY : higherBoundX;
+		}
+		
+		private double lowY() {
+			return (lowerBoundY == 0) ? Double.NEGATIVE_INFINITY : lowerBoundY;
+		}
+		
+		private double highY() {
+			return (higherBoundY == maxBoundY) ? Double.POSITIVE_INFINITY : higherBoundY;
+		}
+		
+		/**
+		 * addList
+		 * Adds an agent to agentList (leaves only, unless the tree is loose), remembering its slot so it can be removed without a search
+		 * 
+		 * @param handle
+		 */
+		
+		public void addList(int handle) {
+			
+			if (agentLen == agentList.length) {
+				agentList = Arrays.copyOf(agentList, agentLen*2);
+			}
+			
+			slotOf[handle] = agentLen;
+			leafOf[handle] = this;
+			agentList[agentLen++] = handle;
+			count++;
+			
+		}
+		
+		/**
+		 * removeAt
+		 * Removes the agent at a slot by moving the last agent of the list into it
+		 * 
+		 * @param slot
+		 */
+		
+		public void removeAt(int slot) {
+			
+			int last = agentList[--agentLen];
+			
+			if (slot < agentLen) {
+				agentList[slot] = last;
+				slotOf[last] = slot;
+			}
+			
+			count--;
+			
+		}
+		
+		/**
+		 * listLen
+		 * Returns the number of shapes in the subtree of this node
+		 * 
+		 * @return
+		 */
+		
+		public int listLen() {
+			return count;
+		}
+		//Node constructor
+		
+	}
+	
+}
\ No newline at end of file
@@ -1,3 +1,5 @@
+package quadtree;
+
 import java.util.ArrayList;
 
 public class test {
@@ -0,0 +1,169 @@
+package quadtree;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.Random;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import java.util.ArrayList;
+
+public class testProgram extends JFrame{
+
+	private static JFrame window;
+	private Random numGenerator;
+	//private Shape player;
+	private BroadPhase tree;
+	private SimulationEngine engine;
+	private FrameRenderer renderer;
+	
+	int radius;
+	int maxHeight;
+	int maxWidth;
+	
+	public static void main(String[] args) {
+		
+		window = new testProgram(args.length > 0 ? args[0] : "pointer"); //"linear" runs the demo on LinearQuadTree, "loose" on a loose quadTree, "grid" on UniformGrid
+
+	}
+
+	private testProgram(String kind) {
+		
+		//MAIN Constructor
+		
+		Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+		numGenerator = new Random();
+		maxHeight = (int)Math.round(screenSize.getHeight())-35; //-35 forces all balls to remain within the figure
+		maxWidth = (int)Math.round(screenSize.getWidth());
+		radius = 5;
+		if (kind.equals("grid")) {
+			tree = new UniformGrid(maxWidth, maxHeight, radius);
+		} else if (kind.equals("linear")) {
+			tree = new LinearQuadTree(maxWidth, maxHeight);
+		} else if (kind.equals("loose")) {
+			tree = new quadTree<Shape>(maxWidth, maxHeight, 2);
+		} else {
+			tree = new quadTree<Shape>(maxWidth, maxHeight);
+		}
+		TreeConfig.load().apply(tree); //-Dquadtree.config=<file>, -Dquadtree.split, depth, sweep, autotune
+		
+        this.setDefaultCloseOperation (JFrame.EXIT_ON_CLOSE);
+        this.setSize(Toolkit.getDefaultToolkit().getScreenSize());
+        this.setResizable (false);
+		
+        ArrayList<Shape> batch = new ArrayList<Shape>();
+        
+        for (int i = 0; i < 5000; i++) {
+        	batch.add(new Shape(radius, numGenerator.nextInt(maxWidth-radius*2), numGenerator.nextInt(maxHeight-radius*2), numGenerator.nextInt(9)-4,(numGenerator.nextInt(9) - 4)));
+        }
+        
+        tree.addAll(batch); //Builds the subdivided tree in one pass
+        
+        engine = new SimulationEngine(tree, maxWidth, maxHeight, 60);
+        engine.setViews(true); //The renderer culls through the view's index
+        engine.start();
+        
+        renderer = new FrameRenderer(maxWidth, maxHeight, radius);
+        
+        JPanel gamePanel = new GameAreaPanel ();
+        this.add (gamePanel);
+        
+        ViewportListener viewport = new ViewportListener ();
+        gamePanel.addMouseListener (viewport);
+        gamePanel.addMouseMotionListener (viewport);
+        gamePanel.addMouseWheelListener (viewport);
+        
+        new Timer(16, e -> gamePanel.repaint()).start(); //Repaints at ~60fps, whatever rate the engine ticks at
+
+        MyKeyListener keyListener = new MyKeyListener ();
+        this.addKeyListener (keyListener);
+
+        this.requestFocusInWindow();
+
+        this.setVisible (true);
+        
+	}
+	
+	private class GameAreaPanel extends JPanel {
+		
+		public void paintComponent(Graphics g) {
+			super.paintComponent(g);
+            setDoubleBuffered(true);
+            
+            //Only draws the latest view and snapshot - the simulation itself runs on the engine thread
+            SimulationEngine.Snapshot frame = engine.acquireSnapshot();
+            
+            renderer.resize(getWidth(), getHeight());
+            
+            try (TreeView view = engine.acquireView()) {
+            	if (view != null) {
+            		g.drawImage(renderer.render(view, frame.grid, frame.gridCount), 0, 0, null); //One image - agents and nodes outside the viewport are skipped
+            	} else {
+            		g.drawImage(renderer.render(frame), 0, 0, null); //Views off - drawn from the snapshot
+            	}
+            }
+            
+            //tree.display();
+            
+            //System.out.println("_----------------------_");
+            
+		}
+		
+	}
+	
+	/**
+	 * ViewportListener
+	 * Drag to pan, wheel to zoom at the cursor
+	 */
+	
+	private class ViewportListener extends MouseAdapter {
+		
+		private int lastX;
+		private int lastY;
+		
+		public void mousePressed (MouseEvent e) {
+			lastX = e.getX();
+			lastY = e.getY();
+		}
+		
+		public void mouseDragged (MouseEvent e) {
+			renderer.pan(e.getX() - lastX, e.getY() - lastY);
+			lastX = e.getX();
+			lastY = e.getY();
+		}
+		
+		public void mouseWheelMoved (MouseWheelEvent e) {
+			renderer.zoomAt(Math.pow(1.1, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+		}
+		
+	}
+	
+	 private class MyKeyListener implements KeyListener {
+		 
+		public void keyTyped (KeyEvent e) {
+
+	    }
+
+        public void keyPressed (KeyEvent e) {
+        	if (e.getKeyCode() == KeyEvent.VK_0) { //Back to the whole area at 1:1
+        		renderer.setViewport(0, 0, 1);
+        	}
+        	
+        	if (KeyEvent.getKeyText(e.getKeyCode()).equals("M")) {
+        		engine.addAgent(new Shape(radius, numGenerator.nextInt(maxWidth-radius), numGenerator.nextInt(maxHeight-radius), numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4));
+        		
+        	}
+        }
+
+        public void keyReleased (KeyEvent e) {
+        }
+		 
+	 }
+	
+}
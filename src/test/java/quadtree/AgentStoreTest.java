@@ -0,0 +1,96 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * AgentStoreTest
+ * Description: AgentStore.collide must give the same velocities, bit for bit, as the getVelocity1/getVelocity2 vector
+ * helpers of quadTree applied to the rounded velocities.
+ */
+
+public class AgentStoreTest {
+
+	@Test
+	public void collideMatchesTheOriginalHelpers() {
+
+		Random numGenerator = new Random(3);
+		AgentStore store = new AgentStore();
+		quadTree<Shape> helpers = new quadTree<Shape>(500, 500);
+
+		for (int k = 0; k < 1000; k++) {
+
+			double angle = numGenerator.nextDouble()*2*Math.PI;
+			double x = numGenerator.nextInt(500);
+			double y = numGenerator.nextInt(500);
+			int a = store.add(5, x, y, numGenerator.nextDouble()*20-10, numGenerator.nextDouble()*20-10);
+			int b = store.add(5, x + 9*Math.cos(angle), y + 9*Math.sin(angle), numGenerator.nextDouble()*20-10, numGenerator.nextDouble()*20-10);
+
+			double [] vel1 = {Math.round(store.dx[a]), Math.round(store.dy[a])};
+			double [] vel2 = {Math.round(store.dx[b]), Math.round(store.dy[b])};
+			double [] pos1 = {store.x[a], store.y[a]};
+			double [] pos2 = {store.x[b], store.y[b]};
+			double [] new2 = helpers.getVelocity2(vel1, vel2, pos1, pos2);
+			double [] new1 = helpers.getVelocity1(vel1, vel2, pos1, pos2);
+
+			store.collide(a, b);
+
+			assertEquals(new1[0], store.dx[a]);
+			assertEquals(new1[1], store.dy[a]);
+			assertEquals(new2[0], store.dx[b]);
+			assertEquals(new2[1], store.dy[b]);
+
+		}
+
+	}
+
+	@Test
+	public void coincidentCentersGiveNaN() {
+
+		AgentStore store = new AgentStore();
+		int a = store.add(5, 100, 100, 3, 0);
+		int b = store.add(5, 100, 100, -5, 0);
+
+		store.collide(a, b);
+
+		assertEquals(Double.NaN, store.dx[a]);
+		assertEquals(Double.NaN, store.dx[b]);
+
+	}
+
+	/**
+	 * bounce
+	 * Gives a store an elastic collision response of equal masses, so that agents keep their speeds over long runs - the
+	 * default response, AgentStore.collide, speeds them up until they leave the area or reach NaN. Pairs already moving
+	 * apart are left alone
+	 *
+	 * @param store
+	 */
+
+	static void bounce(AgentStore store) {
+
+		store.setResponse((ag1, ag2) -> {
+
+			double px = store.x[ag1] - store.x[ag2];
+			double py = store.y[ag1] - store.y[ag2];
+			double distSq = px*px + py*py;
+			double closing = (store.dx[ag1] - store.dx[ag2])*px + (store.dy[ag1] - store.dy[ag2])*py; //Negative while they close in
+
+			if (distSq == 0 || closing >= 0) {
+				return;
+			}
+
+			double scalar = closing/distSq;
+			store.dx[ag1] -= scalar*px;
+			store.dy[ag1] -= scalar*py;
+			store.dx[ag2] += scalar*px;
+			store.dy[ag2] += scalar*py;
+
+		});
+
+	}
+
+}
@@ -0,0 +1,260 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * AllocationTest
+ * Description: A steady-state tick (step or updateTree, sequential or on a ForkJoinPool, with or without metrics or a contact cache, or the relocateAll + findPairs of any BroadPhase, or a SimulationEngine tick publishing views) must not allocate - counted with the allocation
+ * counter of the current thread, and of the pool's workers when there is one, after enough ticks for every buffer and node pool to reach its size.
+ * The ticks run on the elastic response of AgentStoreTest.bounce, as the default response never reaches a steady state; the
+ * plain step is also checked on the default one, once the scene has diverged.
+ */
+
+public class AllocationTest {
+
+	static final int AGENTS = 5000;
+	static final int RADIUS = 5;
+	static final int WARMUP = 500;
+	static final int TICKS = 200;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void stepDoesNotAllocate(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9)); //Same density as testProgram
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = newTree(kind, maxWidth, maxHeight);
+		long allocated = allocatedBySteps(tree, maxWidth, maxHeight);
+
+		assertEquals(0, allocated, kind + " allocated " + allocated + " bytes in " + TICKS + " ticks");
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear"})
+	public void stepOnDefaultResponseDoesNotAllocate(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = newTree(kind, maxWidth, maxHeight);
+		AgentStore store = tree.getStore();
+		store.setResponse(store::collide); //What users get - the scene diverges, agents pile up in dense leaves
+		long allocated = allocatedBySteps(tree, maxWidth, maxHeight);
+
+		assertEquals(0, allocated, kind + " allocated " + allocated + " bytes in " + TICKS + " ticks on the default response");
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void stepWithMetricsDoesNotAllocate(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = newTree(kind, maxWidth, maxHeight);
+		tree.getMetrics().setEnabled(true);
+		long allocated = allocatedBySteps(tree, maxWidth, maxHeight);
+
+		assertEquals(0, allocated, kind + " allocated " + allocated + " bytes in " + TICKS + " ticks with metrics on");
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear"})
+	public void stepWithContactCacheDoesNotAllocate(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = newTree(kind, maxWidth, maxHeight);
+		tree.setContactCache(new ContactCache());
+		long allocated = allocatedBySteps(tree, maxWidth, maxHeight);
+
+		assertEquals(0, allocated, kind + " allocated " + allocated + " bytes in " + TICKS + " ticks with a contact cache");
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void parallelStepDoesNotAllocate(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9)); //Same density as testProgram
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = newTree(kind, maxWidth, maxHeight);
+		ArrayList<Thread> workers = new ArrayList<Thread>();
+		ForkJoinPool pool = new ForkJoinPool(4, p -> {
+			ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			synchronized (workers) {
+				workers.add(worker);
+			}
+			return worker;
+		}, null, false);
+
+		try {
+
+			tree.setParallel(pool, 16);
+
+			for (int i = 0; i < WARMUP; i++) {
+				tree.step(maxWidth, maxHeight);
+				tree.getStore().move(maxWidth, maxHeight);
+				tree.updateTree();
+			}
+
+			long allocated = Long.MAX_VALUE;
+
+			//Best of three windows - a worker deoptimized by the JIT can reallocate objects it had kept in registers once,
+			//while a tick that allocates does so in every window
+			for (int window = 0; window < 3; window++) {
+
+				long before;
+
+				synchronized (workers) {
+					before = allocatedBy(workers) + THREADS.getCurrentThreadAllocatedBytes();
+				}
+
+				for (int i = 0; i < TICKS; i++) {
+					tree.step(maxWidth, maxHeight);
+					tree.getStore().move(maxWidth, maxHeight);
+					tree.updateTree();
+				}
+
+				synchronized (workers) {
+					allocated = Math.min(allocated, THREADS.getCurrentThreadAllocatedBytes() + allocatedBy(workers) - before); //Workers started since are counted whole
+				}
+
+			}
+
+			assertEquals(0, allocated, kind + " allocated " + allocated + " bytes in " + TICKS + " parallel ticks");
+
+		} finally {
+			pool.shutdown();
+		}
+
+	}
+
+	private static long allocatedBy(ArrayList<Thread> threads) {
+
+		long total = 0;
+
+		for (int i = 0; i < threads.size(); i++) {
+			total += Math.max(THREADS.getThreadAllocatedBytes(threads.get(i).getId()), 0);
+		}
+
+		return total;
+
+	}
+
+	private static long allocatedBySteps(SpatialTree tree, int maxWidth, int maxHeight) {
+
+		for (int i = 0; i < WARMUP; i++) {
+			tree.step(maxWidth, maxHeight);
+			tree.getStore().move(maxWidth, maxHeight);
+			tree.updateTree();
+		}
+
+		long before = THREADS.getCurrentThreadAllocatedBytes();
+
+		for (int i = 0; i < TICKS; i++) {
+			tree.step(maxWidth, maxHeight);
+			tree.getStore().move(maxWidth, maxHeight);
+			tree.updateTree();
+		}
+
+		return THREADS.getCurrentThreadAllocatedBytes() - before;
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"grid", "pointer"})
+	public void broadPhaseStepDoesNotAllocate(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		BroadPhase broadPhase = BroadPhaseTest.newBroadPhase(kind, maxWidth, maxHeight);
+		AgentStore store = broadPhase.getStore();
+
+		for (int i = 0; i < WARMUP; i++) {
+			store.move(maxWidth, maxHeight); //The default BroadPhase.step, also on the tree
+			broadPhase.relocateAll();
+			broadPhase.findPairs(store.response());
+		}
+
+		long before = THREADS.getCurrentThreadAllocatedBytes();
+
+		for (int i = 0; i < TICKS; i++) {
+			store.move(maxWidth, maxHeight);
+			broadPhase.relocateAll();
+			broadPhase.findPairs(store.response());
+		}
+
+		long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+
+		assertEquals(0, allocated, kind + " allocated " + allocated + " bytes in " + TICKS + " ticks");
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"linear"})
+	public void engineTickWithViewsDoesNotAllocate(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SimulationEngine engine = new SimulationEngine(newTree(kind, maxWidth, maxHeight), maxWidth, maxHeight, 0);
+		engine.setViews(true);
+
+		for (int i = 0; i < WARMUP; i++) {
+			engine.tick();
+			engine.acquireView().close();
+		}
+
+		long before = THREADS.getCurrentThreadAllocatedBytes();
+
+		for (int i = 0; i < TICKS; i++) {
+			engine.tick();
+			engine.acquireView().close();
+		}
+
+		long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+
+		assertEquals(0, allocated, kind + " allocated " + allocated + " bytes in " + TICKS + " engine ticks with views");
+
+	}
+
+	private static SpatialTree newTree(String kind, int maxWidth, int maxHeight) {
+
+		SpatialTree tree;
+
+		if (kind.equals("linear")) {
+			tree = new LinearQuadTree(maxWidth, maxHeight);
+		} else if (kind.equals("loose")) {
+			tree = new quadTree<Shape>(maxWidth, maxHeight, 2);
+		} else {
+			tree = new quadTree<Shape>(maxWidth, maxHeight);
+		}
+
+		AgentStoreTest.bounce(tree.getStore());
+
+		Random numGenerator = new Random(1);
+		ArrayList<Shape> batch = new ArrayList<Shape>();
+
+		for (int i = 0; i < AGENTS; i++) {
+			batch.add(new Shape(RADIUS, numGenerator.nextInt(maxWidth-RADIUS*2)+RADIUS, numGenerator.nextInt(maxHeight-RADIUS*2)+RADIUS, numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4));
+		}
+
+		tree.addAll(batch);
+
+		return tree;
+
+	}
+
+}
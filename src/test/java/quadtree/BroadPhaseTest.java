@@ -0,0 +1,257 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * BroadPhaseTest
+ * Description: Every BroadPhase must report each pair once, and only pairs that AgentStore.intersects. The grid and the loose
+ * tree must also report every pair of agents that intersect each other - checked against a brute force search over all
+ * pairs, after a few ticks of motion. (The other trees only compare agents of the same leaf, by design.) Range queries on
+ * the grid must find the same agents as a scan of the store (QueryTest covers the trees), and every broad phase must keep
+ * finding all of them after shapes were removed. A shape added twice is added once, and cannot be added to a second
+ * broad phase while in the first.
+ */
+
+public class BroadPhaseTest {
+
+	static final int AGENTS = 3000;
+	static final int RADIUS = 5;
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear", "grid"})
+	public void findPairsMatchesBruteForce(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		BroadPhase broadPhase = newBroadPhase(kind, maxWidth, maxHeight);
+		AgentStore store = broadPhase.getStore();
+
+		for (int tick = 0; tick < 20; tick++) {
+			broadPhase.step(maxWidth, maxHeight);
+		}
+
+		store.move(maxWidth, maxHeight);
+		broadPhase.relocateAll();
+
+		Set<Long> found = new HashSet<Long>();
+
+		broadPhase.findPairs((ag1, ag2) -> {
+			assertTrue(store.intersects(ag1, ag2), kind + " reported " + ag1 + ", " + ag2);
+			assertTrue(found.add(key(ag1, ag2)), kind + " reported " + ag1 + ", " + ag2 + " twice");
+		});
+
+		if (kind.equals("pointer") || kind.equals("linear")) {
+			return;
+		}
+
+		int both = 0;
+
+		for (int i = 0; i < store.size(); i++) {
+			for (int a = i+1; a < store.size(); a++) {
+				if (store.intersects(i, a) && store.intersects(a, i)) {
+					assertTrue(found.contains(key(i, a)), kind + " missed " + i + ", " + a);
+					both++;
+				}
+			}
+		}
+
+		assertTrue(both > 0);
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"grid"})
+	public void queriesMatchScan(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		BroadPhase broadPhase = newBroadPhase(kind, maxWidth, maxHeight);
+		AgentStore store = broadPhase.getStore();
+
+		for (int tick = 0; tick < 20; tick++) {
+			broadPhase.step(maxWidth, maxHeight);
+		}
+
+		Random numGenerator = new Random(3);
+
+		for (int q = 0; q < 50; q++) {
+
+			double x0 = numGenerator.nextDouble()*maxWidth - 50;
+			double y0 = numGenerator.nextDouble()*maxHeight - 50;
+			double x1 = x0 + numGenerator.nextDouble()*200;
+			double y1 = y0 + numGenerator.nextDouble()*200;
+			double r = numGenerator.nextDouble()*100;
+
+			Set<Integer> rect = new HashSet<Integer>();
+			Set<Integer> circle = new HashSet<Integer>();
+			broadPhase.queryRect(x0, y0, x1, y1, rect::add);
+			broadPhase.queryCircle(x0, y0, r, circle::add);
+
+			int inRect = 0;
+			int inCircle = 0;
+
+			for (int i = 0; i < store.size(); i++) {
+
+				if (store.x[i] >= x0 && store.x[i] <= x1 && store.y[i] >= y0 && store.y[i] <= y1) {
+					assertTrue(rect.contains(i));
+					inRect++;
+				}
+
+				if ((store.x[i]-x0)*(store.x[i]-x0) + (store.y[i]-y0)*(store.y[i]-y0) <= r*r) {
+					assertTrue(circle.contains(i));
+					inCircle++;
+				}
+
+			}
+
+			assertEquals(inRect, rect.size());
+			assertEquals(inCircle, circle.size());
+
+		}
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear", "grid"})
+	public void removeAgentKeepsIndexConsistent(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		BroadPhase broadPhase = newBroadPhase(kind, maxWidth, maxHeight);
+		AgentStore store = broadPhase.getStore();
+		Random numGenerator = new Random(4);
+		ArrayList<Shape> added = new ArrayList<Shape>();
+
+		for (int i = 0; i < 300; i++) {
+			Shape agent = new Shape(RADIUS, numGenerator.nextInt(maxWidth-RADIUS*2)+RADIUS, numGenerator.nextInt(maxHeight-RADIUS*2)+RADIUS, 2, -2);
+			broadPhase.addAgent(agent);
+			added.add(agent);
+		}
+
+		for (int tick = 0; tick < 10; tick++) {
+			broadPhase.step(maxWidth, maxHeight);
+		}
+
+		double [] x = new double[added.size()];
+
+		for (int i = 0; i < added.size(); i++) {
+			x[i] = added.get(i).getXD();
+		}
+
+		for (int i = 0; i < added.size(); i += 2) {
+			broadPhase.removeAgent(added.get(i));
+		}
+
+		broadPhase.removeAgent(added.get(0)); //Already removed - ignored
+
+		assertEquals(AGENTS + 150, store.size());
+
+		for (int i = 0; i < added.size(); i++) {
+			Shape agent = added.get(i);
+			assertEquals(i % 2 == 0 ? -1 : 0, Math.min(agent.getHandle(), 0));
+			assertEquals(x[i], i % 2 == 0 ? agent.getXD() : store.x[agent.getHandle()]); //Removed ones keep their state
+		}
+
+		for (int tick = 0; tick < 10; tick++) {
+			broadPhase.step(maxWidth, maxHeight);
+		}
+
+		Set<Integer> all = new HashSet<Integer>();
+		broadPhase.queryRect(-1e9, -1e9, 1e9, 1e9, all::add);
+		assertEquals(store.size(), all.size());
+		broadPhase.findPairs((ag1, ag2) -> assertTrue(store.intersects(ag1, ag2)));
+
+		broadPhase.addAgent(added.get(0)); //Can be added again
+		assertEquals(AGENTS + 151, store.size());
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear", "grid"})
+	public void addingTwiceKeepsOneAgent(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		BroadPhase broadPhase = newBroadPhase(kind, maxWidth, maxHeight);
+		AgentStore store = broadPhase.getStore();
+		Shape agent = new Shape(RADIUS, 100, 100, 1, 1);
+		ArrayList<Shape> batch = new ArrayList<Shape>();
+
+		broadPhase.addAgent(agent);
+		broadPhase.addAgent(agent); //Ignored
+		batch.add(agent);
+		broadPhase.addAll(batch);
+		assertEquals(AGENTS + 1, store.size());
+
+		broadPhase.removeAgent(agent);
+		assertEquals(AGENTS, store.size());
+		assertEquals(-1, agent.getHandle());
+
+		Set<Integer> all = new HashSet<Integer>();
+		broadPhase.queryRect(-1e9, -1e9, 1e9, 1e9, all::add);
+		assertEquals(AGENTS, all.size());
+
+		BroadPhase other = emptyBroadPhase(kind, maxWidth, maxHeight);
+		Shape bound = new Shape(RADIUS, 100, 100, 1, 1);
+		broadPhase.addAgent(bound);
+		assertThrows(IllegalStateException.class, () -> other.addAgent(bound)); //Still in the first one
+		assertEquals(0, other.getStore().size());
+
+	}
+
+	private static long key(int ag1, int ag2) {
+		return ((long)Math.min(ag1, ag2) << 32) | Math.max(ag1, ag2);
+	}
+
+	static BroadPhase newBroadPhase(String kind, int maxWidth, int maxHeight) {
+
+		BroadPhase broadPhase = emptyBroadPhase(kind, maxWidth, maxHeight);
+		Random numGenerator = new Random(1);
+		ArrayList<Shape> batch = new ArrayList<Shape>();
+
+		for (int i = 0; i < AGENTS; i++) {
+			batch.add(new Shape(RADIUS, numGenerator.nextInt(maxWidth-RADIUS*2)+RADIUS, numGenerator.nextInt(maxHeight-RADIUS*2)+RADIUS, numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4));
+		}
+
+		broadPhase.addAll(batch);
+
+		return broadPhase;
+
+	}
+
+	/**
+	 * emptyBroadPhase
+	 * A broad phase of the given kind: "pointer", "loose" (looseness 2) or "linear" tree, or "grid", with the elastic
+	 * response of AgentStoreTest.bounce
+	 */
+
+	static BroadPhase emptyBroadPhase(String kind, int maxWidth, int maxHeight) {
+
+		BroadPhase broadPhase;
+
+		if (kind.equals("grid")) {
+			broadPhase = new UniformGrid(maxWidth, maxHeight, RADIUS);
+		} else if (kind.equals("linear")) {
+			broadPhase = new LinearQuadTree(maxWidth, maxHeight);
+		} else if (kind.equals("loose")) {
+			broadPhase = new quadTree<Shape>(maxWidth, maxHeight, 2);
+		} else {
+			broadPhase = new quadTree<Shape>(maxWidth, maxHeight);
+		}
+
+		AgentStoreTest.bounce(broadPhase.getStore());
+		return broadPhase;
+
+	}
+
+}
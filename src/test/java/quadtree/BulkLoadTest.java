@@ -0,0 +1,96 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * BulkLoadTest
+ * Description: addAll must build exactly the tree that addAgent one by one, then update until nothing splits any more (at
+ * most MAX_LEVEL times, one level per update), settles into - the same nodes for every tree kind, on a uniform layout and
+ * on a tight cluster that splits down to the deepest level.
+ */
+
+public class BulkLoadTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void addAllMatchesRepeatedUpdates(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(TreeInvariantTest.AGENTS*400.0*16/9)); //Same density as testProgram
+		int maxHeight = maxWidth*9/16;
+
+		assertSameTree(kind, maxWidth, maxHeight, false);
+		assertSameTree(kind, maxWidth, maxHeight, true);
+
+	}
+
+	private static void assertSameTree(String kind, int maxWidth, int maxHeight, boolean cluster) {
+
+		SpatialTree bulk = (SpatialTree) BroadPhaseTest.emptyBroadPhase(kind, maxWidth, maxHeight);
+		bulk.addAll(batch(maxWidth, maxHeight, cluster));
+
+		SpatialTree settled = (SpatialTree) BroadPhaseTest.emptyBroadPhase(kind, maxWidth, maxHeight);
+
+		for (Shape agent : batch(maxWidth, maxHeight, cluster)) {
+			settled.addAgent(agent);
+		}
+
+		for (int i = 0; i < quadTree.MAX_LEVEL; i++) { //Each update splits the leaves over the threshold one level further
+			settled.update();
+		}
+
+		int [] expected = new int[4*65536];
+		int [] actual = new int[4*65536];
+		int nodes = settled.fillGrid(expected);
+
+		assertEquals(nodes, bulk.fillGrid(actual), kind + " node count");
+		assertArrayEquals(sorted(expected, nodes), sorted(actual, nodes), kind + " nodes");
+
+	}
+
+	/**
+	 * sorted
+	 * The node bounds written by fillGrid, one string per node, sorted - LinearQuadTree lists its nodes in slot order, which
+	 * depends on the order they were created in
+	 */
+
+	private static String [] sorted(int [] rects, int nodes) {
+
+		String [] bounds = new String[nodes];
+
+		for (int i = 0; i < nodes; i++) {
+			bounds[i] = Arrays.toString(Arrays.copyOfRange(rects, 4*i, 4*i+4));
+		}
+
+		Arrays.sort(bounds);
+
+		return bounds;
+
+	}
+
+	/**
+	 * batch
+	 * New shapes spread over the area, plus a tight cluster of 1000 more if asked - the same ones on every call
+	 */
+
+	private static ArrayList<Shape> batch(int maxWidth, int maxHeight, boolean cluster) {
+
+		ArrayList<Shape> batch = TreeInvariantTest.batch(maxWidth, maxHeight);
+		Random numGenerator = new Random(7);
+
+		for (int i = 0; cluster && i < 1000; i++) { //Far more per deepest cell than a leaf holds before it splits
+			batch.add(new Shape(TreeInvariantTest.RADIUS, 300 + numGenerator.nextInt(40), 200 + numGenerator.nextInt(40), 1, -1));
+		}
+
+		return batch;
+
+	}
+
+}
@@ -0,0 +1,163 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * ContactCacheTest
+ * Description: With a ContactCache, checkCollide must resolve on every tick the same pairs as the plain pair search of the
+ * tree, while replaying the contacts between the shapes that did not move. Contacts must age while they last and be evicted
+ * once the agents separate, and the resting response must keep a slow contact from bouncing. With a tolerance, a slow shape
+ * must stay untested, its contacts replayed, until it has moved that far.
+ */
+
+public class ContactCacheTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear"})
+	public void cachedPairsMatchFindPairs(String kind) {
+
+		SpatialTree tree = newScene(kind);
+		ContactCache cache = new ContactCache();
+		tree.setContactCache(cache);
+		int replayed = 0;
+
+		for (int tick = 0; tick < 40; tick++) {
+
+			tree.step(1000, 1000);
+			replayed += cache.getReplayedPairs();
+
+			ArrayList<long []> pairs = new ArrayList<long []>();
+			tree.findPairs((ag1, ag2) -> pairs.add(new long[] {ag1, ag2}));
+
+			assertEquals(pairs.size(), cache.size(), "contacts on tick " + tick);
+
+			for (long [] pair : pairs) {
+				assertTrue(cache.age((int)pair[0], (int)pair[1]) > 0, "pair " + pair[0] + "-" + pair[1] + " missed on tick " + tick);
+			}
+
+		}
+
+		assertTrue(replayed > 0, "no contact replayed");
+		assertTrue(cache.getTestedAgents() < tree.getStore().size(), "every shape tested");
+
+	}
+
+	@Test
+	public void contactsAgeAndEvict() {
+
+		LinearQuadTree tree = new LinearQuadTree(100, 100);
+		tree.addAgent(new Shape(5, 50, 50, 0, 0));
+		tree.addAgent(new Shape(5, 55, 50, 0, 0));
+		AgentStoreTest.bounce(tree.getStore());
+		ContactCache cache = new ContactCache();
+		tree.setContactCache(cache);
+
+		for (int tick = 1; tick <= 3; tick++) {
+			tree.step(100, 100);
+			assertEquals(tick, cache.age(0, 1));
+			assertEquals(tick, cache.age(1, 0));
+		}
+
+		assertEquals(1, cache.getReplayedPairs());
+
+		AgentStore store = tree.getStore();
+		store.dx[0] = -2;
+		store.dx[1] = 2;
+
+		for (int tick = 0; tick < 4; tick++) {
+			tree.step(100, 100);
+		}
+
+		assertEquals(0, cache.age(0, 1));
+		assertEquals(0, cache.size());
+
+	}
+
+	@Test
+	public void toleranceKeepsSlowShapesClean() {
+
+		int [] ages = new int[2];
+
+		for (int k = 0; k < 2; k++) {
+
+			LinearQuadTree tree = new LinearQuadTree(100, 100);
+			tree.addAgent(new Shape(5, 50, 50, 0, 0));
+			tree.addAgent(new Shape(5, 59, 50, 0.3, 0)); //Drifting away - apart after 5 ticks
+			AgentStoreTest.bounce(tree.getStore());
+			ContactCache cache = new ContactCache();
+			cache.setTolerance(2*k);
+			tree.setContactCache(cache);
+
+			for (int tick = 0; tick < 6; tick++) {
+				tree.step(100, 100);
+			}
+
+			ages[k] = cache.age(0, 1);
+			assertEquals(k == 0 ? 1 : 0, cache.getTestedAgents());
+
+		}
+
+		assertEquals(0, ages[0]); //Tested every tick - separated
+		assertEquals(6, ages[1]); //Moved 1.5 since it was tested - still replayed
+
+	}
+
+	@Test
+	public void restingContactsSettle() {
+
+		LinearQuadTree tree = new LinearQuadTree(100, 100);
+		tree.addAgent(new Shape(5, 45, 50, 0.25, 0));
+		tree.addAgent(new Shape(5, 54, 50, -0.25, 0));
+		ContactCache cache = new ContactCache();
+		cache.setResting(1, 1);
+		tree.setContactCache(cache);
+
+		for (int tick = 0; tick < 10; tick++) {
+			tree.step(100, 100);
+		}
+
+		AgentStore store = tree.getStore();
+
+		assertEquals(0, store.dx[0]);
+		assertEquals(0, store.dx[1]);
+		assertEquals(10, cache.age(0, 1)); //Still in contact, at rest - the elastic response would have bounced them apart
+
+	}
+
+	/**
+	 * newScene
+	 * Agents moving about a 1000x1000 area, and a pile of agents at rest in one corner
+	 */
+
+	private static SpatialTree newScene(String kind) {
+
+		SpatialTree tree = kind.equals("linear") ? new LinearQuadTree(1000, 1000) : new quadTree<Shape>(1000, 1000);
+		AgentStoreTest.bounce(tree.getStore());
+		Random numGenerator = new Random(1);
+		ArrayList<Shape> batch = new ArrayList<Shape>();
+
+		for (int i = 0; i < 1000; i++) {
+			batch.add(new Shape(5, numGenerator.nextInt(400)+550, numGenerator.nextInt(900)+50, numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4));
+		}
+
+		for (int i = 0; i < 40; i++) {
+			for (int j = 0; j < 40; j++) {
+				batch.add(new Shape(5, 20 + 9*i, 20 + 9*j, 0, 0));
+			}
+		}
+
+		tree.addAll(batch);
+
+		return tree;
+
+	}
+
+}
@@ -0,0 +1,118 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * FrameRendererTest
+ * Description: Agents must be stamped at their place in the viewport, at the size the zoom gives them, and nodes outlined -
+ * following pan and zoomAt. Nothing outside the image may be written, at any zoom. With views off, the snapshot must be
+ * drawn the same as the view.
+ */
+
+public class FrameRendererTest {
+
+	@Test
+	public void drawsAgentsAndNodesInViewport() {
+
+		LinearQuadTree tree = new LinearQuadTree(400, 300);
+		tree.addAgent(new Shape(5, 50, 50, 0, 0));
+		tree.addAgent(new Shape(5, 398, 150, 0, 0));
+		SimulationEngine engine = new SimulationEngine(tree, 400, 300, 0);
+		engine.setViews(true);
+
+		FrameRenderer renderer = new FrameRenderer(400, 300, 0);
+		renderer.resize(200, 200);
+		int [] grid = {0, 0, 100, 100};
+
+		try (TreeView view = engine.acquireView()) {
+
+			BufferedImage image = renderer.render(view, grid, 1);
+			assertEquals(FrameRenderer.AGENT, rgb(image, 50, 50));
+			assertEquals(FrameRenderer.AGENT, rgb(image, 54, 50));
+			assertEquals(FrameRenderer.BACKGROUND, rgb(image, 57, 50));
+			assertEquals(FrameRenderer.GRID, rgb(image, 100, 30));
+			assertEquals(FrameRenderer.GRID, rgb(image, 30, 0));
+
+			renderer.pan(60, 10); //World follows the mouse - the agent moves right and down
+			image = renderer.render(view, grid, 1);
+			assertEquals(FrameRenderer.AGENT, rgb(image, 110, 60));
+			assertEquals(FrameRenderer.BACKGROUND, rgb(image, 50, 50));
+
+			renderer.setViewport(0, 0, 1);
+			renderer.zoomAt(2, 50, 50); //The agent under the cursor stays there, twice as large
+			image = renderer.render(view, grid, 1);
+			assertEquals(FrameRenderer.AGENT, rgb(image, 50, 50));
+			assertEquals(FrameRenderer.AGENT, rgb(image, 59, 50));
+			assertEquals(FrameRenderer.BACKGROUND, rgb(image, 63, 50));
+
+			renderer.setViewport(200, 100, 1); //The second agent straddles the right edge of the image
+			image = renderer.render(view, null, 0);
+			assertEquals(FrameRenderer.AGENT, rgb(image, 198, 50));
+			assertEquals(FrameRenderer.AGENT, rgb(image, 199, 50));
+			assertEquals(FrameRenderer.BACKGROUND, rgb(image, 50, 50)); //The first one is out of sight
+
+		}
+
+	}
+
+	@Test
+	public void drawsSnapshotWithViewsOff() {
+
+		LinearQuadTree tree = new LinearQuadTree(400, 300);
+		tree.addAgent(new Shape(5, 50, 50, 0, 0));
+		tree.addAgent(new Shape(12, 398, 150, 0, 0));
+		tree.addAgent(new Shape(3, 250, 290, 0, 0));
+		SimulationEngine engine = new SimulationEngine(tree, 400, 300, 0);
+		engine.tick();
+
+		FrameRenderer renderer = new FrameRenderer(400, 300, 10);
+		renderer.resize(300, 200);
+		renderer.setViewport(20, 30, 0.9);
+		SimulationEngine.Snapshot frame = engine.acquireSnapshot();
+		assertEquals(null, engine.acquireView());
+		assertThrows(IllegalArgumentException.class, () -> renderer.render(null, frame.grid, frame.gridCount));
+		int [] fromSnapshot = renderer.render(frame).getRGB(0, 0, 300, 200, null, 0, 300);
+
+		engine.setViews(true);
+
+		try (TreeView view = engine.acquireView()) {
+			assertArrayEquals(renderer.render(view, frame.grid, frame.gridCount).getRGB(0, 0, 300, 200, null, 0, 300), fromSnapshot);
+		}
+
+	}
+
+	@Test
+	public void drawsAtAnyZoom() {
+
+		LinearQuadTree tree = new LinearQuadTree(400, 300);
+		tree.addAgent(new Shape(5, 50, 50, 0, 0));
+		SimulationEngine engine = new SimulationEngine(tree, 400, 300, 0);
+		engine.setViews(true);
+
+		FrameRenderer renderer = new FrameRenderer(400, 300, 0);
+		renderer.resize(200, 200);
+
+		try (TreeView view = engine.acquireView()) {
+
+			for (double zoom : new double [] {1e3, 1e7, 1e12}) { //Discs far larger than the image, rows clipped to it
+				renderer.setViewport(50 - 100/zoom, 50 - 100/zoom, zoom);
+				BufferedImage image = renderer.render(view, null, 0);
+				assertEquals(FrameRenderer.AGENT, rgb(image, 0, 0));
+				assertEquals(FrameRenderer.AGENT, rgb(image, 199, 199));
+			}
+
+		}
+
+	}
+
+	private static int rgb(BufferedImage image, int x, int y) {
+		return image.getRGB(x, y) & 0xFFFFFF;
+	}
+
+}
@@ -0,0 +1,113 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * LinearQuadTreeTest
+ * Description: A shape going back and forth across the edge of a node moves its count across the split threshold every tick.
+ * With the collapse threshold below the split threshold, the node splits once and then keeps its children, while range
+ * queries still find what a scan of the store finds. With both thresholds equal, the same node splits and collapses on
+ * alternate ticks - the thrashing the hysteresis is there to stop.
+ */
+
+public class LinearQuadTreeTest {
+
+	static final int SIZE = 1000;
+	static final int RADIUS = 5;
+	static final int TICKS = 40;
+
+	@Test
+	public void hysteresisStopsThrashing() {
+
+		int [] nodes = nodesPerTick(new LinearQuadTree(SIZE, SIZE)); //Splits at 5, collapses below 3
+
+		assertTrue(nodes[1] > nodes[0], "the node splits once the shape comes in");
+
+		for (int tick = 2; tick < TICKS; tick++) {
+			assertEquals(nodes[1], nodes[tick], "tick " + tick);
+		}
+
+	}
+
+	@Test
+	public void equalThresholdsThrash() {
+
+		int [] nodes = nodesPerTick(new LinearQuadTree(SIZE, SIZE, LinearQuadTree.SPLIT_THRESHOLD, LinearQuadTree.SPLIT_THRESHOLD));
+
+		for (int tick = 1; tick < TICKS; tick++) {
+			assertNotEquals(nodes[tick-1], nodes[tick], "tick " + tick);
+		}
+
+	}
+
+	/**
+	 * nodesPerTick
+	 * Four shapes at rest in the top left quarter, and a fifth moved in and out of it on alternate ticks - the quarter holds 4,
+	 * then 5 (the split threshold), then 4 again. Returns the number of nodes of the tree after each tick.
+	 */
+
+	private static int [] nodesPerTick(LinearQuadTree tree) {
+
+		for (int [] p : new int [][] {{100, 100}, {100, 300}, {300, 100}, {300, 300}}) { //One in each child of the quarter
+			tree.addAgent(new Shape(RADIUS, p[0], p[1], 0, 0));
+		}
+
+		Shape mover = new Shape(RADIUS, 600, 400, 0, 0);
+		tree.addAgent(mover);
+		tree.update(); //Root holds 5 - splits, the quarter holds 4
+
+		AgentStore store = tree.getStore();
+		int [] nodes = new int[TICKS];
+		Random numGenerator = new Random(9);
+
+		for (int tick = 0; tick < TICKS; tick++) {
+
+			store.x[mover.getHandle()] = tick % 2 == 0 ? 600 : 400;
+			tree.manageNode(tree.findChanged()); //The phases of updateTree that move shapes between nodes
+			tree.update();
+			nodes[tick] = tree.nodeCount();
+
+			assertQueriesMatchScan(tree, numGenerator, "tick " + tick);
+
+		}
+
+		return nodes;
+
+	}
+
+	private static void assertQueriesMatchScan(LinearQuadTree tree, Random numGenerator, String message) {
+
+		AgentStore store = tree.getStore();
+
+		for (int q = 0; q < 20; q++) {
+
+			double x0 = numGenerator.nextDouble()*SIZE;
+			double y0 = numGenerator.nextDouble()*SIZE;
+			double x1 = x0 + numGenerator.nextDouble()*500;
+			double y1 = y0 + numGenerator.nextDouble()*500;
+			Set<Integer> found = new HashSet<Integer>();
+			Set<Integer> scan = new HashSet<Integer>();
+
+			tree.queryRect(x0, y0, x1, y1, found::add);
+
+			for (int i = 0; i < store.size(); i++) {
+				if (store.x[i] >= x0 && store.x[i] <= x1 && store.y[i] >= y0 && store.y[i] <= y1) {
+					scan.add(i);
+				}
+			}
+
+			assertEquals(scan, found, message);
+
+		}
+
+	}
+
+}
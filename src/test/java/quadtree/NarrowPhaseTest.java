@@ -0,0 +1,149 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * NarrowPhaseTest
+ * Description: The vector and scalar kernels of NarrowPhase must find the same contacts, in the same order, as the plain
+ * pair loop over AgentStore.intersects - on dense leaves of every size around the SIMD width, and the same velocities once resolved.
+ * Sort and sweep must find the same contacts as the plain loop over the list it leaves sorted, tick after tick.
+ */
+
+public class NarrowPhaseTest {
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 2, 3, 7, 8, 9, 31, 32, 33, 100, 257, 600})
+	public void kernelsFindTheSameContacts(int len) {
+
+		AgentStore store = new AgentStore();
+		int [] list = denseLeaf(store, len, new Random(len));
+
+		PairList expected = new PairList();
+
+		for (int i = 0; i < len; i++) {
+			for (int a = i+1; a < len; a++) {
+				if (store.intersects(list[i], list[a])) {
+					expected.add(list[i], list[a]);
+				}
+			}
+		}
+
+		PairList scalar = new PairList();
+		PairList vector = new PairList();
+		NarrowPhase.create(false).collideLeaf(store, list, len, scalar);
+		new VectorNarrowPhase().collideLeaf(store, list, len, vector);
+
+		assertEquals(expected.size, scalar.size);
+		assertArrayEquals(Arrays.copyOf(expected.pairs, 2*expected.size), Arrays.copyOf(scalar.pairs, 2*scalar.size));
+		assertEquals(expected.size, vector.size);
+		assertArrayEquals(Arrays.copyOf(expected.pairs, 2*expected.size), Arrays.copyOf(vector.pairs, 2*vector.size));
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {40, 300})
+	public void kernelsResolveToTheSameVelocities(int len) {
+
+		AgentStore plain = new AgentStore();
+		AgentStore scalar = new AgentStore();
+		AgentStore vector = new AgentStore();
+		int [] list = denseLeaf(plain, len, new Random(len));
+		denseLeaf(scalar, len, new Random(len));
+		denseLeaf(vector, len, new Random(len));
+
+		for (int i = 0; i < len; i++) {
+			for (int a = i+1; a < len; a++) {
+				if (plain.intersects(list[i], list[a])) {
+					plain.collide(list[i], list[a]);
+				}
+			}
+		}
+
+		NarrowPhase.create(false).collideLeaf(scalar, list, len, scalar.response());
+		new VectorNarrowPhase().collideLeaf(vector, list, len, vector.response());
+
+		assertArrayEquals(Arrays.copyOf(plain.dx, len), Arrays.copyOf(scalar.dx, len));
+		assertArrayEquals(Arrays.copyOf(plain.dy, len), Arrays.copyOf(scalar.dy, len));
+		assertArrayEquals(Arrays.copyOf(plain.dx, len), Arrays.copyOf(vector.dx, len));
+		assertArrayEquals(Arrays.copyOf(plain.dy, len), Arrays.copyOf(vector.dy, len));
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {2, 9, 33, 100, 600})
+	public void sweepFindsTheSameContacts(int len) {
+
+		AgentStore store = new AgentStore();
+		int [] list = denseLeaf(store, len, new Random(len));
+		int [] slotOf = new int[len];
+		Random numGenerator = new Random(-len);
+
+		for (int tick = 0; tick < 5; tick++) {
+
+			PairList scalar = new PairList();
+			PairList vector = new PairList();
+			NarrowPhase.create(false).sweepLeaf(store, list, len, slotOf, scalar);
+			new VectorNarrowPhase().sweepLeaf(store, list, len, slotOf, vector);
+
+			PairList expected = new PairList();
+
+			for (int i = 0; i < len; i++) {
+
+				assertEquals(i, slotOf[list[i]]);
+
+				for (int a = i+1; a < len; a++) {
+					if (store.intersects(list[i], list[a])) {
+						expected.add(list[i], list[a]);
+					}
+				}
+
+			}
+
+			assertArrayEquals(Arrays.copyOf(expected.pairs, 2*expected.size), Arrays.copyOf(scalar.pairs, 2*scalar.size));
+			assertArrayEquals(Arrays.copyOf(expected.pairs, 2*expected.size), Arrays.copyOf(vector.pairs, 2*vector.size));
+
+			for (int i = 0; i < len; i++) { //Moves a little, like a tick - the next sweep starts from a nearly sorted list
+				store.x[i] += numGenerator.nextDouble()*6-3;
+				store.y[i] += numGenerator.nextDouble()*6-3;
+			}
+
+		}
+
+	}
+
+	/**
+	 * denseLeaf
+	 * Adds len agents packed into a small square, with centers on and around half-pixel boundaries so rounding matters,
+	 * and returns their handles in shuffled order like a leaf's agentList
+	 */
+
+	private static int [] denseLeaf(AgentStore store, int len, Random numGenerator) {
+
+		double side = 4*Math.sqrt(len) + 10;
+		int [] list = new int[len];
+
+		for (int i = 0; i < len; i++) {
+			double x = 100 + Math.floor(numGenerator.nextDouble()*side) + ((i % 3 == 0) ? 0.5 : numGenerator.nextDouble());
+			double y = 100 + Math.floor(numGenerator.nextDouble()*side) + ((i % 5 == 0) ? 0.5 : numGenerator.nextDouble());
+			list[i] = store.add(1 + numGenerator.nextInt(5), x, y, numGenerator.nextDouble()*8-4, numGenerator.nextDouble()*8-4);
+		}
+
+		for (int i = len-1; i > 0; i--) {
+			int j = numGenerator.nextInt(i+1);
+			int t = list[i];
+			list[i] = list[j];
+			list[j] = t;
+		}
+
+		return list;
+
+	}
+
+}
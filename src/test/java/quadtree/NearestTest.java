@@ -0,0 +1,112 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * NearestTest
+ * Description: SpatialTree.nearest must find the same distances as sorting every agent by distance - for k from 0 to more
+ * than the tree holds, from points inside and outside the area, and with many agents at the same distance (any of them may
+ * be taken, but each one once, at its own distance). A result reused across queries must not carry anything over.
+ */
+
+public class NearestTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void nearestMatchesBruteForce(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(TreeInvariantTest.AGENTS*400.0*16/9)); //Same density as testProgram
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = (SpatialTree) BroadPhaseTest.newBroadPhase(kind, maxWidth, maxHeight);
+
+		for (int tick = 0; tick < 20; tick++) { //Motion without collisions - two centers meeting would turn a speed to NaN
+			tree.getStore().move(maxWidth, maxHeight);
+			tree.manageNode(tree.findChanged());
+			tree.update();
+		}
+
+		Random numGenerator = new Random(6);
+		NearestResult result = new NearestResult();
+
+		for (int q = 0; q < 100; q++) {
+
+			double x = numGenerator.nextDouble()*(maxWidth + 400) - 200; //Outside the area too
+			double y = numGenerator.nextDouble()*(maxHeight + 400) - 200;
+			int k = new int[] {0, 1, 7, 64, TreeInvariantTest.AGENTS + 10}[q % 5];
+
+			assertNearest(tree, x, y, k, tree.nearest(x, y, k, result), kind + " query " + q);
+
+		}
+
+		assertNearest(tree, -1e6, 3e6, 5, tree.nearest(-1e6, 3e6, 5), kind + " far outside");
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void nearestTakesEachTieOnce(String kind) {
+
+		SpatialTree tree = (SpatialTree) BroadPhaseTest.emptyBroadPhase(kind, 1000, 1000);
+
+		for (int i = 0; i < 40; i++) { //A lattice - from a lattice point or the middle of a cell, whole rings are at the same distance
+			for (int j = 0; j < 40; j++) {
+				tree.addAgent(new Shape(TreeInvariantTest.RADIUS, 100 + 20*i, 100 + 20*j, 0, 0));
+			}
+		}
+
+		tree.addAgent(new Shape(TreeInvariantTest.RADIUS, 500, 500, 0, 0)); //Two agents on the same spot
+		tree.update();
+
+		NearestResult result = new NearestResult();
+
+		for (double [] p : new double [][] {{500, 500}, {510, 510}, {100, 100}, {90, 300}, {0, 0}}) {
+			for (int k : new int[] {1, 2, 3, 5, 9, 13, 21}) {
+				assertNearest(tree, p[0], p[1], k, tree.nearest(p[0], p[1], k, result), kind + " at " + p[0] + ", " + p[1] + ", k " + k);
+			}
+		}
+
+	}
+
+	/**
+	 * assertNearest
+	 * Checks a result against every agent of the tree sorted by distance - the same distances, closest first, each handle
+	 * once and at its own distance
+	 */
+
+	private static void assertNearest(SpatialTree tree, double x, double y, int k, NearestResult result, String message) {
+
+		AgentStore store = tree.getStore();
+		double [] all = new double[store.size()];
+
+		for (int i = 0; i < all.length; i++) {
+			all[i] = distSq(store, i, x, y);
+		}
+
+		Arrays.sort(all);
+
+		assertEquals(Math.min(k, all.length), result.size(), message);
+
+		Set<Integer> seen = new HashSet<Integer>();
+
+		for (int i = 0; i < result.size(); i++) {
+			assertEquals(all[i], result.distSq(i), message + " rank " + i);
+			assertEquals(distSq(store, result.handle(i), x, y), result.distSq(i), message + " rank " + i);
+			assertTrue(seen.add(result.handle(i)), message + " found " + result.handle(i) + " twice");
+		}
+
+	}
+
+	private static double distSq(AgentStore store, int i, double x, double y) {
+		return (store.x[i]-x)*(store.x[i]-x) + (store.y[i]-y)*(store.y[i]-y);
+	}
+
+}
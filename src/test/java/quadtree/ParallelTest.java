@@ -0,0 +1,80 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * ParallelTest
+ * Description: A tree running integrate (and checkCollide on quadTree) on a ForkJoinPool (setParallel) must tick exactly like
+ * the same tree run sequentially - every position and speed equal bit for bit, tick after tick, tight, loose and linear.
+ */
+
+public class ParallelTest {
+
+	static final int TICKS = 300;
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void parallelMatchesSequential(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(TreeInvariantTest.AGENTS*400.0*16/9)); //Same density as testProgram
+		int maxHeight = maxWidth*9/16;
+		SpatialTree sequential = TreeInvariantTest.newTree(newTree(kind, maxWidth, maxHeight), maxWidth, maxHeight);
+		SpatialTree parallel = TreeInvariantTest.newTree(newTree(kind, maxWidth, maxHeight), maxWidth, maxHeight);
+		ForkJoinPool pool = new ForkJoinPool(4);
+
+		try {
+
+			parallel.setParallel(pool, 16); //Small subtrees, so the work is split many times
+
+			for (int tick = 0; tick < TICKS; tick++) {
+
+				if (tick % 3 == 0) { //The separate phases as well as the fused step
+					sequential.getStore().move(maxWidth, maxHeight);
+					sequential.updateTree();
+					parallel.getStore().move(maxWidth, maxHeight);
+					parallel.updateTree();
+				} else {
+					sequential.step(maxWidth, maxHeight);
+					parallel.step(maxWidth, maxHeight);
+				}
+
+				assertSameStore(sequential.getStore(), parallel.getStore(), kind + " tick " + tick);
+
+			}
+
+		} finally {
+			pool.shutdown();
+		}
+
+	}
+
+	private static SpatialTree newTree(String kind, int maxWidth, int maxHeight) {
+
+		if (kind.equals("linear")) {
+			return new LinearQuadTree(maxWidth, maxHeight);
+		}
+
+		return kind.equals("loose") ? new quadTree<Shape>(maxWidth, maxHeight, 2) : new quadTree<Shape>(maxWidth, maxHeight);
+
+	}
+
+	private static void assertSameStore(AgentStore expected, AgentStore actual, String message) {
+
+		int n = expected.size();
+
+		assertEquals(n, actual.size(), message);
+		assertArrayEquals(Arrays.copyOf(expected.x, n), Arrays.copyOf(actual.x, n), message);
+		assertArrayEquals(Arrays.copyOf(expected.y, n), Arrays.copyOf(actual.y, n), message);
+		assertArrayEquals(Arrays.copyOf(expected.dx, n), Arrays.copyOf(actual.dx, n), message);
+		assertArrayEquals(Arrays.copyOf(expected.dy, n), Arrays.copyOf(actual.dy, n), message);
+
+	}
+
+}
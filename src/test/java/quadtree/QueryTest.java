@@ -0,0 +1,154 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * QueryTest
+ * Description: Range queries must find the same agents as a scan of the store, after a few ticks of motion. The buffer forms
+ * must write the first handles the visitor forms find, in the same order, and return the full count when the buffer is too small.
+ */
+
+public class QueryTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void queriesMatchScan(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(TreeInvariantTest.AGENTS*400.0*16/9)); //Same density as testProgram
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = newTree(kind, maxWidth, maxHeight);
+		AgentStore store = tree.getStore();
+
+		for (int tick = 0; tick < 20; tick++) {
+			tree.step(maxWidth, maxHeight);
+		}
+
+		Random numGenerator = new Random(3);
+
+		for (int q = 0; q < 50; q++) {
+
+			double x0 = numGenerator.nextDouble()*maxWidth - 50;
+			double y0 = numGenerator.nextDouble()*maxHeight - 50;
+			double x1 = x0 + numGenerator.nextDouble()*200;
+			double y1 = y0 + numGenerator.nextDouble()*200;
+			double r = numGenerator.nextDouble()*100;
+
+			Set<Integer> rect = new HashSet<Integer>();
+			Set<Integer> circle = new HashSet<Integer>();
+			tree.queryRect(x0, y0, x1, y1, rect::add);
+			tree.queryCircle(x0, y0, r, circle::add);
+
+			int inRect = 0;
+			int inCircle = 0;
+
+			for (int i = 0; i < store.size(); i++) {
+
+				if (store.x[i] >= x0 && store.x[i] <= x1 && store.y[i] >= y0 && store.y[i] <= y1) {
+					assertTrue(rect.contains(i));
+					inRect++;
+				}
+
+				if ((store.x[i]-x0)*(store.x[i]-x0) + (store.y[i]-y0)*(store.y[i]-y0) <= r*r) {
+					assertTrue(circle.contains(i));
+					inCircle++;
+				}
+
+			}
+
+			assertEquals(inRect, rect.size());
+			assertEquals(inCircle, circle.size());
+
+		}
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void bufferQueriesMatchVisitor(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(TreeInvariantTest.AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = newTree(kind, maxWidth, maxHeight);
+
+		for (int tick = 0; tick < 20; tick++) {
+			tree.step(maxWidth, maxHeight);
+		}
+
+		Random numGenerator = new Random(5);
+
+		for (int q = 0; q < 50; q++) {
+
+			double x0 = numGenerator.nextDouble()*maxWidth - 50;
+			double y0 = numGenerator.nextDouble()*maxHeight - 50;
+			double x1 = x0 + numGenerator.nextDouble()*300;
+			double y1 = y0 + numGenerator.nextDouble()*300;
+			double r = numGenerator.nextDouble()*150;
+
+			ArrayList<Integer> rect = new ArrayList<Integer>();
+			ArrayList<Integer> circle = new ArrayList<Integer>();
+			tree.queryRect(x0, y0, x1, y1, rect::add);
+			tree.queryCircle(x0, y0, r, circle::add);
+
+			for (int len : new int[] {rect.size() + 3, rect.size(), rect.size()/2, 1, 0}) { //Too small - the full count still comes back
+				int [] out = new int[len];
+				Arrays.fill(out, -1);
+				assertEquals(rect.size(), tree.queryRect(x0, y0, x1, y1, out));
+				assertPrefix(rect, out);
+			}
+
+			for (int len : new int[] {circle.size() + 3, circle.size(), circle.size()/2, 1, 0}) {
+				int [] out = new int[len];
+				Arrays.fill(out, -1);
+				assertEquals(circle.size(), tree.queryCircle(x0, y0, r, out));
+				assertPrefix(circle, out);
+			}
+
+		}
+
+	}
+
+	/**
+	 * newTree
+	 * A tree of the given kind ("pointer", "loose" or "linear") holding the agents of TreeInvariantTest.newTree
+	 */
+
+	static SpatialTree newTree(String kind, int maxWidth, int maxHeight) {
+		return TreeInvariantTest.newTree(emptyTree(kind, maxWidth, maxHeight), maxWidth, maxHeight);
+	}
+
+	static SpatialTree emptyTree(String kind, int maxWidth, int maxHeight) {
+
+		if (kind.equals("linear")) {
+			return new LinearQuadTree(maxWidth, maxHeight);
+		} else if (kind.equals("loose")) {
+			return new quadTree<Shape>(maxWidth, maxHeight, 2);
+		}
+
+		return new quadTree<Shape>(maxWidth, maxHeight);
+
+	}
+
+	/**
+	 * assertPrefix
+	 * Checks that a buffer holds the first handles found by the visitor form, in the same order, and nothing past them
+	 */
+
+	private static void assertPrefix(ArrayList<Integer> expected, int [] out) {
+
+		for (int i = 0; i < out.length; i++) {
+			assertEquals(i < expected.size() ? expected.get(i) : -1, out[i]);
+		}
+
+	}
+
+}
@@ -0,0 +1,191 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * SimulationEngineTest
+ * Description: Shapes added and removed from many threads while the engine runs must all be applied - none lost, none
+ * applied twice - and leave the tree consistent: a query over the whole area finds every shape of the store once. Of
+ * the operations queued on one shape in a tick, the last one counts. A shape the tree refuses is skipped and reported by
+ * stop, without stopping the engine.
+ */
+
+public class SimulationEngineTest {
+
+	static final int PRODUCERS = 4;
+	static final int SHAPES = 500; //Added by each producer, every other one removed again
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear", "grid"})
+	public void concurrentIntakeIsApplied(String kind) throws InterruptedException {
+
+		int maxWidth = 1200;
+		int maxHeight = 675;
+		BroadPhase tree = BroadPhaseTest.newBroadPhase(kind, maxWidth, maxHeight);
+		SimulationEngine engine = new SimulationEngine(tree, maxWidth, maxHeight, 0);
+		engine.start();
+
+		Thread [] producers = new Thread[PRODUCERS];
+
+		for (int t = 0; t < PRODUCERS; t++) {
+
+			int seed = t;
+
+			producers[t] = new Thread(() -> {
+
+				ArrayList<Shape> mine = new ArrayList<Shape>();
+
+				for (int i = 0; i < SHAPES; i++) {
+
+					Shape agent = new Shape(BroadPhaseTest.RADIUS, (37*i + 101*seed) % (maxWidth-20) + 10, (53*i + 7*seed) % (maxHeight-20) + 10, 1, -1);
+					engine.addAgent(agent);
+					mine.add(agent);
+
+					if (i % 2 == 1) {
+						engine.removeAgent(mine.get(i-1));
+						engine.removeAgent(mine.get(i-1)); //Twice - removed once
+					}
+
+					if (i % 50 == 0) {
+						Thread.yield();
+					}
+
+				}
+
+			});
+
+			producers[t].start();
+
+		}
+
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		long until = engine.getTicks() + 3; //Every queued shape is applied within one tick of being queued
+
+		while (engine.getTicks() < until) {
+			Thread.sleep(1);
+		}
+
+		engine.stop();
+
+		AgentStore store = tree.getStore();
+		assertEquals(BroadPhaseTest.AGENTS + PRODUCERS*SHAPES/2, store.size());
+
+		tree.relocateAll();
+		Set<Integer> all = new HashSet<Integer>();
+		tree.queryRect(-1e9, -1e9, 1e9, 1e9, all::add);
+		assertEquals(store.size(), all.size());
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear", "grid"})
+	public void lastQueuedOperationCounts(String kind) {
+
+		int maxWidth = 1200;
+		int maxHeight = 675;
+		BroadPhase tree = BroadPhaseTest.emptyBroadPhase(kind, maxWidth, maxHeight);
+		ArrayList<Shape> shapes = new ArrayList<Shape>();
+
+		for (int i = 0; i < 50; i++) {
+			shapes.add(new Shape(BroadPhaseTest.RADIUS, 20 + 22*i, 300, 0, 0));
+		}
+
+		tree.addAll(shapes);
+
+		SimulationEngine engine = new SimulationEngine(tree, maxWidth, maxHeight, 0);
+		AgentStore store = tree.getStore();
+		Shape in = shapes.get(7);
+		Shape out = new Shape(BroadPhaseTest.RADIUS, 100, 100, 1, 1);
+
+		engine.removeAgent(in); //Removed then added again - stays
+		engine.addAgent(in);
+		engine.addAgent(out); //Added twice then removed - never added
+		engine.addAgent(out);
+		engine.removeAgent(out);
+		engine.tick();
+
+		assertEquals(50, store.size());
+		assertEquals(-1, out.getHandle());
+		assertEquals(7, in.getHandle());
+
+		engine.addAgent(out); //Added twice - added once
+		engine.addAgent(out);
+		engine.tick();
+		assertEquals(51, store.size());
+
+		engine.removeAgent(in); //Added then removed - removed, along with the shape that was added twice
+		engine.addAgent(in);
+		engine.removeAgent(in);
+		engine.removeAgent(out);
+		engine.tick();
+
+		assertEquals(49, store.size());
+		assertEquals(-1, in.getHandle());
+		assertEquals(-1, out.getHandle());
+
+		Set<Integer> all = new HashSet<Integer>();
+		tree.relocateAll();
+		tree.queryRect(-1e9, -1e9, 1e9, 1e9, all::add);
+		assertEquals(store.size(), all.size());
+
+		Set<Integer> handles = new HashSet<Integer>();
+
+		for (Shape agent : shapes) {
+			if (agent != in) {
+				handles.add(agent.getHandle());
+			}
+		}
+
+		assertEquals(all, handles);
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear", "grid"})
+	public void refusedShapeIsReportedByStop(String kind) throws InterruptedException {
+
+		int maxWidth = 1200;
+		int maxHeight = 675;
+		BroadPhase tree = BroadPhaseTest.emptyBroadPhase(kind, maxWidth, maxHeight);
+		BroadPhase other = BroadPhaseTest.emptyBroadPhase(kind, maxWidth, maxHeight);
+		Shape taken = new Shape(BroadPhaseTest.RADIUS, 100, 100, 1, 1);
+		other.addAgent(taken);
+
+		SimulationEngine engine = new SimulationEngine(tree, maxWidth, maxHeight, 0);
+		engine.start();
+		engine.addAgent(taken); //In another tree - refused
+		engine.addAgent(new Shape(BroadPhaseTest.RADIUS, 300, 300, 1, 1));
+
+		long until = engine.getTicks() + 3;
+
+		while (engine.getTicks() < until) {
+			Thread.sleep(1);
+		}
+
+		engine.addAgent(new Shape(BroadPhaseTest.RADIUS, 500, 300, 1, 1)); //Still running
+		until = engine.getTicks() + 3;
+
+		while (engine.getTicks() < until) {
+			Thread.sleep(1);
+		}
+
+		assertThrows(IllegalStateException.class, engine::stop);
+		assertEquals(2, tree.getStore().size());
+		assertEquals(1, other.getStore().size());
+
+		engine.stop(); //Reported once
+
+	}
+
+}
@@ -0,0 +1,184 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * TraceTest
+ * Description: A run recorded by SimulationEngine - shapes added and removed along the way - must replay into a new tree
+ * exactly, bit for bit. Events must decode the same across chunk boundaries, and a truncated trace or a file that is not a
+ * trace must be refused.
+ */
+
+public class TraceTest {
+
+	@TempDir
+	Path dir;
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear", "grid"})
+	public void recordedRunReplaysExactly(String kind) throws IOException {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(BroadPhaseTest.AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		BroadPhase tree = BroadPhaseTest.newBroadPhase(kind, maxWidth, maxHeight);
+		SimulationEngine engine = new SimulationEngine(tree, maxWidth, maxHeight, 0);
+		Path file = dir.resolve(kind + ".trace");
+		engine.startRecording(TraceWriter.create(file, maxWidth, maxHeight));
+
+		Random numGenerator = new Random(5);
+		ArrayList<Shape> spawned = new ArrayList<Shape>();
+
+		for (int tick = 0; tick < 60; tick++) {
+
+			if (tick % 5 == 0) {
+				Shape agent = new Shape(5, numGenerator.nextInt(maxWidth-10)+5, numGenerator.nextInt(maxHeight-10)+5, 3, -1);
+				engine.addAgent(agent);
+				spawned.add(agent);
+			}
+
+			if (tick % 7 == 0) {
+				engine.removeAgent(tree.getList().get(numGenerator.nextInt(tree.getList().size())));
+			}
+
+			if (tick == 40) {
+				engine.removeAgent(spawned.get(0));
+			}
+
+			engine.tick();
+
+		}
+
+		engine.stopRecording();
+
+		BroadPhase replayed; //Empty - the trace starts from nothing
+
+		if (kind.equals("grid")) {
+			replayed = new UniformGrid(maxWidth, maxHeight, BroadPhaseTest.RADIUS);
+		} else if (kind.equals("linear")) {
+			replayed = new LinearQuadTree(maxWidth, maxHeight);
+		} else {
+			replayed = new quadTree<Shape>(maxWidth, maxHeight);
+		}
+
+		AgentStoreTest.bounce(replayed.getStore());
+
+		try (TraceReader reader = TraceReader.open(file)) {
+
+			assertEquals(maxWidth, reader.getMaxWidth());
+			assertEquals(maxHeight, reader.getMaxHeight());
+
+			while (reader.replayTick(replayed)) {
+			}
+
+			assertEquals(60, reader.getTicks());
+
+		}
+
+		AgentStore a = tree.getStore();
+		AgentStore b = replayed.getStore();
+		int n = a.size();
+
+		assertEquals(n, b.size());
+		assertArrayEquals(Arrays.copyOf(a.x, n), Arrays.copyOf(b.x, n));
+		assertArrayEquals(Arrays.copyOf(a.y, n), Arrays.copyOf(b.y, n));
+		assertArrayEquals(Arrays.copyOf(a.dx, n), Arrays.copyOf(b.dx, n));
+		assertArrayEquals(Arrays.copyOf(a.dy, n), Arrays.copyOf(b.dy, n));
+
+	}
+
+	@Test
+	public void eventsDecodeAcrossChunks() throws IOException {
+
+		Path file = dir.resolve("chunks.trace");
+		int agents = 3*TraceWriter.CHUNK/41 & ~1; //Spawns alone span three chunks - even, for the pairs below
+
+		try (TraceWriter writer = TraceWriter.create(file, 1000, 1000)) {
+
+			for (int i = 0; i < agents; i++) {
+				writer.spawn(i, 2, i % 1000, i / 1000, 0, 0);
+			}
+
+			writer.endTick();
+
+			for (int i = 0; i < agents; i += 2) {
+				writer.move(i, 500, 500.25, 1, -1);
+				writer.despawn(i+1);
+			}
+
+			writer.endTick();
+			assertEquals(2, writer.getTicks());
+
+		}
+
+		LinearQuadTree tree = new LinearQuadTree(1000, 1000);
+
+		try (TraceReader reader = TraceReader.open(file)) {
+
+			assertTrue(reader.readTick(tree));
+			assertEquals(agents, tree.agentC());
+			assertTrue(reader.readTick(tree));
+			assertFalse(reader.readTick(tree));
+
+		}
+
+		AgentStore store = tree.getStore();
+		assertEquals(agents/2, store.size());
+
+		for (int i = 0; i < store.size(); i++) {
+			assertEquals(500.25, store.y[i]);
+			assertEquals(-1, store.dy[i]);
+		}
+
+		try (TraceReader reader = TraceReader.open(file)) { //Decoding only
+
+			while (reader.readTick(null)) {
+			}
+
+			assertEquals(2, reader.getTicks());
+
+		}
+
+	}
+
+	@Test
+	public void refusesDamagedTrace() throws IOException {
+
+		Path file = dir.resolve("damaged.trace");
+
+		try (TraceWriter writer = TraceWriter.create(file, 100, 100)) {
+			writer.spawn(0, 2, 50, 50, 1, 1);
+			writer.endTick();
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 5);
+		}
+
+		try (TraceReader reader = TraceReader.open(file)) {
+			assertThrows(IOException.class, () -> reader.readTick(new LinearQuadTree(100, 100)));
+		}
+
+		Path other = dir.resolve("other.trace");
+		TreeSnapshot.write(new LinearQuadTree(100, 100), other);
+		assertThrows(IOException.class, () -> TraceReader.open(other));
+
+	}
+
+}
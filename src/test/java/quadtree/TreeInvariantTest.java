@@ -0,0 +1,165 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * TreeInvariantTest
+ * Description: After ticks of motion, with shapes removed and added in between, every node of a quadTree must be consistent:
+ * each handle is in one node, whose getNode and getSlot point back at it, the node holds it, and the count of each node
+ * is the number of shapes in its subtree. Internal nodes hold shapes only in loose mode - only those that fit no child,
+ * even after they moved - and the count-based update leaves no internal node with fewer shapes than the split threshold.
+ */
+
+public class TreeInvariantTest {
+
+	static final int AGENTS = 3000;
+	static final int RADIUS = 5;
+	static final int TICKS = 60;
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose"})
+	public void nodesStayConsistent(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9)); //Same density as testProgram
+		int maxHeight = maxWidth*9/16;
+		quadTree<Shape> tree = newTree(kind.equals("loose") ? new quadTree<Shape>(maxWidth, maxHeight, 2) : new quadTree<Shape>(maxWidth, maxHeight), maxWidth, maxHeight);
+		Random numGenerator = new Random(8);
+
+		for (int tick = 0; tick < TICKS; tick++) {
+
+			if (tick % 10 == 5) { //Swap-removes and appends move handles between nodes too - before the move, whose update follows
+				for (int i = 0; i < 30; i++) {
+					tree.removeAgent(tree.getList().get(numGenerator.nextInt(tree.getStore().size())));
+					tree.addAgent(new Shape(RADIUS, numGenerator.nextInt(maxWidth), numGenerator.nextInt(maxHeight), 3, -3));
+				}
+			}
+
+			move(tree.getList(), maxWidth, maxHeight);
+			tree.manageNode(tree.findChanged()); //The phases of updateTree that move shapes between nodes
+			tree.update();
+
+			assertConsistent(tree, kind.equals("loose"), kind + " tick " + tick);
+
+		}
+
+	}
+
+	/**
+	 * move
+	 * One tick of motion, bouncing off the walls as testProgram does
+	 */
+
+	static void move(ArrayList<Shape> agents, int maxWidth, int maxHeight) {
+
+		for (Shape agent : agents) {
+
+			if (agent.getX() + agent.getDx() + RADIUS > maxWidth || agent.getX() + agent.getDx() - RADIUS < 0) {
+				agent.setDx(-agent.getDx());
+			}
+
+			if (agent.getY() + agent.getDy() + RADIUS >= maxHeight || agent.getY() + agent.getDy() - RADIUS < 0) {
+				agent.setDy(-agent.getDy());
+			}
+
+			agent.newPos();
+
+		}
+
+	}
+
+	static <T extends SpatialTree> T newTree(T tree, int maxWidth, int maxHeight) {
+
+		AgentStoreTest.bounce(tree.getStore());
+
+		for (Shape agent : batch(maxWidth, maxHeight)) {
+			tree.addAgent(agent);
+		}
+
+		return tree;
+
+	}
+
+	/**
+	 * batch
+	 * New shapes spread over the area - the same ones on every call
+	 */
+
+	static ArrayList<Shape> batch(int maxWidth, int maxHeight) {
+
+		ArrayList<Shape> batch = new ArrayList<Shape>();
+		Random numGenerator = new Random(1);
+
+		for (int i = 0; i < AGENTS; i++) {
+			batch.add(new Shape(RADIUS, numGenerator.nextInt(maxWidth-RADIUS*2)+RADIUS, numGenerator.nextInt(maxHeight-RADIUS*2)+RADIUS, numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4));
+		}
+
+		return batch;
+
+	}
+
+	private static void assertConsistent(quadTree<Shape> tree, boolean loose, String message) {
+
+		AgentStore store = tree.getStore();
+		int [] seen = new int[store.size()];
+
+		assertNull(tree.getRoot().parent);
+		assertEquals(store.size(), check(tree, tree.getRoot(), loose, seen, message), message);
+
+		for (int i = 0; i < seen.length; i++) {
+			assertEquals(1, seen[i], message + " handle " + i);
+			assertEquals(i, tree.getList().get(i).getHandle(), message + " handle " + i);
+		}
+
+	}
+
+	/**
+	 * check
+	 * Checks a node and its subtree
+	 *
+	 * @return number of shapes in the subtree
+	 */
+
+	private static int check(quadTree<?> tree, quadTree<?>.Node node, boolean loose, int [] seen, String message) {
+
+		int shapes = node.agentLen;
+
+		for (int slot = 0; slot < node.agentLen; slot++) {
+
+			int handle = node.agentList[slot];
+			seen[handle]++;
+			assertSame(node, tree.getNode(handle), message + " handle " + handle);
+			assertEquals(slot, tree.getSlot(handle), message + " handle " + handle);
+			assertTrue(node.holds(handle), message + " handle " + handle + " is outside its node");
+			assertTrue(node.settled(handle), message + " handle " + handle + " fits a child of its node");
+
+		}
+
+		if (node.q1 == null) {
+			assertEquals(shapes, node.count, message);
+			return shapes;
+		}
+
+		assertTrue(loose || node.agentLen == 0, message + " internal node holds shapes");
+		assertTrue(node.count >= quadTree.SPLIT_THRESHOLD, message + " internal node of " + node.count + " shapes");
+
+		for (quadTree<?>.Node child : new quadTree<?>.Node [] {node.q1, node.q2, node.q3, node.q4}) {
+			assertSame(node, child.parent, message);
+			shapes += check(tree, child, loose, seen, message);
+		}
+
+		assertEquals(shapes, node.count, message + " count");
+
+		return shapes;
+
+	}
+
+}
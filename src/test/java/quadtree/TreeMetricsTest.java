@@ -0,0 +1,111 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * TreeMetricsTest
+ * Description: The counters of TreeMetrics must agree with the tree - one tick per step, a census covering every node and
+ * every shape, contacts equal to the pairs findPairs reports, and nothing counted while the metrics are off. The same
+ * counters must be readable through the platform MBean server.
+ */
+
+public class TreeMetricsTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear", "parallel"})
+	public void countersMatchTree(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(BroadPhaseTest.AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = (SpatialTree) BroadPhaseTest.newBroadPhase(kind.equals("parallel") ? "pointer" : kind, maxWidth, maxHeight);
+		TreeMetrics metrics = tree.getMetrics();
+
+		if (kind.equals("parallel")) {
+			((quadTree<?>) tree).setParallel(ForkJoinPool.commonPool(), 64);
+		}
+
+		for (int tick = 0; tick < 5; tick++) {
+			tree.step(maxWidth, maxHeight);
+		}
+
+		assertEquals(0, metrics.snapshot().getTicks());
+
+		metrics.setEnabled(true);
+
+		for (int tick = 0; tick < 20; tick++) {
+			tree.step(maxWidth, maxHeight);
+		}
+
+		tree.getStore().move(maxWidth, maxHeight);
+		tree.relocateAll();
+		long [] expected = new long[2];
+		tree.findPairs((ag1, ag2) -> expected[0]++);
+		TreeMetrics.Snapshot before = metrics.snapshot();
+
+		tree.updateTree();
+
+		TreeMetrics.Snapshot s = metrics.snapshot();
+		long nodes = 0;
+		long leaves = 0;
+
+		for (long n : s.getDepthHistogram()) {
+			nodes += n;
+		}
+
+		for (long n : s.getOccupancyHistogram()) {
+			leaves += n;
+		}
+
+		assertEquals(21, s.getTicks());
+		assertEquals(s.getNodeCount(), nodes);
+		assertEquals(s.getLeafCount(), leaves);
+		assertEquals(1, s.getDepthHistogram()[0]);
+		assertEquals(expected[0], s.getContacts() - before.getContacts(), kind + " contacts");
+		assertTrue(s.getPairTests() - before.getPairTests() >= expected[0]);
+		assertTrue(s.getRelocations() >= s.getDisplaced());
+		assertTrue(s.getPhaseNanos(TreeMetrics.CHECK_COLLIDE) > 0);
+
+	}
+
+	@Test
+	public void registersMBean() throws Exception {
+
+		SpatialTree tree = (SpatialTree) BroadPhaseTest.newBroadPhase("linear", 2000, 1125);
+		TreeMetrics metrics = tree.getMetrics();
+		metrics.setEnabled(true);
+		ObjectName name = metrics.register("test");
+
+		try {
+
+			for (int tick = 0; tick < 3; tick++) {
+				tree.step(2000, 1125);
+			}
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			assertEquals(3L, server.getAttribute(name, "Ticks"));
+			assertEquals(metrics.getNodeCount(), server.getAttribute(name, "NodeCount"));
+
+			server.invoke(name, "reset", null, null);
+			tree.step(2000, 1125);
+
+			assertEquals(1L, server.getAttribute(name, "Ticks"));
+
+		} finally {
+			metrics.unregister();
+		}
+
+	}
+
+}
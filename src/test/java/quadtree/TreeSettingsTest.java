@@ -0,0 +1,69 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * TreeSettingsTest
+ * Description: A lower depth limit set on a running tree must collapse the nodes below it on the next update, and keep every
+ * shape. AutoTuner, fed tick costs with a known best split threshold, must settle on it, stay within its bounds and leave the
+ * depth alone when depth makes no difference.
+ */
+
+public class TreeSettingsTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "linear"})
+	public void lowerMaxLevelCollapsesDeepNodes(String kind) {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(BroadPhaseTest.AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = (SpatialTree) BroadPhaseTest.newBroadPhase(kind, maxWidth, maxHeight);
+
+		tree.setMaxLevel(3);
+		tree.setSplitThreshold(20);
+
+		for (int tick = 0; tick < 5; tick++) {
+			tree.step(maxWidth, maxHeight);
+		}
+
+		int [] rects = new int[4*4096];
+		int nodes = tree.fillGrid(rects);
+
+		for (int i = 0; i < nodes; i++) {
+			assertTrue(rects[4*i+2] >= maxWidth/8 - 1, kind + " kept a node " + rects[4*i+2] + " wide");
+		}
+
+		assertEquals(BroadPhaseTest.AGENTS, tree.queryRect(-1e9, -1e9, 1e9, 1e9, new int[0]));
+
+	}
+
+	@Test
+	public void autoTunerFindsBestSplit() {
+
+		SpatialTree tree = new LinearQuadTree(100, 100);
+		AutoTuner tuner = new AutoTuner(10, 2, 40, 1, quadTree.MAX_LEVEL);
+
+		for (int tick = 0; tick < 5000; tick++) {
+
+			int split = tree.getSplitThreshold();
+			long structure = 10000 + Math.max(12 - split, 0)*1000; //Leaves too small - restructuring dominates
+			long collide = 10000 + Math.max(split - 12, 0)*1000; //Leaves too large - pair tests dominate
+
+			tuner.tick(tree, structure/2, structure/2, collide);
+
+			assertTrue(split >= 2 && split <= 40);
+
+		}
+
+		assertEquals(12, tree.getSplitThreshold());
+		assertEquals(quadTree.MAX_LEVEL, tree.getMaxLevel());
+		assertTrue(tuner.getChanges() > 0);
+
+	}
+
+}
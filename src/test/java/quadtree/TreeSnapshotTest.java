@@ -0,0 +1,149 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/*
+ * TreeSnapshotTest
+ * Description: A tree restored from a snapshot must hold the same agents and nodes as the saved one, and tick exactly like
+ * it afterwards - same positions and speeds, bit for bit. A damaged file, one from another version, or one whose node
+ * count does not match its length (even with a valid checksum) must be refused.
+ */
+
+public class TreeSnapshotTest {
+
+	@TempDir
+	Path dir;
+
+	@ParameterizedTest
+	@ValueSource(strings = {"pointer", "loose", "linear"})
+	public void restoredTreeReplaysExactly(String kind) throws IOException {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(BroadPhaseTest.AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		SpatialTree tree = (SpatialTree) BroadPhaseTest.newBroadPhase(kind, maxWidth, maxHeight);
+		tree.setSplitThreshold(7);
+
+		for (int tick = 0; tick < 30; tick++) {
+			tree.step(maxWidth, maxHeight);
+		}
+
+		Path file = dir.resolve(kind + ".snap");
+		TreeSnapshot.write(tree, file);
+		SpatialTree restored = TreeSnapshot.read(file);
+		AgentStoreTest.bounce(restored.getStore()); //The collision response is not part of a snapshot
+
+		assertEquals(tree.getClass(), restored.getClass());
+		assertEquals(tree.agentC(), restored.agentC());
+		assertEquals(7, restored.getSplitThreshold());
+		assertGrid(tree, restored);
+
+		for (int tick = 0; tick < 30; tick++) {
+			tree.step(maxWidth, maxHeight);
+			restored.step(maxWidth, maxHeight);
+		}
+
+		AgentStore a = tree.getStore();
+		AgentStore b = restored.getStore();
+		int n = a.size();
+
+		assertArrayEquals(Arrays.copyOf(a.x, n), Arrays.copyOf(b.x, n));
+		assertArrayEquals(Arrays.copyOf(a.y, n), Arrays.copyOf(b.y, n));
+		assertArrayEquals(Arrays.copyOf(a.dx, n), Arrays.copyOf(b.dx, n));
+		assertArrayEquals(Arrays.copyOf(a.dy, n), Arrays.copyOf(b.dy, n));
+		assertGrid(tree, restored);
+
+		restored.addAgent(new Shape(5, 100, 100, 1, 1)); //Still takes new agents
+		assertEquals(n+1, restored.queryRect(-1e9, -1e9, 1e9, 1e9, new int[0]));
+
+	}
+
+	@Test
+	public void smallTreeRoundTrip() throws IOException {
+
+		LinearQuadTree tree = new LinearQuadTree(100, 100);
+
+		for (int i = 0; i < 12; i++) {
+			tree.addAgent(new Shape(2, 10 + 7*i, 50, 1, 0));
+		}
+
+		tree.update();
+
+		Path file = dir.resolve("small.snap");
+		TreeSnapshot.write(tree, file);
+		SpatialTree restored = TreeSnapshot.read(file);
+
+		assertGrid(tree, restored);
+		restored.step(100, 100);
+		tree.step(100, 100);
+		assertGrid(tree, restored);
+
+	}
+
+	@Test
+	public void refusesDamagedSnapshot() throws IOException {
+
+		SpatialTree tree = (SpatialTree) BroadPhaseTest.newBroadPhase("linear", 2000, 1125);
+		Path file = dir.resolve("damaged.snap");
+		TreeSnapshot.write(tree, file);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer b = ByteBuffer.allocate(1);
+			channel.read(b, TreeSnapshot.HEADER + 1000);
+			b.put(0, (byte)(b.get(0) ^ 1)).rewind();
+			channel.write(b, TreeSnapshot.HEADER + 1000);
+		}
+
+		assertThrows(IOException.class, () -> TreeSnapshot.read(file));
+
+		TreeSnapshot.write(tree, file);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, TreeSnapshot.VERSION+1), 4);
+		}
+
+		assertThrows(IOException.class, () -> TreeSnapshot.read(file));
+
+		TreeSnapshot.write(tree, file);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			ByteBuffer all = ByteBuffer.allocate((int)channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(all, 0);
+			all.putLong(48, all.getLong(48) + (1L << 62)); //4 * nodeInts wraps around to the length of the nodes
+			all.putLong(56, 0);
+
+			CRC32C crc = new CRC32C();
+			crc.update(all.array());
+			all.putLong(56, crc.getValue());
+			channel.write(all.rewind(), 0);
+
+		}
+
+		assertThrows(IOException.class, () -> TreeSnapshot.read(file));
+
+	}
+
+	private static void assertGrid(SpatialTree a, SpatialTree b) {
+		int [] rectsA = new int[4*8192];
+		int [] rectsB = new int[4*8192];
+		assertEquals(a.fillGrid(rectsA), b.fillGrid(rectsB));
+		assertArrayEquals(rectsA, rectsB);
+	}
+
+}
@@ -0,0 +1,214 @@
+package quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * TreeViewTest
+ * Description: The queries of a TreeView must find the same agents as a scan of the positions it holds, and those must be
+ * the positions of the tick it was taken after. A held view must not change while the engine ticks on, and views closed
+ * by every reader must be reused. Query threads must see consistent views while the engine runs on its own thread.
+ */
+
+public class TreeViewTest {
+
+	static final int AGENTS = 3000;
+
+	@Test
+	public void queriesMatchScan() {
+
+		int maxWidth = (int)Math.ceil(Math.sqrt(AGENTS*400.0*16/9));
+		int maxHeight = maxWidth*9/16;
+		LinearQuadTree tree = newTree(maxWidth, maxHeight);
+		SimulationEngine engine = new SimulationEngine(tree, maxWidth, maxHeight, 0);
+		engine.setViews(true);
+
+		for (int tick = 0; tick < 20; tick++) {
+			engine.tick();
+		}
+
+		AgentStore store = tree.getStore();
+		Random numGenerator = new Random(2);
+
+		try (TreeView view = engine.acquireView()) {
+
+			assertEquals(20, view.getTick());
+			assertEquals(store.size(), view.size());
+			assertArrayEquals(Arrays.copyOf(store.x, store.size()), positions(view));
+
+			for (int q = 0; q < 50; q++) {
+
+				double cx = numGenerator.nextDouble()*(maxWidth+40) - 20; //Some outside the area
+				double cy = numGenerator.nextDouble()*(maxHeight+40) - 20;
+				double r = numGenerator.nextDouble()*60;
+				int [] out = new int[view.size()];
+				int inRect = 0;
+				int inCircle = 0;
+
+				for (int i = 0; i < view.size(); i++) {
+					double dx = view.x(i) - cx;
+					double dy = view.y(i) - cy;
+					inRect += (Math.abs(dx) <= r && Math.abs(dy) <= r) ? 1 : 0;
+					inCircle += (dx*dx + dy*dy <= r*r) ? 1 : 0;
+				}
+
+				assertEquals(inRect, view.queryRect(cx-r, cy-r, cx+r, cy+r, out));
+				assertEquals(inCircle, view.queryCircle(cx, cy, r, out));
+
+				NearestResult nearest = view.nearest(cx, cy, 8);
+				double [] all = new double[view.size()];
+
+				for (int i = 0; i < view.size(); i++) {
+					all[i] = (view.x(i)-cx)*(view.x(i)-cx) + (view.y(i)-cy)*(view.y(i)-cy);
+				}
+
+				Arrays.sort(all);
+				assertEquals(8, nearest.size());
+
+				for (int i = 0; i < 8; i++) {
+					assertEquals(all[i], nearest.distSq(i));
+				}
+
+			}
+
+			assertEquals(0, view.nearest(100, 100, 0).size()); //Nothing, as on the trees
+			assertEquals(0, view.nearest(100, 100, -1).size());
+
+		}
+
+	}
+
+	@Test
+	public void heldViewDoesNotChange() {
+
+		LinearQuadTree tree = newTree(1000, 600);
+		SimulationEngine engine = new SimulationEngine(tree, 1000, 600, 0);
+		engine.setViews(true);
+		engine.tick();
+
+		TreeView held = engine.acquireView();
+		double [] before = positions(held);
+
+		for (int tick = 0; tick < 10; tick++) {
+			engine.tick();
+			engine.acquireView().close(); //Acquired and closed within the tick - only two views ever needed besides the held one
+		}
+
+		assertEquals(1, held.getTick());
+		assertArrayEquals(before, positions(held));
+		assertEquals(3, engine.viewCount());
+
+		held.close();
+
+		for (int tick = 0; tick < 10; tick++) {
+			engine.tick();
+		}
+
+		assertEquals(3, engine.viewCount());
+
+		engine.setViews(false);
+		assertNull(engine.acquireView());
+
+	}
+
+	@Test
+	public void concurrentReadersSeeConsistentViews() throws Exception {
+
+		LinearQuadTree tree = newTree(1000, 600);
+		SimulationEngine engine = new SimulationEngine(tree, 1000, 600, 0);
+		engine.setViews(true);
+		engine.start();
+
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread [] readers = new Thread[4];
+
+		for (int t = 0; t < readers.length; t++) {
+
+			readers[t] = new Thread(() -> {
+
+				try {
+
+					long last = -1;
+					int [] out = new int[AGENTS];
+					long end = System.nanoTime() + 300_000_000L;
+
+					while (System.nanoTime() < end) {
+
+						try (TreeView view = engine.acquireView()) {
+
+							assertNotNull(view);
+							assertTrue(view.getTick() >= last, "view went back in time");
+							last = view.getTick();
+
+							double [] x = positions(view);
+							assertEquals(view.size(), view.queryRect(-1e9, -1e9, 1e9, 1e9, out));
+							assertArrayEquals(x, positions(view), "view changed while held");
+
+						}
+
+					}
+
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+
+			});
+
+			readers[t].start();
+
+		}
+
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		engine.stop();
+
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+
+		assertTrue(engine.getTicks() > 0);
+
+	}
+
+	private static double [] positions(TreeView view) {
+
+		double [] p = new double[view.size()];
+
+		for (int i = 0; i < p.length; i++) {
+			p[i] = view.x(i);
+		}
+
+		return p;
+
+	}
+
+	private static LinearQuadTree newTree(int maxWidth, int maxHeight) {
+
+		LinearQuadTree tree = new LinearQuadTree(maxWidth, maxHeight);
+		AgentStoreTest.bounce(tree.getStore());
+		Random numGenerator = new Random(1);
+		ArrayList<Shape> batch = new ArrayList<Shape>();
+
+		for (int i = 0; i < AGENTS; i++) {
+			batch.add(new Shape(5, numGenerator.nextInt(maxWidth-10), numGenerator.nextInt(maxHeight-10), numGenerator.nextInt(9)-4, numGenerator.nextInt(9)-4));
+		}
+
+		tree.addAll(batch);
+
+		return tree;
+
+	}
+
+}